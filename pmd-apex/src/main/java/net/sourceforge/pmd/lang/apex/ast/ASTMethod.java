@@ -5,14 +5,19 @@
 package net.sourceforge.pmd.lang.apex.ast;
 
 import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.apex.metrics.signature.ApexOperationSignature;
 import net.sourceforge.pmd.lang.ast.SignedNode;
+import net.sourceforge.pmd.lang.metrics.BasicMetricMemoizer;
+import net.sourceforge.pmd.lang.metrics.MetricMemoizer;
 
 import apex.jorje.semantic.ast.member.Method;
 
 public class ASTMethod extends AbstractApexNode<Method> implements ApexQualifiableNode,
        SignedNode<ASTMethod>, CanSuppressWarnings {
 
+    private MetricMemoizer<ASTMethod> metricMemoizer;
+
     public ASTMethod(Method method) {
         super(method);
     }
@@ -81,4 +86,17 @@ public class ASTMethod extends AbstractApexNode<Method> implements ApexQualifiab
     public String getReturnType() {
         return node.getReturnTypeRef().toString();
     }
+
+
+    /**
+     * Returns the memoizer of the metrics computed on this node.
+     */
+    @InternalApi
+    @Deprecated
+    public MetricMemoizer<ASTMethod> getMetricMemoizer() {
+        if (metricMemoizer == null) {
+            metricMemoizer = new BasicMetricMemoizer<>();
+        }
+        return metricMemoizer;
+    }
 }
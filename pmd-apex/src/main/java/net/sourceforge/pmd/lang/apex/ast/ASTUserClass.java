@@ -5,6 +5,9 @@
 package net.sourceforge.pmd.lang.apex.ast;
 
 import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.lang.metrics.BasicMetricMemoizer;
+import net.sourceforge.pmd.lang.metrics.MetricMemoizer;
 
 import apex.jorje.semantic.ast.compilation.UserClass;
 
@@ -12,6 +15,7 @@ public class ASTUserClass extends ApexRootNode<UserClass> implements ASTUserClas
        CanSuppressWarnings {
 
     private ApexQualifiedName qname;
+    private MetricMemoizer<ASTUserClassOrInterface<?>> metricMemoizer;
 
     public ASTUserClass(UserClass userClass) {
         super(userClass);
@@ -67,4 +71,16 @@ public class ASTUserClass extends ApexRootNode<UserClass> implements ASTUserClas
     public ASTModifierNode getModifiers() {
         return getFirstChildOfType(ASTModifierNode.class);
     }
+
+    /**
+     * Returns the memoizer of the metrics computed on this node.
+     */
+    @InternalApi
+    @Deprecated
+    public MetricMemoizer<ASTUserClassOrInterface<?>> getMetricMemoizer() {
+        if (metricMemoizer == null) {
+            metricMemoizer = new BasicMetricMemoizer<>();
+        }
+        return metricMemoizer;
+    }
 }
@@ -5,13 +5,34 @@
 package net.sourceforge.pmd.lang.apex.metrics;
 
 import net.sourceforge.pmd.lang.apex.ast.ASTMethod;
+import net.sourceforge.pmd.lang.apex.ast.ASTUserClass;
 import net.sourceforge.pmd.lang.apex.ast.ASTUserClassOrInterface;
+import net.sourceforge.pmd.lang.apex.ast.ASTUserInterface;
 import net.sourceforge.pmd.lang.metrics.BasicProjectMemoizer;
+import net.sourceforge.pmd.lang.metrics.MetricMemoizer;
 
 /**
- * Memoizer for Apex metrics.
+ * Memoizer for Apex metrics. The memoizers of the nodes are kept on the
+ * nodes themselves, so they need no locking and are released together
+ * with the AST.
  *
  * @author Clément Fournier
  */
 class ApexProjectMemoizer extends BasicProjectMemoizer<ASTUserClassOrInterface<?>, ASTMethod> {
+
+    @Override
+    public MetricMemoizer<ASTMethod> getOperationMemoizer(ASTMethod node) {
+        return node.getMetricMemoizer();
+    }
+
+
+    @Override
+    public MetricMemoizer<ASTUserClassOrInterface<?>> getClassMemoizer(ASTUserClassOrInterface<?> node) {
+        if (node instanceof ASTUserClass) {
+            return ((ASTUserClass) node).getMetricMemoizer();
+        } else if (node instanceof ASTUserInterface) {
+            return ((ASTUserInterface) node).getMetricMemoizer();
+        }
+        return super.getClassMemoizer(node);
+    }
 }
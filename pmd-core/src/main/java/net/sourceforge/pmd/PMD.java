@@ -14,7 +14,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.ConsoleHandler;
@@ -50,6 +52,7 @@ import net.sourceforge.pmd.util.database.DBURI;
 import net.sourceforge.pmd.util.database.SourceObject;
 import net.sourceforge.pmd.util.datasource.DataSource;
 import net.sourceforge.pmd.util.datasource.ReaderDataSource;
+import net.sourceforge.pmd.util.datasource.SizedDataSource;
 import net.sourceforge.pmd.util.log.ScopedLogHandlersManager;
 
 /**
@@ -340,15 +343,47 @@ public class PMD {
         } else {
             final boolean useShortNames = configuration.isReportShortNames();
             final String inputPaths = configuration.getInputPaths();
-            Collections.sort(files, new Comparator<DataSource>() {
+            final Comparator<DataSource> byName = new Comparator<DataSource>() {
                 @Override
                 public int compare(DataSource left, DataSource right) {
                     String leftString = left.getNiceFileName(useShortNames, inputPaths);
                     String rightString = right.getNiceFileName(useShortNames, inputPaths);
                     return leftString.compareTo(rightString);
                 }
-            });
+            };
+            if (configuration.isLargestFilesFirst()) {
+                Collections.sort(files, largestFirst(files, byName));
+            } else {
+                Collections.sort(files, byName);
+            }
+        }
+    }
+
+    /**
+     * Orders the files by decreasing size, using the given comparator to
+     * break ties, so that the order stays deterministic. The sizes are
+     * determined only once per file.
+     */
+    private static Comparator<DataSource> largestFirst(final List<DataSource> files, final Comparator<DataSource> tieBreaker) {
+        final Map<DataSource, Long> sizes = new IdentityHashMap<>(files.size());
+        for (DataSource dataSource : files) {
+            sizes.put(dataSource, estimateSize(dataSource));
+        }
+        return new Comparator<DataSource>() {
+            @Override
+            public int compare(DataSource left, DataSource right) {
+                int result = Long.compare(sizes.get(right), sizes.get(left));
+                return result != 0 ? result : tieBreaker.compare(left, right);
+            }
+        };
+    }
+
+    private static long estimateSize(DataSource dataSource) {
+        if (dataSource instanceof SizedDataSource) {
+            return Math.max(0L, ((SizedDataSource) dataSource).getSize());
         }
+        // unknown size, process these last
+        return 0L;
     }
 
     /**
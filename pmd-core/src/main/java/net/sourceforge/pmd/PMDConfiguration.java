@@ -11,7 +11,9 @@ import java.util.List;
 import java.util.Properties;
 
 import net.sourceforge.pmd.cache.AnalysisCache;
+import net.sourceforge.pmd.cache.ContentAddressedAnalysisCache;
 import net.sourceforge.pmd.cache.FileAnalysisCache;
+import net.sourceforge.pmd.cache.MappedFileAnalysisCache;
 import net.sourceforge.pmd.cache.NoopAnalysisCache;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersion;
@@ -31,12 +33,16 @@ import net.sourceforge.pmd.util.IOUtil;
  * defaults to {@link PMD#SUPPRESS_MARKER}. {@link #getSuppressMarker()}</li>
  * <li>The number of threads to create when invoking on multiple files, defaults
  * one thread per available processor. {@link #getThreads()}</li>
+ * <li>The maximum number of files being analyzed or waiting to be rendered at
+ * any time, defaults to twice the number of threads. {@link #getMaxFilesInFlight()}</li>
  * <li>A ClassLoader to use when loading classes during Rule processing (e.g.
  * during type resolution), defaults to ClassLoader of the Configuration class.
  * {@link #getClassLoader()}</li>
  * <li>A means to configure a ClassLoader using a prepended classpath String,
  * instead of directly setting it programmatically.
  * {@link #prependClasspath(String)}</li>
+ * <li>The location of an index of the classes on the prepended classpath,
+ * which is kept between runs. {@link #getClasspathIndexLocation()}</li>
  * <li>A LanguageVersionDiscoverer instance, which defaults to using the default
  * LanguageVersion of each Language. Means are provided to change the
  * LanguageVersion for each Language.
@@ -75,6 +81,9 @@ import net.sourceforge.pmd.util.IOUtil;
  * {@link #isDebug()}</li>
  * <li>An indicator of whether PMD should perform stress testing behaviors, such
  * as randomizing the order of file processing. {@link #isStressTest()}</li>
+ * <li>An indicator of whether PMD should process the largest files first, to
+ * reduce the time spent waiting on a single large file at the end of a
+ * multithreaded run. {@link #isLargestFilesFirst()}</li>
  * <li>An indicator of whether PMD should log benchmarking information.
  * {@link #isBenchmark()}</li>
  * </ul>
@@ -83,7 +92,9 @@ public class PMDConfiguration extends AbstractConfiguration {
     // General behavior options
     private String suppressMarker = PMD.SUPPRESS_MARKER;
     private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxFilesInFlight;
     private ClassLoader classLoader = getClass().getClassLoader();
+    private String classpathIndexLocation;
     private LanguageVersionDiscoverer languageVersionDiscoverer = new LanguageVersionDiscoverer();
 
     // Rule and source file options
@@ -104,6 +115,7 @@ public class PMDConfiguration extends AbstractConfiguration {
     private boolean failOnViolation = true;
 
     private boolean stressTest;
+    private boolean largestFilesFirst;
     private boolean benchmark;
     private AnalysisCache analysisCache = new NoopAnalysisCache();
     private boolean ignoreIncrementalAnalysis;
@@ -147,6 +159,37 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.threads = threads;
     }
 
+    /**
+     * Get the maximum number of files which may be in flight at the same
+     * time, that is, submitted for analysis but whose report has not been
+     * rendered yet. This bounds the number of reports held in memory when
+     * processing on multiple threads. Unless set explicitly, this is twice the
+     * number of threads. Note that {@link net.sourceforge.pmd.processor.MultiThreadProcessor}
+     * never keeps fewer files in flight than it has threads.
+     *
+     * @return The maximum number of files in flight, always at least 1.
+     */
+    public int getMaxFilesInFlight() {
+        if (maxFilesInFlight > 0) {
+            return maxFilesInFlight;
+        }
+        return Math.max(1, 2 * threads);
+    }
+
+    /**
+     * Set the maximum number of files which may be in flight at the same
+     * time. A value smaller than 1 restores the default, which is twice the
+     * number of threads. When processing on multiple threads, a value smaller
+     * than the number of threads is raised to the number of threads, so that
+     * no thread is left idle.
+     *
+     * @param maxFilesInFlight
+     *            The maximum number of files in flight.
+     */
+    public void setMaxFilesInFlight(int maxFilesInFlight) {
+        this.maxFilesInFlight = maxFilesInFlight;
+    }
+
     /**
      * Get the ClassLoader being used by PMD when processing Rules.
      *
@@ -194,6 +237,42 @@ public class PMDConfiguration extends AbstractConfiguration {
         }
         if (classpath != null) {
             classLoader = new ClasspathClassLoader(classpath, classLoader);
+            if (classpathIndexLocation != null) {
+                ((ClasspathClassLoader) classLoader).useIndex(new File(classpathIndexLocation));
+            }
+        }
+    }
+
+    /**
+     * Get the location of the classpath index.
+     *
+     * @return The location of the classpath index, or <code>null</code> if
+     *         none is used
+     * @see #setClasspathIndexLocation(String)
+     */
+    public String getClasspathIndexLocation() {
+        return classpathIndexLocation;
+    }
+
+    /**
+     * Set the location of a file, which stores an index of the classes on the
+     * classpath prepended with {@link #prependClasspath(String)}. The index is
+     * built on the first run, and again when a jar file of the classpath
+     * changes. Classes, which are not on that classpath, are then looked up
+     * without searching its jar files, which speeds up type resolution with
+     * large classpaths. The index applies to the current ClassLoader, if it was
+     * created by {@link #prependClasspath(String)}, and to the ones created
+     * afterwards.
+     *
+     * @param classpathIndexLocation
+     *            The location of the classpath index, or <code>null</code> to
+     *            not use one.
+     * @see ClasspathClassLoader#useIndex(File)
+     */
+    public void setClasspathIndexLocation(String classpathIndexLocation) {
+        this.classpathIndexLocation = classpathIndexLocation;
+        if (classpathIndexLocation != null && classLoader instanceof ClasspathClassLoader) {
+            ((ClasspathClassLoader) classLoader).useIndex(new File(classpathIndexLocation));
         }
     }
 
@@ -511,6 +590,31 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.stressTest = stressTest;
     }
 
+    /**
+     * Return the largest files first indicator. If this value is
+     * <code>true</code> then PMD will process files in order of decreasing
+     * size instead of by name, so that large files don't end up being analyzed
+     * last while the other threads are idle. Reports are still rendered in a
+     * deterministic order, which is the processing order.
+     *
+     * @return <code>true</code> if the largest files are processed first,
+     *         <code>false</code> otherwise.
+     */
+    public boolean isLargestFilesFirst() {
+        return largestFilesFirst;
+    }
+
+    /**
+     * Set the largest files first indicator.
+     *
+     * @param largestFilesFirst
+     *            The largest files first indicator to set.
+     * @see #isLargestFilesFirst()
+     */
+    public void setLargestFilesFirst(boolean largestFilesFirst) {
+        this.largestFilesFirst = largestFilesFirst;
+    }
+
     /**
      * Return the benchmark indicator. If this value is <code>true</code> then
      * PMD will log benchmark information.
@@ -612,9 +716,46 @@ public class PMDConfiguration extends AbstractConfiguration {
      * @param cacheLocation The location of the analysis cache to be used.
      */
     public void setAnalysisCacheLocation(final String cacheLocation) {
-        setAnalysisCache(cacheLocation == null
-                                 ? new NoopAnalysisCache()
-                                 : new FileAnalysisCache(new File(cacheLocation)));
+        setAnalysisCacheLocation(cacheLocation, false);
+    }
+
+    /**
+     * Sets the location of the analysis cache to be used. This will automatically configure
+     * and appropriate AnalysisCache implementation.
+     *
+     * @param cacheLocation The location of the analysis cache to be used.
+     * @param mapped        Whether to use a {@link MappedFileAnalysisCache}, which only
+     *                      reads the violations of the files that need them
+     *
+     * @since 6.17.0
+     */
+    public void setAnalysisCacheLocation(final String cacheLocation, final boolean mapped) {
+        if (cacheLocation == null) {
+            setAnalysisCache(new NoopAnalysisCache());
+        } else if (mapped) {
+            setAnalysisCache(new MappedFileAnalysisCache(new File(cacheLocation)));
+        } else {
+            setAnalysisCache(new FileAnalysisCache(new File(cacheLocation)));
+        }
+    }
+
+    /**
+     * Sets the directory of a {@link ContentAddressedAnalysisCache} to be used. The results
+     * of each file are stored by the contents of the file, so the directory can be shared
+     * by several analyses of different checkouts of the same sources.
+     *
+     * @param cacheDirectory The directory of the analysis cache, or {@code null} to disable
+     *                       incremental analysis
+     * @param maxSize        The maximum size of the directory in bytes
+     *
+     * @since 6.17.0
+     */
+    public void setSharedAnalysisCacheLocation(final String cacheDirectory, final long maxSize) {
+        if (cacheDirectory == null) {
+            setAnalysisCache(new NoopAnalysisCache());
+        } else {
+            setAnalysisCache(new ContentAddressedAnalysisCache(new File(cacheDirectory), maxSize));
+        }
     }
 
 
@@ -5,15 +5,25 @@
 package net.sourceforge.pmd;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
 
+import net.sourceforge.pmd.RuleSet.RuleSetBuilder;
 import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+import net.sourceforge.pmd.util.filter.Filter;
 
 /**
  * Grouping of Rules per Language in a RuleSet.
@@ -268,4 +278,87 @@ public class RuleSets {
         }
         return checksum;
     }
+
+    /**
+     * Retrieves a checksum of the configuration of each rule being used, which
+     * includes the file patterns of its ruleset. Unlike {@link #getChecksum()},
+     * changing a rule only changes its own checksum.
+     *
+     * @return The checksum of each rule
+     * @since 6.17.0
+     */
+    public Map<Rule, Long> getRuleChecksums() {
+        final Map<Rule, Long> checksums = new HashMap<>();
+        for (final RuleSet ruleSet : ruleSets) {
+            final StringBuilder patterns = new StringBuilder();
+            patterns.append(ruleSet.getIncludePatterns()).append('|').append(ruleSet.getExcludePatterns());
+            for (final Rule rule : ruleSet.getRules()) {
+                checksums.put(rule, computeRuleChecksum(rule, patterns));
+            }
+        }
+        return checksums;
+    }
+
+    private static long computeRuleChecksum(final Rule rule, final CharSequence patterns) {
+        final StringBuilder configuration = new StringBuilder(patterns);
+        configuration.append('|').append(rule.getRuleClass())
+                     .append('|').append(rule.getName())
+                     .append('|').append(rule.getLanguage().getTerseName())
+                     .append('|').append(getVersion(rule.getMinimumLanguageVersion()))
+                     .append('|').append(getVersion(rule.getMaximumLanguageVersion()))
+                     .append('|').append(rule.getPriority().getPriority())
+                     .append('|').append(rule.getMessage());
+        for (final PropertyDescriptor<?> descriptor : rule.getPropertyDescriptors()) {
+            configuration.append('|').append(descriptor.name()).append('=').append(rule.getProperty(descriptor));
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(configuration.toString().getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static String getVersion(final LanguageVersion version) {
+        return version == null ? "" : version.getVersion();
+    }
+
+    /**
+     * Returns rulesets, which only contain the rules accepted by the given filter.
+     * The rule instances are shared with these rulesets.
+     *
+     * @param filter The filter for the rules to keep
+     *
+     * @return These rulesets, if all of the rules are accepted
+     */
+    /* package */ RuleSets filterRules(final Filter<Rule> filter) {
+        final List<Rule> acceptedRules = new ArrayList<>();
+        for (final RuleSet ruleSet : ruleSets) {
+            for (final Rule rule : ruleSet.getRules()) {
+                if (filter.filter(rule)) {
+                    acceptedRules.add(rule);
+                }
+            }
+        }
+        if (acceptedRules.size() == ruleCount()) {
+            return this;
+        }
+
+        final Set<Rule> accepted = Collections.newSetFromMap(new IdentityHashMap<Rule, Boolean>());
+        accepted.addAll(acceptedRules);
+        final RuleSets filtered = new RuleSets();
+        for (final RuleSet ruleSet : ruleSets) {
+            final RuleSetBuilder builder = new RuleSetBuilder(ruleSet.getChecksum())
+                    .withName(ruleSet.getName())
+                    .withDescription(ruleSet.getDescription())
+                    .withFileName(ruleSet.getFileName())
+                    .setExcludePatterns(ruleSet.getExcludePatterns())
+                    .setIncludePatterns(ruleSet.getIncludePatterns());
+            for (final Rule rule : ruleSet.getRules()) {
+                if (accepted.contains(rule)) {
+                    builder.addRule(rule);
+                }
+            }
+            filtered.addRuleSet(builder.build());
+        }
+        return filtered;
+    }
 }
@@ -8,27 +8,45 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import net.sourceforge.pmd.annotation.Experimental;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.cache.AbstractAnalysisCache;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageVersion;
-import net.sourceforge.pmd.lang.LanguageVersionHandler;
 import net.sourceforge.pmd.lang.Parser;
-import net.sourceforge.pmd.lang.VisitorStarter;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.ParseException;
 import net.sourceforge.pmd.lang.xpath.Initializer;
+import net.sourceforge.pmd.processor.AstProcessingStage;
+import net.sourceforge.pmd.processor.DefaultAstProcessingStage;
+import net.sourceforge.pmd.util.filter.Filter;
 
 public class SourceCodeProcessor {
 
     private final PMDConfiguration configuration;
+    private final List<AstProcessingStage> stages;
 
     public SourceCodeProcessor(PMDConfiguration configuration) {
+        this(configuration, DefaultAstProcessingStage.getDefaultStages());
+    }
+
+    /**
+     * Creates a processor, which runs the given stages on each file between
+     * parsing and rule application, instead of the default ones.
+     *
+     * @param configuration The configuration
+     * @param stages        The stages to run, in order
+     */
+    @Experimental
+    public SourceCodeProcessor(PMDConfiguration configuration, List<? extends AstProcessingStage> stages) {
         this.configuration = configuration;
+        this.stages = new ArrayList<>(stages);
     }
 
     /**
@@ -91,9 +109,11 @@ public class SourceCodeProcessor {
                 return;
             }
 
+            // Only apply the rules whose results are not cached
+            final RuleSets rulesToApply = getRulesToApply(ruleSets, ctx);
             try {
-                ruleSets.start(ctx);
-                processSource(sourceCode, ruleSets, ctx);
+                rulesToApply.start(ctx);
+                processSource(sourceCode, rulesToApply, ctx);
             } catch (ParseException pe) {
                 configuration.getAnalysisCache().analysisFailed(ctx.getSourceCodeFile());
                 throw new PMDException("Error while parsing " + ctx.getSourceCodeFilename(), pe);
@@ -101,84 +121,54 @@ public class SourceCodeProcessor {
                 configuration.getAnalysisCache().analysisFailed(ctx.getSourceCodeFile());
                 throw new PMDException("Error while processing " + ctx.getSourceCodeFilename(), e);
             } finally {
-                ruleSets.end(ctx);
+                rulesToApply.end(ctx);
             }
         }
     }
 
-    private Node parse(RuleContext ctx, Reader sourceCode, Parser parser) {
-        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.PARSER)) {
-            Node rootNode = parser.parse(ctx.getSourceCodeFilename(), sourceCode);
-            ctx.getReport().suppress(parser.getSuppressMap());
-            return rootNode;
-        }
-    }
-
-    private void symbolFacade(Node rootNode, LanguageVersionHandler languageVersionHandler) {
-        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.SYMBOL_TABLE)) {
-            languageVersionHandler.getSymbolFacade(configuration.getClassLoader()).start(rootNode);
+    private RuleSets getRulesToApply(RuleSets ruleSets, final RuleContext ctx) {
+        if (!(configuration.getAnalysisCache() instanceof AbstractAnalysisCache)) {
+            // other caches can only tell whether all the results of a file are up to date
+            return ruleSets;
         }
-    }
-
-    private void resolveQualifiedNames(Node rootNode, LanguageVersionHandler handler) {
-        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.QUALIFIED_NAME_RESOLUTION)) {
-            handler.getQualifiedNameResolutionFacade(configuration.getClassLoader()).start(rootNode);
-        }
-    }
-
-    // private ParserOptions getParserOptions(final LanguageVersionHandler
-    // languageVersionHandler) {
-    // // TODO Handle Rules having different parser options.
-    // ParserOptions parserOptions =
-    // languageVersionHandler.getDefaultParserOptions();
-    // parserOptions.setSuppressMarker(configuration.getSuppressMarker());
-    // return parserOptions;
-    // }
-
-    private void usesDFA(LanguageVersion languageVersion, Node rootNode, RuleSets ruleSets, Language language) {
-        if (ruleSets.usesDFA(language)) {
-            try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.DFA)) {
-                VisitorStarter dataFlowFacade = languageVersion.getLanguageVersionHandler().getDataFlowFacade();
-                dataFlowFacade.start(rootNode);
+        final AbstractAnalysisCache analysisCache = (AbstractAnalysisCache) configuration.getAnalysisCache();
+        final RuleSets rulesToApply = ruleSets.filterRules(new Filter<Rule>() {
+            @Override
+            public boolean filter(Rule rule) {
+                return !analysisCache.isRuleUpToDate(ctx.getSourceCodeFile(), rule);
             }
-        }
-    }
-
-    private void usesTypeResolution(LanguageVersion languageVersion, Node rootNode, RuleSets ruleSets,
-            Language language) {
+        });
 
-        if (ruleSets.usesTypeResolution(language)) {
-            try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.TYPE_RESOLUTION)) {
-                languageVersion.getLanguageVersionHandler().getTypeResolutionFacade(configuration.getClassLoader())
-                        .start(rootNode);
+        if (rulesToApply.ruleCount() < ruleSets.ruleCount()) {
+            // the file is unchanged, but some rules changed
+            for (final RuleViolation rv : analysisCache.getCachedViolations(ctx.getSourceCodeFile())) {
+                ctx.getReport().addRuleViolation(rv);
             }
         }
+        return rulesToApply;
     }
 
-
-    private void usesMultifile(Node rootNode, LanguageVersionHandler languageVersionHandler, RuleSets ruleSets,
-                               Language language) {
-
-        if (ruleSets.usesMultifile(language)) {
-            try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.MULTIFILE_ANALYSIS)) {
-                languageVersionHandler.getMultifileFacade().start(rootNode);
-            }
+    private Node parse(RuleContext ctx, Reader sourceCode, Parser parser) {
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.PARSER)) {
+            Node rootNode = parser.parse(ctx.getSourceCodeFilename(), sourceCode);
+            ctx.getReport().suppress(parser.getSuppressMap());
+            return rootNode;
         }
     }
 
-
     private void processSource(Reader sourceCode, RuleSets ruleSets, RuleContext ctx) {
         LanguageVersion languageVersion = ctx.getLanguageVersion();
-        LanguageVersionHandler languageVersionHandler = languageVersion.getLanguageVersionHandler();
+        Language language = languageVersion.getLanguage();
         Parser parser = PMD.parserFor(languageVersion, configuration);
 
         Node rootNode = parse(ctx, sourceCode, parser);
-        resolveQualifiedNames(rootNode, languageVersionHandler);
-        symbolFacade(rootNode, languageVersionHandler);
-        Language language = languageVersion.getLanguage();
-        usesDFA(languageVersion, rootNode, ruleSets, language);
-        usesTypeResolution(languageVersion, rootNode, ruleSets, language);
-        usesMultifile(rootNode, languageVersionHandler, ruleSets, language);
+        for (AstProcessingStage stage : stages) {
+            if (stage.isRequired(ruleSets, language)) {
+                try (TimedOperation to = TimeTracker.startOperation(stage.getCategory())) {
+                    stage.processAST(rootNode, languageVersion, configuration.getClassLoader());
+                }
+            }
+        }
 
         List<Node> acus = Collections.singletonList(rootNode);
         ruleSets.apply(acus, ctx, language);
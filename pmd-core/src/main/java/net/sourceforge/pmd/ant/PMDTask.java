@@ -16,6 +16,7 @@ import org.apache.tools.ant.types.Path;
 import org.apache.tools.ant.types.Reference;
 
 import net.sourceforge.pmd.ant.internal.PMDTaskImpl;
+import net.sourceforge.pmd.cache.ContentAddressedAnalysisCache;
 
 public class PMDTask extends Task {
 
@@ -36,6 +37,9 @@ public class PMDTask extends Task {
     private String failuresPropertyName;
     private SourceLanguage sourceLanguage;
     private String cacheLocation;
+    private boolean mappedCache;
+    private boolean sharedCache;
+    private int sharedCacheSize = (int) (ContentAddressedAnalysisCache.DEFAULT_MAX_SIZE / (1024 * 1024));
     private boolean noCache;
     private final Collection<RuleSetWrapper> nestedRules = new ArrayList<>();
 
@@ -73,6 +77,10 @@ public class PMDTask extends Task {
             }
             rulesetFiles = getNestedRuleSetFiles();
         }
+
+        if (sharedCacheSize <= 0) {
+            throw new BuildException("sharedCacheSize must be positive");
+        }
     }
 
     private String getNestedRuleSetFiles() {
@@ -257,6 +265,33 @@ public class PMDTask extends Task {
     }
 
 
+    public boolean isMappedCache() {
+        return mappedCache;
+    }
+
+    public void setMappedCache(boolean mappedCache) {
+        this.mappedCache = mappedCache;
+    }
+
+
+    public boolean isSharedCache() {
+        return sharedCache;
+    }
+
+    public void setSharedCache(boolean sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+
+
+    public int getSharedCacheSize() {
+        return sharedCacheSize;
+    }
+
+    public void setSharedCacheSize(int sharedCacheSize) {
+        this.sharedCacheSize = sharedCacheSize;
+    }
+
+
     public boolean isNoCache() {
         return noCache;
     }
@@ -77,7 +77,11 @@ public class PMDTaskImpl {
         configuration.setThreads(task.getThreads());
         this.failuresPropertyName = task.getFailuresPropertyName();
         configuration.setMinimumPriority(RulePriority.valueOf(task.getMinimumPriority()));
-        configuration.setAnalysisCacheLocation(task.getCacheLocation());
+        if (task.isSharedCache()) {
+            configuration.setSharedAnalysisCacheLocation(task.getCacheLocation(), task.getSharedCacheSize() * 1024L * 1024);
+        } else {
+            configuration.setAnalysisCacheLocation(task.getCacheLocation(), task.isMappedCache());
+        }
         configuration.setIgnoreIncrementalAnalysis(task.isNoCache());
 
         SourceLanguage version = task.getSourceLanguage();
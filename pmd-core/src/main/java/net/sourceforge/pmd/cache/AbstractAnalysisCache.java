@@ -7,27 +7,36 @@ package net.sourceforge.pmd.cache;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.Adler32;
-import java.util.zip.CheckedInputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 
 import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.Rule;
@@ -48,6 +57,13 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     protected long rulesetChecksum;
     protected long auxClassPathChecksum;
     protected long executionClassPathChecksum;
+    /** The checksum of each rule, by rule key. */
+    protected final Map<String, Long> ruleChecksums = new HashMap<>();
+    /** The keys of the rules, which changed since the cache was written. */
+    private final Set<String> staleRules = new HashSet<>();
+    private boolean rulesetChanged;
+    /** The fingerprint of each classpath entry, by URL, which is reused while the entry is unchanged. */
+    /* package */ final Map<String, ClassPathEntryFingerprint> classPathFingerprints = new HashMap<>();
 
     /**
      * Creates a new empty cache
@@ -68,12 +84,15 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
 
         // is this a known file? has it changed?
-        final boolean result = analysisResult != null
+        final boolean fileUpToDate = analysisResult != null
                 && analysisResult.getFileChecksum() == updatedResult.getFileChecksum();
+        final boolean result = fileUpToDate && staleRules.isEmpty();
 
         if (LOG.isLoggable(Level.FINE)) {
             if (result) {
                 LOG.fine("Incremental Analysis cache HIT");
+            } else if (fileUpToDate) {
+                LOG.fine("Incremental Analysis cache PARTIAL HIT - rules changed");
             } else {
                 LOG.fine("Incremental Analysis cache MISS - "
                         + (analysisResult != null ? "file changed" : "no previous result found"));
@@ -83,6 +102,28 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         return result;
     }
 
+    /**
+     * Checks if the cached violations of a given rule on a given file are up to date, even though
+     * the file itself is not {@link #isUpToDate(File) up to date}. This is the case when neither
+     * the file nor the rule changed, but some other rules have been added or changed since the file
+     * was cached. Only the rules which are not up to date need to be applied on the file, the
+     * violations of the other ones are retrieved with {@link #getCachedViolations(File)}.
+     * Make sure to call {@link #isUpToDate(File)} first.
+     *
+     * @param sourceFile The file to check in the cache
+     * @param rule The rule to check in the cache
+     * @return True if the cached violations of the rule can be used, false otherwise
+     * @since 6.17.0
+     */
+    public boolean isRuleUpToDate(final File sourceFile, final Rule rule) {
+        final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
+        final AnalysisResult updatedResult = updatedResultsCache.get(sourceFile.getPath());
+
+        return analysisResult != null && updatedResult != null
+                && analysisResult.getFileChecksum() == updatedResult.getFileChecksum()
+                && !staleRules.contains(CachedRuleMapper.getRuleKey(rule));
+    }
+
     @Override
     public List<RuleViolation> getCachedViolations(final File sourceFile) {
         final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
@@ -92,7 +133,27 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
             return Collections.emptyList();
         }
 
-        return analysisResult.getViolations();
+        if (!rulesetChanged) {
+            return analysisResult.getViolations();
+        }
+
+        // drop the violations of changed and removed rules
+        final List<RuleViolation> violations = new ArrayList<>();
+        for (final RuleViolation rv : analysisResult.getViolations()) {
+            final Rule rule = rv.getRule();
+            if (rule != null && !staleRules.contains(CachedRuleMapper.getRuleKey(rule))) {
+                violations.add(rv);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Returns true if the rulesets changed, but the cached results of the unchanged rules are still valid.
+     * In this case, the violations of the changed and removed rules are dropped from the cached violations.
+     */
+    protected boolean isRulesetChanged() {
+        return rulesetChanged;
     }
 
     @Override
@@ -112,15 +173,31 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     public void checkValidity(final RuleSets ruleSets, final ClassLoader auxclassPathClassLoader) {
         boolean cacheIsValid = cacheExists();
 
+        final Map<String, Long> currentRuleChecksums = computeRuleChecksums(ruleSets);
+        staleRules.clear();
+        rulesetChanged = false;
         if (cacheIsValid && ruleSets.getChecksum() != rulesetChecksum) {
-            LOG.info("Analysis cache invalidated, rulesets changed.");
-            cacheIsValid = false;
+            if (ruleChecksums.isEmpty()) {
+                LOG.info("Analysis cache invalidated, rulesets changed.");
+                cacheIsValid = false;
+            } else {
+                // only the results of the new and changed rules are invalid
+                for (final Map.Entry<String, Long> entry : currentRuleChecksums.entrySet()) {
+                    if (!entry.getValue().equals(ruleChecksums.get(entry.getKey()))) {
+                        staleRules.add(entry.getKey());
+                    }
+                }
+                rulesetChanged = true;
+                LOG.info("Analysis cache partially invalidated, rulesets changed. " + staleRules.size()
+                        + " new or changed rules need to be applied on all files.");
+            }
         }
 
+        final Map<String, ClassPathEntryFingerprint> currentFingerprints = new ConcurrentHashMap<>();
         final long currentAuxClassPathChecksum;
         if (auxclassPathClassLoader instanceof URLClassLoader) {
             final URLClassLoader urlClassLoader = (URLClassLoader) auxclassPathClassLoader;
-            currentAuxClassPathChecksum = computeClassPathHash(urlClassLoader.getURLs());
+            currentAuxClassPathChecksum = computeClassPathHash(currentFingerprints, urlClassLoader.getURLs());
 
             if (cacheIsValid && currentAuxClassPathChecksum != auxClassPathChecksum) {
                 // Do we even care?
@@ -136,7 +213,7 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
             currentAuxClassPathChecksum = 0;
         }
 
-        final long currentExecutionClassPathChecksum = computeClassPathHash(getClassPathEntries());
+        final long currentExecutionClassPathChecksum = computeClassPathHash(currentFingerprints, getClassPathEntries());
         if (cacheIsValid && currentExecutionClassPathChecksum != executionClassPathChecksum) {
             LOG.info("Analysis cache invalidated, execution classpath changed.");
             cacheIsValid = false;
@@ -145,15 +222,32 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         if (!cacheIsValid) {
             // Clear the cache
             fileResultsCache.clear();
+            staleRules.clear();
+            rulesetChanged = false;
         }
 
         // Update the local checksums
         rulesetChecksum = ruleSets.getChecksum();
+        ruleChecksums.clear();
+        ruleChecksums.putAll(currentRuleChecksums);
         auxClassPathChecksum = currentAuxClassPathChecksum;
         executionClassPathChecksum = currentExecutionClassPathChecksum;
+        classPathFingerprints.clear();
+        classPathFingerprints.putAll(currentFingerprints);
         ruleMapper.initialize(ruleSets);
     }
 
+    private static Map<String, Long> computeRuleChecksums(final RuleSets ruleSets) {
+        final Map<String, Long> checksums = new HashMap<>();
+        for (final Map.Entry<Rule, Long> entry : ruleSets.getRuleChecksums().entrySet()) {
+            final String key = CachedRuleMapper.getRuleKey(entry.getKey());
+            final Long previous = checksums.get(key);
+            // the same rule may be configured more than once, combine them regardless of their order
+            checksums.put(key, previous == null ? entry.getValue() : previous + entry.getValue());
+        }
+        return checksums;
+    }
+
     private static boolean isClassPathWildcard(String entry) {
         return entry.endsWith("/*") || entry.endsWith("\\*");
     }
@@ -163,23 +257,14 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         final String[] classpathEntries = classpath.split(File.pathSeparator);
         final List<URL> entries = new ArrayList<>();
 
-        final SimpleFileVisitor<Path> fileVisitor = new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(final Path file,
-                    final BasicFileAttributes attrs) throws IOException {
-                if (!attrs.isSymbolicLink()) { // Broken link that can't be followed
-                    entries.add(file.toUri().toURL());
-                }
-                return FileVisitResult.CONTINUE;
-            }
-        };
         final SimpleFileVisitor<Path> jarFileVisitor = new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(final Path file,
                     final BasicFileAttributes attrs) throws IOException {
                 String extension = FilenameUtils.getExtension(file.toString());
-                if ("jar".equalsIgnoreCase(extension)) {
-                    fileVisitor.visitFile(file, attrs);
+                // skip broken links that can't be followed
+                if ("jar".equalsIgnoreCase(extension) && !attrs.isSymbolicLink()) {
+                    entries.add(file.toUri().toURL());
                 }
                 return FileVisitResult.CONTINUE;
             }
@@ -191,11 +276,9 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
                 if (isClassPathWildcard(entry)) {
                     Files.walkFileTree(new File(entry.substring(0, entry.length() - 1)).toPath(),
                             EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, jarFileVisitor);
-                } else if (f.isFile()) {
-                    entries.add(f.toURI().toURL());
                 } else {
-                    Files.walkFileTree(f.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
-                            fileVisitor);
+                    // directories are fingerprinted as a whole
+                    entries.add(f.toURI().toURL());
                 }
             }
         } catch (final IOException e) {
@@ -206,23 +289,70 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         return entries.toArray(new URL[0]);
     }
 
-    private long computeClassPathHash(final URL... classpathEntry) {
-        final Adler32 adler32 = new Adler32();
-        for (final URL url : classpathEntry) {
-            try (CheckedInputStream inputStream = new CheckedInputStream(url.openStream(), adler32)) {
-                // Just read it, the CheckedInputStream will update the checksum on it's own
-                while (IOUtils.skip(inputStream, Long.MAX_VALUE) == Long.MAX_VALUE) {
-                    // just loop
+    /**
+     * Computes a checksum of the given classpath entries. The fingerprints of the entries
+     * are computed in parallel, and those of unchanged files are reused from the cache.
+     */
+    private long computeClassPathHash(final Map<String, ClassPathEntryFingerprint> fingerprints,
+            final URL... classpathEntry) {
+        final List<Future<ClassPathEntryFingerprint>> futures = new ArrayList<>(classpathEntry.length);
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (final URL url : classpathEntry) {
+                futures.add(executor.submit(new Callable<ClassPathEntryFingerprint>() {
+                    @Override
+                    public ClassPathEntryFingerprint call() throws IOException {
+                        return computeFingerprint(fingerprints, url);
+                    }
+                }));
+            }
+
+            long checksum = 1;
+            for (int i = 0; i < classpathEntry.length; i++) {
+                final ClassPathEntryFingerprint fingerprint = getFingerprint(futures.get(i), classpathEntry[i]);
+                if (fingerprint != null) {
+                    checksum = checksum * 31 + fingerprint.getChecksum();
                 }
-            } catch (final FileNotFoundException ignored) {
+            }
+            return checksum;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ClassPathEntryFingerprint computeFingerprint(final Map<String, ClassPathEntryFingerprint> fingerprints,
+            final URL url) throws IOException {
+        final File file = FileUtils.toFile(url);
+        if (file != null && (file.isFile() || file.isDirectory())) {
+            final String key = url.toString();
+            final ClassPathEntryFingerprint previous = classPathFingerprints.get(key);
+            final ClassPathEntryFingerprint fingerprint = previous != null && previous.isUpToDate(file)
+                    ? previous : ClassPathEntryFingerprint.forFile(file);
+            fingerprints.put(key, fingerprint);
+            return fingerprint;
+        }
+
+        try (InputStream stream = url.openStream()) {
+            return ClassPathEntryFingerprint.forContents(stream);
+        }
+    }
+
+    private static ClassPathEntryFingerprint getFingerprint(final Future<ClassPathEntryFingerprint> future,
+            final URL url) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof FileNotFoundException || e.getCause() instanceof NoSuchFileException) {
                 LOG.warning("Auxclasspath entry " + url.toString() + " doesn't exist, ignoring it");
-            } catch (final IOException e) {
-                // Can this even happen?
-                LOG.log(Level.SEVERE, "Incremental analysis can't check auxclasspath contents", e);
-                throw new RuntimeException(e);
+                return null;
             }
+            // Can this even happen?
+            LOG.log(Level.SEVERE, "Incremental analysis can't check auxclasspath contents", e.getCause());
+            throw new RuntimeException(e.getCause());
         }
-        return adler32.getValue();
     }
 
     @Override
@@ -36,6 +36,9 @@ public interface AnalysisCache extends ThreadSafeReportListener {
 
     /**
      * Retrieves cached violations for the given file. Make sure to call {@link #isUpToDate(File)} first.
+     * If only some of the rules are up to date, see
+     * {@link AbstractAnalysisCache#isRuleUpToDate(File, net.sourceforge.pmd.Rule)},
+     * only their violations are retrieved.
      * @param sourceFile The file to check in the cache
      * @return The list of cached violations.
      */
@@ -50,7 +53,8 @@ public interface AnalysisCache extends ThreadSafeReportListener {
     /**
      * Checks if the cache is valid for the configured rulesets and class loader.
      * If the provided rulesets and classpath don't match those of the cache, the
-     * cache is invalidated. This needs to be called before analysis, as it
+     * cache is invalidated. If only some rules changed, only their cached results are
+     * invalidated. This needs to be called before analysis, as it
      * conditions the good behaviour of {@link #isUpToDate(File)}.
      *
      * @param ruleSets The rulesets configured for this analysis.
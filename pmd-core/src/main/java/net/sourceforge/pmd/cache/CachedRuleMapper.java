@@ -11,11 +11,23 @@ import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleSets;
 
 /**
- * A mapper from rule class names to rule instances for cached rules.
+ * A mapper from rule class names or rule keys to rule instances for cached rules.
  */
 public class CachedRuleMapper {
 
     private final Map<String, Rule> ruleByClassName = new HashMap<>();
+    private final Map<String, Rule> ruleByKey = new HashMap<>();
+
+    /**
+     * Returns the key identifying the given rule in the cache. Unlike the rule class
+     * name, it distinguishes between rules sharing an implementation, such as XPath rules.
+     * @param rule The rule
+     * @return The key of the rule
+     * @since 6.17.0
+     */
+    public static String getRuleKey(final Rule rule) {
+        return rule.getRuleClass() + '#' + rule.getName();
+    }
 
     /**
      * Finds a rule instance for the given rule class name
@@ -26,6 +38,16 @@ public class CachedRuleMapper {
         return ruleByClassName.get(className);
     }
 
+    /**
+     * Finds a rule instance for the given rule key
+     * @param key The key of the rule that generated the cache entry, see {@link #getRuleKey(Rule)}
+     * @return The requested rule
+     * @since 6.17.0
+     */
+    public Rule getRuleForKey(final String key) {
+        return ruleByKey.get(key);
+    }
+
     /**
      * Initialize the mapper with the given rulesets.
      * @param rs The rulesets from which to retrieve rules.
@@ -33,6 +55,7 @@ public class CachedRuleMapper {
     public void initialize(final RuleSets rs) {
         for (final Rule r : rs.getAllRules()) {
             ruleByClassName.put(r.getRuleClass(), r);
+            ruleByKey.put(getRuleKey(r), r);
         }
     }
 }
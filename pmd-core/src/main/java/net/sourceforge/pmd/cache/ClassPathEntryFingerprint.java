@@ -0,0 +1,225 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.Adler32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The fingerprint of a classpath entry. The fingerprint of a jar file is computed
+ * from the names, sizes and CRCs of its central directory, which avoids reading
+ * its contents. The fingerprint of a directory combines the names and contents of
+ * all the files below it. Other entries are fingerprinted by their contents. The size
+ * and modification time of an entry are kept, so that the fingerprint of an unchanged
+ * entry can be reused without reading it again. For a directory, these are the total
+ * size of its files and a checksum of their names, sizes and modification times.
+ */
+/* package */ final class ClassPathEntryFingerprint {
+
+    private final long size;
+    private final long lastModified;
+    private final long checksum;
+
+    private ClassPathEntryFingerprint(final long size, final long lastModified, final long checksum) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Returns the checksum of the entry.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Returns true if the given file still has the size and the modification time of this entry.
+     */
+    public boolean isUpToDate(final File file) throws IOException {
+        if (size < 0) {
+            return false;
+        }
+        if (file.isDirectory()) {
+            final List<Path> files = listFiles(file.toPath());
+            return computeTotalSize(files) == size && computeMetadataChecksum(file.toPath(), files) == lastModified;
+        }
+        return file.length() == size && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Computes the fingerprint of the given classpath file.
+     *
+     * @param file The file to fingerprint
+     * @return The fingerprint
+     * @throws IOException If the file can't be read
+     */
+    /* package */ static ClassPathEntryFingerprint forFile(final File file) throws IOException {
+        if (file.isDirectory()) {
+            return forDirectory(file.toPath());
+        }
+
+        // read the metadata first, a concurrent change will be noticed on the next analysis
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+
+        final String extension = FilenameUtils.getExtension(file.getName());
+        if ("jar".equalsIgnoreCase(extension) || "zip".equalsIgnoreCase(extension)) {
+            try {
+                return new ClassPathEntryFingerprint(size, lastModified, computeCentralDirectoryChecksum(file));
+            } catch (final ZipException ignored) {
+                // not an actual zip file, fall back to the contents
+            }
+        }
+
+        try (InputStream stream = Files.newInputStream(file.toPath())) {
+            return new ClassPathEntryFingerprint(size, lastModified, computeContentChecksum(stream));
+        }
+    }
+
+    /**
+     * Computes the fingerprint of the given contents of a classpath entry, which can't be reused.
+     *
+     * @param stream The contents of the entry
+     * @return The fingerprint
+     * @throws IOException If the contents can't be read
+     */
+    /* package */ static ClassPathEntryFingerprint forContents(final InputStream stream) throws IOException {
+        return new ClassPathEntryFingerprint(-1, -1, computeContentChecksum(stream));
+    }
+
+    private static ClassPathEntryFingerprint forDirectory(final Path directory) throws IOException {
+        final List<Path> files = listFiles(directory);
+        final long size = computeTotalSize(files);
+        final long metadataChecksum = computeMetadataChecksum(directory, files);
+
+        final Adler32 adler32 = new Adler32();
+        for (final Path file : files) {
+            adler32.update(directory.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            try (InputStream stream = Files.newInputStream(file)) {
+                updateChecksum(adler32, computeContentChecksum(stream));
+            }
+        }
+        return new ClassPathEntryFingerprint(size, metadataChecksum, adler32.getValue());
+    }
+
+    /**
+     * Lists the files below the given directory, in a stable order.
+     */
+    private static List<Path> listFiles(final Path directory) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                        if (!attrs.isSymbolicLink()) { // Broken link that can't be followed
+                            files.add(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+        Collections.sort(files);
+        return files;
+    }
+
+    private static long computeTotalSize(final List<Path> files) throws IOException {
+        long size = 0;
+        for (final Path file : files) {
+            size += Files.size(file);
+        }
+        return size;
+    }
+
+    private static long computeMetadataChecksum(final Path directory, final List<Path> files) throws IOException {
+        final Adler32 adler32 = new Adler32();
+        for (final Path file : files) {
+            adler32.update(directory.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            updateChecksum(adler32, Files.size(file));
+            updateChecksum(adler32, Files.getLastModifiedTime(file).toMillis());
+        }
+        return adler32.getValue();
+    }
+
+    private static long computeCentralDirectoryChecksum(final File file) throws IOException {
+        final Adler32 adler32 = new Adler32();
+        try (ZipFile zipFile = new ZipFile(file)) {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                adler32.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                updateChecksum(adler32, entry.getCrc());
+                updateChecksum(adler32, entry.getSize());
+            }
+        }
+        return adler32.getValue();
+    }
+
+    private static void updateChecksum(final Adler32 adler32, final long value) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            adler32.update((int) (value >>> shift));
+        }
+    }
+
+    private static long computeContentChecksum(final InputStream stream) throws IOException {
+        try (CheckedInputStream inputStream = new CheckedInputStream(stream, new Adler32())) {
+            // Just read it, the CheckedInputStream will update the checksum on it's own
+            while (IOUtils.skip(inputStream, Long.MAX_VALUE) == Long.MAX_VALUE) {
+                // just loop
+            }
+            return inputStream.getChecksum().getValue();
+        }
+    }
+
+    /**
+     * Helper method to store a fingerprint in an output stream.
+     *
+     * @param stream The stream on which to store the fingerprint.
+     * @param fingerprint The fingerprint to store.
+     * @throws IOException
+     */
+    /* package */ static void storeToStream(final DataOutputStream stream,
+            final ClassPathEntryFingerprint fingerprint) throws IOException {
+        stream.writeLong(fingerprint.size);
+        stream.writeLong(fingerprint.lastModified);
+        stream.writeLong(fingerprint.checksum);
+    }
+
+    /**
+     * Helper method to load a fingerprint from an input stream.
+     *
+     * @param stream The stream from which to load the fingerprint.
+     * @return The loaded fingerprint.
+     * @throws IOException
+     */
+    /* package */ static ClassPathEntryFingerprint loadFromStream(final DataInputStream stream) throws IOException {
+        final long size = stream.readLong();
+        final long lastModified = stream.readLong();
+        final long checksum = stream.readLong();
+        return new ClassPathEntryFingerprint(size, lastModified, checksum);
+    }
+}
@@ -0,0 +1,359 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+
+/**
+ * An analysis cache, which stores the results of each file in a directory, keyed
+ * by a hash of the file contents, the rulesets and the relevant classpaths, instead
+ * of by the path of the file. This allows different checkouts, branches or build agents
+ * to share a single cache directory: a file is up to date if any analysis already saw
+ * the same contents with the same configuration, regardless of where it was located.
+ * Only the rulesets whose include and exclude patterns match the path of a file are
+ * part of its key, so identical files at an included and an excluded path don't share
+ * an entry.
+ *
+ * <p>Entries are written to a temporary file and atomically moved in place, so multiple
+ * analyses can use the same directory concurrently. When the cache is persisted, the
+ * least recently used entries are evicted until the directory fits in the configured
+ * maximum size. Entries are marked as used whenever they produce a cache hit.
+ *
+ * <p>The results of rules, whose violations depend on the path of the file rather than
+ * on its contents, may be wrongly reused for a file with the same contents at a different
+ * location.
+ *
+ * @since 6.17.0
+ */
+public class ContentAddressedAnalysisCache extends AbstractAnalysisCache {
+
+    /** The default maximum size of the cache directory, in bytes. */
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final File cacheDirectory;
+    private final long maxSize;
+
+    /** The entry key of each file analyzed in this run. */
+    private final ConcurrentMap<String, String> entryKeys = new ConcurrentHashMap<>();
+    /** The files whose results have been found in the cache. */
+    private final ConcurrentMap<String, Boolean> cachedFiles = new ConcurrentHashMap<>();
+    private String configurationKey = "";
+    /** The rulesets being applied, whose include and exclude patterns select the rules applying to a file. */
+    private RuleSet[] ruleSets = new RuleSet[0];
+    /** The checksum of the rules of each ruleset, in the same order as {@link #ruleSets}. */
+    private long[] ruleSetChecksums = new long[0];
+
+    /**
+     * Creates a new cache backed by the given directory, which is created if needed,
+     * and which holds at most {@link #DEFAULT_MAX_SIZE} bytes.
+     *
+     * @param cacheDirectory The directory in which to store analysis results
+     */
+    public ContentAddressedAnalysisCache(final File cacheDirectory) {
+        this(cacheDirectory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a new cache backed by the given directory, which is created if needed.
+     *
+     * @param cacheDirectory The directory in which to store analysis results
+     * @param maxSize        The maximum size of the directory in bytes, before the least
+     *                       recently used entries are evicted
+     */
+    public ContentAddressedAnalysisCache(final File cacheDirectory, final long maxSize) {
+        super();
+        this.cacheDirectory = cacheDirectory;
+        this.maxSize = maxSize;
+
+        if (cacheDirectory.isFile()) {
+            LOG.severe("The configured cache location must be the path to a directory, but is a file.");
+        }
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        // only the entries are persisted, there are no checksums of a previous run to compare
+        return false;
+    }
+
+    @Override
+    public void checkValidity(final RuleSets ruleSets, final ClassLoader auxclassPathClassLoader) {
+        // computes the checksums, the cache itself is never invalidated,
+        // since the checksums are part of the key of each entry
+        super.checkValidity(ruleSets, auxclassPathClassLoader);
+
+        boolean usesAuxClassPath = false;
+        for (final Rule r : ruleSets.getAllRules()) {
+            if (r.isDfa() || r.isTypeResolution()) {
+                usesAuxClassPath = true;
+                break;
+            }
+        }
+
+        // the rulesets are part of the key of each file, since their
+        // include and exclude patterns depend on the path of the file
+        configurationKey = pmdVersion + '/' + executionClassPathChecksum
+            + '/' + (usesAuxClassPath ? auxClassPathChecksum : 0L);
+
+        final Map<Rule, Long> ruleChecksums = ruleSets.getRuleChecksums();
+        this.ruleSets = ruleSets.getAllRuleSets();
+        ruleSetChecksums = new long[this.ruleSets.length];
+        for (int i = 0; i < this.ruleSets.length; i++) {
+            long checksum = 1;
+            for (final Rule rule : this.ruleSets[i].getRules()) {
+                checksum = checksum * 31 + ruleChecksums.get(rule);
+            }
+            ruleSetChecksums[i] = checksum;
+        }
+    }
+
+    /**
+     * Computes the part of the key of the entry of the given file, which
+     * depends on the rules that apply to it.
+     */
+    private String computeRulesKey(final File sourceFile) {
+        final StringBuilder key = new StringBuilder(configurationKey);
+        for (int i = 0; i < ruleSets.length; i++) {
+            if (ruleSets[i].applies(sourceFile)) {
+                key.append('/').append(ruleSetChecksums[i]);
+            }
+        }
+        return key.toString();
+    }
+
+    @Override
+    public boolean isUpToDate(final File sourceFile) {
+        // There is a new file being analyzed, prepare entry in updated cache,
+        // the checksum of the file is not needed, the key of the entry replaces it
+        updatedResultsCache.put(sourceFile.getPath(), new AnalysisResult(0L, new ArrayList<RuleViolation>()));
+
+        final String key = computeEntryKey(sourceFile);
+        if (key == null) {
+            return false;
+        }
+        entryKeys.put(sourceFile.getPath(), key);
+
+        final File entry = entryFile(key);
+        final boolean result = entry.isFile();
+        if (result) {
+            cachedFiles.put(sourceFile.getPath(), Boolean.TRUE);
+            // mark as recently used
+            entry.setLastModified(System.currentTimeMillis());
+        }
+
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Incremental Analysis cache " + (result ? "HIT" : "MISS - no previous result found"));
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<RuleViolation> getCachedViolations(final File sourceFile) {
+        final String key = entryKeys.get(sourceFile.getPath());
+        if (key == null) {
+            return Collections.emptyList();
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(entryFile(key).toPath())))) {
+            final int countViolations = inputStream.readInt();
+            final List<RuleViolation> violations = new ArrayList<>(countViolations);
+            for (int i = 0; i < countViolations; i++) {
+                violations.add(CachedRuleViolation.loadFromStream(inputStream, sourceFile.getPath(), ruleMapper));
+            }
+            return violations;
+        } catch (final IOException e) {
+            // the entry may have been evicted concurrently, don't cache the result of this run
+            LOG.warning("Could not read analysis cache entry for " + sourceFile.getPath() + ": " + e.getMessage());
+            analysisFailed(sourceFile);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public void analysisFailed(final File sourceFile) {
+        super.analysisFailed(sourceFile);
+        entryKeys.remove(sourceFile.getPath());
+        cachedFiles.remove(sourceFile.getPath());
+    }
+
+    @Override
+    public void persist() {
+        if (cacheDirectory.isFile()) {
+            LOG.severe("Cannot persist the cache, the given path points to a file.");
+            return;
+        }
+
+        int stored = 0;
+        for (final Map.Entry<String, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+            final String key = entryKeys.get(resultEntry.getKey());
+            if (key == null || cachedFiles.containsKey(resultEntry.getKey())) {
+                // failed, or already stored
+                continue;
+            }
+            try {
+                store(entryFile(key), resultEntry.getValue().getViolations());
+                stored++;
+            } catch (final IOException e) {
+                LOG.severe("Could not persist analysis cache entry. " + e.getMessage());
+            }
+        }
+
+        evictLeastRecentlyUsed();
+        LOG.info("Analysis cache updated, " + stored + " entries added");
+    }
+
+    private void store(final File entry, final List<RuleViolation> violations) throws IOException {
+        final File parent = entry.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+
+        // concurrent writers never see partial entries of each other
+        final File tempFile = File.createTempFile(entry.getName(), ".tmp", parent);
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                outputStream.writeInt(violations.size());
+                for (final RuleViolation rv : violations) {
+                    CachedRuleViolation.storeToStream(outputStream, rv);
+                }
+            }
+            try {
+                Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries, until the size of the cache directory is within bounds.
+     */
+    private void evictLeastRecentlyUsed() {
+        final List<File> entries = new ArrayList<>();
+        long totalSize = 0;
+        final File[] subdirectories = cacheDirectory.listFiles();
+        if (subdirectories == null) {
+            return;
+        }
+        for (final File subdirectory : subdirectories) {
+            final File[] files = subdirectory.listFiles();
+            if (files != null) {
+                for (final File file : files) {
+                    if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                        entries.add(file);
+                        totalSize += file.length();
+                    }
+                }
+            }
+        }
+
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        // the modification time of an entry is updated on each cache hit
+        final File[] byLastUse = entries.toArray(new File[0]);
+        final Map<File, Long> lastUse = new HashMap<>();
+        for (final File entry : byLastUse) {
+            lastUse.put(entry, entry.lastModified());
+        }
+        Arrays.sort(byLastUse, new Comparator<File>() {
+            @Override
+            public int compare(final File left, final File right) {
+                return Long.compare(lastUse.get(left), lastUse.get(right));
+            }
+        });
+
+        for (int i = 0; i < byLastUse.length && totalSize > maxSize; i++) {
+            final long size = byLastUse[i].length();
+            try {
+                Files.delete(byLastUse[i].toPath());
+                totalSize -= size;
+            } catch (final NoSuchFileException ignored) {
+                // already evicted by a concurrent analysis
+                totalSize -= size;
+            } catch (final IOException e) {
+                LOG.warning("Could not evict analysis cache entry " + byLastUse[i] + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private File entryFile(final String key) {
+        return new File(new File(cacheDirectory, key.substring(0, 2)), key.substring(2) + ENTRY_SUFFIX);
+    }
+
+    /**
+     * Computes the key of the cache entry for the given file, which is a hash of the
+     * contents of the file, of the configuration and of the rules applying to the file.
+     *
+     * @return The key, or null if the file can't be read
+     */
+    private String computeEntryKey(final File sourceFile) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            digest.update(computeRulesKey(sourceFile).getBytes("UTF-8"));
+            try (InputStream stream = new DigestInputStream(
+                    new BufferedInputStream(Files.newInputStream(sourceFile.toPath())), digest)) {
+                final byte[] buffer = new byte[8192];
+                while (stream.read(buffer) != -1) {
+                    // just read it, the DigestInputStream will update the digest on it's own
+                }
+            }
+            return toHex(digest.digest());
+        } catch (final IOException e) {
+            // We don't really care, if it's unreadable
+            // the analysis will fail and report the error on it's own
+            return null;
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not supported", e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -16,7 +16,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.RuleViolation;
 
 /**
@@ -24,6 +23,12 @@ import net.sourceforge.pmd.RuleViolation;
  */
 public class FileAnalysisCache extends AbstractAnalysisCache {
 
+    /**
+     * The version of the format of the cache file, which is stored together with the
+     * version of PMD. Increment it whenever the format changes.
+     */
+    private static final int FORMAT_VERSION = 2;
+
     private final File cacheFile;
 
     /**
@@ -49,13 +54,22 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
             ) {
                 final String cacheVersion = inputStream.readUTF();
 
-                if (PMDVersion.VERSION.equals(cacheVersion)) {
+                if (getCacheVersion().equals(cacheVersion)) {
                     // Cache seems valid, load the rest
 
                     // Get checksums
                     rulesetChecksum = inputStream.readLong();
                     auxClassPathChecksum = inputStream.readLong();
                     executionClassPathChecksum = inputStream.readLong();
+                    final int countRules = inputStream.readInt();
+                    for (int i = 0; i < countRules; i++) {
+                        ruleChecksums.put(inputStream.readUTF(), inputStream.readLong());
+                    }
+                    final int countClassPathEntries = inputStream.readInt();
+                    for (int i = 0; i < countClassPathEntries; i++) {
+                        final String classPathEntry = inputStream.readUTF();
+                        classPathFingerprints.put(classPathEntry, ClassPathEntryFingerprint.loadFromStream(inputStream));
+                    }
 
                     // Cached results
                     while (inputStream.available() > 0) {
@@ -73,11 +87,15 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
 
                     LOG.info("Analysis cache loaded");
                 } else {
-                    LOG.info("Analysis cache invalidated, PMD version changed.");
+                    LOG.info("Analysis cache invalidated, PMD version or cache format changed.");
                 }
             } catch (final EOFException e) {
+                ruleChecksums.clear();
+                classPathFingerprints.clear();
                 LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
             } catch (final IOException e) {
+                ruleChecksums.clear();
+                classPathFingerprints.clear();
                 LOG.severe("Could not load analysis cache from file. " + e.getMessage());
             }
         } else if (cacheFile.isDirectory()) {
@@ -107,11 +125,21 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
             DataOutputStream outputStream = new DataOutputStream(
                 new BufferedOutputStream(Files.newOutputStream(cacheFile.toPath())))
         ) {
-            outputStream.writeUTF(pmdVersion);
+            outputStream.writeUTF(getCacheVersion());
 
             outputStream.writeLong(rulesetChecksum);
             outputStream.writeLong(auxClassPathChecksum);
             outputStream.writeLong(executionClassPathChecksum);
+            outputStream.writeInt(ruleChecksums.size());
+            for (final Map.Entry<String, Long> ruleEntry : ruleChecksums.entrySet()) {
+                outputStream.writeUTF(ruleEntry.getKey());
+                outputStream.writeLong(ruleEntry.getValue());
+            }
+            outputStream.writeInt(classPathFingerprints.size());
+            for (final Map.Entry<String, ClassPathEntryFingerprint> classPathEntry : classPathFingerprints.entrySet()) {
+                outputStream.writeUTF(classPathEntry.getKey());
+                ClassPathEntryFingerprint.storeToStream(outputStream, classPathEntry.getValue());
+            }
 
             for (final Map.Entry<String, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
                 final List<RuleViolation> violations = resultEntry.getValue().getViolations();
@@ -139,4 +167,9 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
     protected boolean cacheExists() {
         return cacheFile.exists() && cacheFile.isFile() && cacheFile.length() > 0;
     }
+
+    private String getCacheVersion() {
+        // older caches only store the PMD version, so they don't match
+        return pmdVersion + '/' + FORMAT_VERSION;
+    }
 }
@@ -0,0 +1,426 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.RuleViolation;
+
+/**
+ * An analysis cache backed by a memory-mapped file. Unlike {@link FileAnalysisCache},
+ * only the index of the cached files is read when the cache is loaded. The violations
+ * of a file are decoded from the mapped file when they're requested, and the violations
+ * of files which are still up to date are copied over as raw bytes when the cache is
+ * persisted, instead of being decoded and encoded again.
+ *
+ * <p>The file format is not compatible with the one of {@link FileAnalysisCache}.
+ * It consists of a header, the violations of each file, and an index of the files,
+ * whose offset is stored in the last 8 bytes of the file. Offsets are 64 bit, and
+ * the file is mapped in chunks, since a single mapping can't exceed 2 GB.
+ *
+ * <p>The cache is persisted to a temporary file, which then replaces the cache file.
+ * Some platforms don't allow to replace a file which is still mapped. So if the cache
+ * file was mapped, the new cache is kept in a pending file next to it instead, which
+ * replaces the cache file the next time it's loaded, before it's mapped.
+ *
+ * @since 6.17.0
+ */
+public class MappedFileAnalysisCache extends AbstractAnalysisCache {
+
+    /** Identifies the format of the file, spells "PMDM". */
+    private static final int MAGIC = 0x504d444d;
+    /** The version of the file format, to be incremented when the layout changes. */
+    private static final int FORMAT_VERSION = 2;
+    /** The size of the mapped chunks of the cache file. */
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+    private final File cacheFile;
+    private final int chunkSize;
+    private final Set<String> upToDateFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private MappedFile mappedCache;
+
+    /**
+     * Creates a new cache backed by the given file, and attempts to load pre-existing data from it.
+     * @param cache The file on which to store analysis cache
+     */
+    public MappedFileAnalysisCache(final File cache) {
+        this(cache, DEFAULT_CHUNK_SIZE);
+    }
+
+    /** Visible for testing, so that large caches can be simulated with small chunks. */
+    MappedFileAnalysisCache(final File cache, final int chunkSize) {
+        super();
+        this.cacheFile = cache;
+        this.chunkSize = chunkSize;
+
+        loadFromFile(cache);
+    }
+
+    /**
+     * Maps the given file and loads its index.
+     * @param cacheFile The file which backs the analysis cache.
+     */
+    private void loadFromFile(final File cacheFile) {
+        final File pendingFile = getPendingFile();
+        if (pendingFile.isFile()) {
+            try {
+                Files.move(pendingFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (final IOException e) {
+                LOG.warning("Could not replace the analysis cache by the one of the last run. " + e.getMessage());
+            }
+        }
+
+        if (cacheExists()) {
+            try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+                // the mapping stays valid after the channel is closed
+                final MappedFile file = new MappedFile(channel, chunkSize);
+                final DataInputStream header = new DataInputStream(file.open(0, file.size));
+
+                if (header.readInt() != MAGIC || header.readInt() != FORMAT_VERSION) {
+                    LOG.info("Analysis cache invalidated, unknown cache file format.");
+                    return;
+                }
+
+                final String cacheVersion = header.readUTF();
+                if (!PMDVersion.VERSION.equals(cacheVersion)) {
+                    LOG.info("Analysis cache invalidated, PMD version changed.");
+                    return;
+                }
+
+                // Get checksums
+                rulesetChecksum = header.readLong();
+                auxClassPathChecksum = header.readLong();
+                executionClassPathChecksum = header.readLong();
+                final int countRules = header.readInt();
+                for (int i = 0; i < countRules; i++) {
+                    ruleChecksums.put(header.readUTF(), header.readLong());
+                }
+                final int countClassPathEntries = header.readInt();
+                for (int i = 0; i < countClassPathEntries; i++) {
+                    classPathFingerprints.put(header.readUTF(), ClassPathEntryFingerprint.loadFromStream(header));
+                }
+
+                // Index of cached results
+                final long indexOffset = new DataInputStream(file.open(file.size - 8, 8)).readLong();
+                final DataInputStream index = new DataInputStream(file.open(indexOffset, file.size - 8 - indexOffset));
+                final int countFiles = index.readInt();
+                for (int i = 0; i < countFiles; i++) {
+                    final String fileName = index.readUTF();
+                    final long checksum = index.readLong();
+                    final int countViolations = index.readInt();
+                    final long offset = index.readLong();
+                    final int length = index.readInt();
+
+                    fileResultsCache.put(fileName,
+                            new MappedAnalysisResult(fileName, checksum, countViolations, offset, length));
+                }
+
+                mappedCache = file;
+                LOG.info("Analysis cache loaded");
+            } catch (final IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                fileResultsCache.clear();
+                ruleChecksums.clear();
+                classPathFingerprints.clear();
+                LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
+            }
+        } else if (cacheFile.isDirectory()) {
+            LOG.severe("The configured cache location must be the path to a file, but is a directory.");
+        }
+    }
+
+    @Override
+    public boolean isUpToDate(final File sourceFile) {
+        final boolean upToDate = super.isUpToDate(sourceFile);
+        if (upToDate) {
+            upToDateFiles.add(sourceFile.getPath());
+        }
+        return upToDate;
+    }
+
+    @Override
+    public void analysisFailed(final File sourceFile) {
+        super.analysisFailed(sourceFile);
+        upToDateFiles.remove(sourceFile.getPath());
+    }
+
+    @Override
+    public void persist() {
+
+        if (cacheFile.isDirectory()) {
+            LOG.severe("Cannot persist the cache, the given path points to a directory.");
+            return;
+        }
+
+        final boolean cacheFileShouldBeCreated = !cacheFile.exists();
+        final File parentFile = cacheFile.getAbsoluteFile().getParentFile();
+
+        // Create directories missing along the way
+        if (cacheFileShouldBeCreated && parentFile != null && !parentFile.exists()) {
+            parentFile.mkdirs();
+        }
+
+        final File tempFile = new File(parentFile, cacheFile.getName() + ".tmp");
+        try {
+            writeTo(tempFile);
+            if (mappedCache != null) {
+                // the cache file is still mapped, it's replaced when the cache is loaded again
+                Files.move(tempFile.toPath(), getPendingFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                LOG.info("Analysis cache updated, it replaces the cache file on the next run");
+                return;
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            if (cacheFileShouldBeCreated) {
+                LOG.info("Analysis cache created");
+            } else {
+                LOG.info("Analysis cache updated");
+            }
+        } catch (final IOException e) {
+            LOG.severe("Could not persist analysis cache to file. " + e.getMessage());
+            tempFile.delete();
+        }
+    }
+
+    private void writeTo(final File file) throws IOException {
+        final List<Map.Entry<String, AnalysisResult>> entries = new ArrayList<>(updatedResultsCache.entrySet());
+        final int[] countViolations = new int[entries.size()];
+        final long[] offsets = new long[entries.size()];
+        final int[] lengths = new int[entries.size()];
+
+        try (
+            CountingOutputStream counter = new CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file.toPath())));
+            DataOutputStream outputStream = new DataOutputStream(counter)
+        ) {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(FORMAT_VERSION);
+            outputStream.writeUTF(pmdVersion);
+
+            outputStream.writeLong(rulesetChecksum);
+            outputStream.writeLong(auxClassPathChecksum);
+            outputStream.writeLong(executionClassPathChecksum);
+            outputStream.writeInt(ruleChecksums.size());
+            for (final Map.Entry<String, Long> ruleEntry : ruleChecksums.entrySet()) {
+                outputStream.writeUTF(ruleEntry.getKey());
+                outputStream.writeLong(ruleEntry.getValue());
+            }
+            outputStream.writeInt(classPathFingerprints.size());
+            for (final Map.Entry<String, ClassPathEntryFingerprint> classPathEntry : classPathFingerprints.entrySet()) {
+                outputStream.writeUTF(classPathEntry.getKey());
+                ClassPathEntryFingerprint.storeToStream(outputStream, classPathEntry.getValue());
+            }
+
+            // The violations
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final DataOutputStream encoder = new DataOutputStream(buffer);
+            for (int i = 0; i < entries.size(); i++) {
+                final Map.Entry<String, AnalysisResult> resultEntry = entries.get(i);
+                offsets[i] = counter.count;
+
+                final AnalysisResult previous = fileResultsCache.get(resultEntry.getKey());
+                if (previous instanceof MappedAnalysisResult && upToDateFiles.contains(resultEntry.getKey())
+                        && !isRulesetChanged()) {
+                    // unchanged, copy the violations over
+                    final MappedAnalysisResult mapped = (MappedAnalysisResult) previous;
+                    final byte[] bytes = new byte[mapped.length];
+                    new DataInputStream(mappedCache.open(mapped.offset, mapped.length)).readFully(bytes);
+                    outputStream.write(bytes);
+                    countViolations[i] = mapped.countViolations;
+                } else {
+                    buffer.reset();
+                    final List<RuleViolation> violations = resultEntry.getValue().getViolations();
+                    for (final RuleViolation rv : violations) {
+                        CachedRuleViolation.storeToStream(encoder, rv);
+                    }
+                    encoder.flush();
+                    buffer.writeTo(outputStream);
+                    countViolations[i] = violations.size();
+                }
+                lengths[i] = (int) (counter.count - offsets[i]);
+            }
+
+            // The index
+            final long indexOffset = counter.count;
+            outputStream.writeInt(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                outputStream.writeUTF(entries.get(i).getKey());
+                outputStream.writeLong(entries.get(i).getValue().getFileChecksum());
+                outputStream.writeInt(countViolations[i]);
+                outputStream.writeLong(offsets[i]);
+                outputStream.writeInt(lengths[i]);
+            }
+            outputStream.writeLong(indexOffset);
+        }
+    }
+
+    /**
+     * Returns the file, which replaces the cache file the next time it's loaded.
+     */
+    private File getPendingFile() {
+        return new File(cacheFile.getAbsoluteFile().getParentFile(), cacheFile.getName() + ".next");
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        return cacheFile.exists() && cacheFile.isFile() && cacheFile.length() > 0;
+    }
+
+    /**
+     * An analysis result whose violations are decoded from the mapped cache file on demand.
+     */
+    private final class MappedAnalysisResult extends AnalysisResult {
+
+        private final String fileName;
+        private final int countViolations;
+        private final long offset;
+        private final int length;
+
+        MappedAnalysisResult(final String fileName, final long fileChecksum,
+                final int countViolations, final long offset, final int length) {
+            super(fileChecksum, Collections.<RuleViolation>emptyList());
+            this.fileName = fileName;
+            this.countViolations = countViolations;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public List<RuleViolation> getViolations() {
+            final List<RuleViolation> violations = new ArrayList<>(countViolations);
+            try (DataInputStream stream = new DataInputStream(mappedCache.open(offset, length))) {
+                for (int i = 0; i < countViolations; i++) {
+                    violations.add(CachedRuleViolation.loadFromStream(stream, fileName, ruleMapper));
+                }
+            } catch (final IOException e) {
+                // can't happen, the data is in memory
+                throw new IllegalStateException("Malformed analysis cache entry for " + fileName, e);
+            }
+            return violations;
+        }
+    }
+
+    /**
+     * A file mapped in chunks of a fixed size, since a single mapping can't exceed 2 GB.
+     */
+    private static final class MappedFile {
+
+        private final ByteBuffer[] chunks;
+        private final int chunkSize;
+        private final long size;
+
+        MappedFile(final FileChannel channel, final int chunkSize) throws IOException {
+            this.size = channel.size();
+            this.chunkSize = chunkSize;
+            this.chunks = new ByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+            for (int i = 0; i < chunks.length; i++) {
+                final long position = (long) i * chunkSize;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position));
+            }
+        }
+
+        /**
+         * Reads the given region of the file, which may span several chunks.
+         */
+        InputStream open(final long offset, final long length) {
+            if (offset < 0 || length < 0 || offset + length > size) {
+                throw new IndexOutOfBoundsException("Region " + offset + "+" + length + " is outside of the file");
+            }
+            return new MappedFileInputStream(this, offset, offset + length);
+        }
+    }
+
+    /**
+     * Reads a region of a mapped file.
+     */
+    private static final class MappedFileInputStream extends InputStream {
+
+        private final MappedFile file;
+        private final long end;
+        private long position;
+
+        MappedFileInputStream(final MappedFile file, final long start, final long end) {
+            this.file = file;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() {
+            if (position >= end) {
+                return -1;
+            }
+            final int b = file.chunks[(int) (position / file.chunkSize)].get((int) (position % file.chunkSize)) & 0xff;
+            position++;
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            final int within = (int) (position % file.chunkSize);
+            final ByteBuffer chunk = file.chunks[(int) (position / file.chunkSize)].duplicate();
+            final int count = (int) Math.min(Math.min(len, chunk.limit() - within), end - position);
+            chunk.position(within);
+            chunk.get(bytes, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+
+    /**
+     * Counts the bytes written, unlike {@link DataOutputStream#size()} beyond 2 GB.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int off, final int len) throws IOException {
+            out.write(bytes, off, len);
+            count += len;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.util.Properties;
 
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.RulePriority;
+import net.sourceforge.pmd.cache.ContentAddressedAnalysisCache;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersion;
 
@@ -62,6 +63,10 @@ public class PMDParameters {
     @Parameter(names = { "-stress", "-S" }, description = "Performs a stress test.")
     private boolean stress = false;
 
+    @Parameter(names = "-largestfilesfirst",
+            description = "Processes the largest files first, to make better use of multiple threads.")
+    private boolean largestFilesFirst = false;
+
     @Parameter(names = "-shortnames", description = "Prints shortened filenames in the report.")
     private boolean shortnames = false;
 
@@ -95,6 +100,12 @@ public class PMDParameters {
             description = "Specifies the classpath for libraries used by the source code. This is used by the type resolution. Alternatively, a 'file://' URL to a text file containing path elements on consecutive lines can be specified.")
     private String auxclasspath;
 
+    @Parameter(names = "-auxclasspathindex", arity = 1,
+            description = "Specify the location of a file, which stores an index of the classes on the auxclasspath. "
+                    + "The index is created on the first run and updated when a jar file of the auxclasspath changes. "
+                    + "It speeds up the type resolution with large auxclasspaths.")
+    private String auxclasspathIndex;
+
     @Parameter(names = { "-failOnViolation", "--failOnViolation" }, arity = 1,
             description = "By default PMD exits with status 4 if violations are found. Disable this option with '-failOnViolation false' to exit with 0 instead and just write the report.")
     private boolean failOnViolation = true;
@@ -110,6 +121,22 @@ public class PMDParameters {
                     + "with the most up-to-date rule violations.")
     private String cacheLocation = null;
 
+    @Parameter(names = "-mappedcache",
+            description = "Use a memory-mapped cache file for '-cache'. Only the violations of the files that are not "
+                    + "analysed again are read, which speeds up incremental analysis of large projects.")
+    private boolean mappedCache = false;
+
+    @Parameter(names = "-sharedcache",
+            description = "Use '-cache' as a directory, which stores the results of each file by its contents. "
+                    + "The directory can be shared by the analyses of several checkouts. '-mappedcache' is ignored.")
+    private boolean sharedCache = false;
+
+    @Parameter(names = "-sharedcachesize",
+            description = "The maximum size of the '-sharedcache' directory in megabytes. "
+                    + "The least recently used results are removed when it gets bigger.",
+            validateWith = PositiveInteger.class)
+    private int sharedCacheSize = (int) (ContentAddressedAnalysisCache.DEFAULT_MAX_SIZE / (1024 * 1024));
+
     @Parameter(names = "-no-cache", description = "Explicitly disable incremental analysis. The '-cache' option is ignored if this switch is present in the command line.")
     private boolean noCache = false;
 
@@ -194,10 +221,15 @@ public class PMDParameters {
         configuration.setShowSuppressedViolations(this.isShowsuppressed());
         configuration.setSourceEncoding(this.getEncoding());
         configuration.setStressTest(this.isStress());
+        configuration.setLargestFilesFirst(this.isLargestFilesFirst());
         configuration.setSuppressMarker(this.getSuppressmarker());
         configuration.setThreads(this.getThreads());
         configuration.setFailOnViolation(this.isFailOnViolation());
-        configuration.setAnalysisCacheLocation(this.cacheLocation);
+        if (this.sharedCache) {
+            configuration.setSharedAnalysisCacheLocation(this.cacheLocation, this.sharedCacheSize * 1024L * 1024);
+        } else {
+            configuration.setAnalysisCacheLocation(this.cacheLocation, this.mappedCache);
+        }
         configuration.setIgnoreIncrementalAnalysis(this.isIgnoreIncrementalAnalysis());
 
         LanguageVersion languageVersion = LanguageRegistry
@@ -205,6 +237,7 @@ public class PMDParameters {
         if (languageVersion != null) {
             configuration.getLanguageVersionDiscoverer().setDefaultLanguageVersion(languageVersion);
         }
+        configuration.setClasspathIndexLocation(this.getAuxclasspathIndex());
         try {
             configuration.prependClasspath(this.getAuxclasspath());
         } catch (IOException e) {
@@ -252,6 +285,10 @@ public class PMDParameters {
         return stress;
     }
 
+    public boolean isLargestFilesFirst() {
+        return largestFilesFirst;
+    }
+
     public boolean isShortnames() {
         return shortnames;
     }
@@ -295,6 +332,10 @@ public class PMDParameters {
         return auxclasspath;
     }
 
+    public String getAuxclasspathIndex() {
+        return auxclasspathIndex;
+    }
+
     public String getRulesets() {
         return rulesets;
     }
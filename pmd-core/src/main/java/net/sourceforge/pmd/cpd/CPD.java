@@ -7,13 +7,17 @@ package net.sourceforge.pmd.cpd;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,13 +38,17 @@ public class CPD {
     private CPDListener listener = new CPDNullListener();
     private Tokens tokens = new Tokens();
     private MatchAlgorithm matchAlgorithm;
-    private Set<String> current = new HashSet<>();
+    private FileFingerprints fingerprints = new FileFingerprints();
+    private TokenCache tokenCache;
 
     public CPD(CPDConfiguration theConfiguration) {
         configuration = theConfiguration;
         // before we start any tokenizing (add(File...)), we need to reset the
         // static TokenEntry status
         TokenEntry.clearImages();
+        if (configuration.getCacheLocation() != null) {
+            tokenCache = new TokenCache(new File(configuration.getCacheLocation()), configuration.getTokenizerKey());
+        }
     }
 
     public void setCpdListener(CPDListener cpdListener) {
@@ -48,7 +56,11 @@ public class CPD {
     }
 
     public void go() {
-        matchAlgorithm = new MatchAlgorithm(source, tokens, configuration.getMinimumTileSize(), listener);
+        if (tokenCache != null) {
+            tokenCache.persist(tokens);
+        }
+        matchAlgorithm = new MatchAlgorithm(source, tokens, configuration.getMinimumTileSize(), listener,
+                configuration.isUseSuffixArray());
         matchAlgorithm.findMatches();
     }
 
@@ -65,8 +77,124 @@ public class CPD {
     }
 
     public void add(List<File> files) throws IOException {
-        for (File f : files) {
-            add(f);
+        if (configuration.isSkipDuplicates()) {
+            fingerprints.precompute(files, configuration.getThreads());
+        }
+        if (configuration.getThreads() > 1 && files.size() > 1) {
+            addConcurrently(files);
+        } else {
+            for (File f : files) {
+                add(f);
+            }
+        }
+    }
+
+    /**
+     * Tokenizes the given files on multiple threads. Each file is tokenized with
+     * its own image dictionary, and the tokens are merged in the order of the files,
+     * so that the identifiers and indexes of the tokens are the same as if the files
+     * had been added one after the other.
+     */
+    private void addConcurrently(List<File> files) throws IOException {
+        final List<SourceCode> sourceCodes = new ArrayList<>(files.size());
+        final List<Long> checksums = new ArrayList<>(files.size());
+        for (File file : files) {
+            if (shouldAdd(file)) {
+                sourceCodes.add(configuration.sourceCodeFor(file));
+                checksums.add(tokenCache == null ? 0L : TokenCache.computeChecksum(file));
+            }
+        }
+
+        final int threads = Math.min(configuration.getThreads(), sourceCodes.size());
+        final ThreadLocal<Tokenizer> tokenizers = new ThreadLocal<>();
+        if (threads < 2 || configuration.newTokenizer() == null) {
+            // the tokenizer can't be shared between threads
+            for (int i = 0; i < sourceCodes.size(); i++) {
+                add(sourceCodes.get(i), checksums.get(i));
+            }
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<TokenizedFile>> results = new ArrayList<>(sourceCodes.size());
+            for (int i = 0; i < sourceCodes.size(); i++) {
+                final SourceCode sourceCode = sourceCodes.get(i);
+                if (tokenCache != null && tokenCache.isUpToDate(sourceCode.getFileName(), checksums.get(i))) {
+                    // added from the cache while merging
+                    results.add(null);
+                    continue;
+                }
+                results.add(executor.submit(new Callable<TokenizedFile>() {
+                    @Override
+                    public TokenizedFile call() throws IOException {
+                        Tokenizer tokenizer = tokenizers.get();
+                        if (tokenizer == null) {
+                            tokenizer = configuration.newTokenizer();
+                            tokenizers.set(tokenizer);
+                        }
+                        TokenEntry.clearImages();
+                        Tokens fileTokens = new Tokens();
+                        tokenizer.tokenize(sourceCode, fileTokens);
+                        return new TokenizedFile(fileTokens, TokenEntry.getImages());
+                    }
+                }));
+            }
+
+            for (int i = 0; i < sourceCodes.size(); i++) {
+                final SourceCode sourceCode = sourceCodes.get(i);
+                if (results.get(i) == null) {
+                    add(sourceCode, checksums.get(i));
+                    continue;
+                }
+                final TokenizedFile tokenizedFile;
+                try {
+                    tokenizedFile = getResult(results.get(i), "Interrupted while tokenizing");
+                } catch (TokenMgrError e) {
+                    if (!configuration.isSkipLexicalErrors()) {
+                        throw e;
+                    }
+                    System.err.println("Skipping " + sourceCode.getFileName() + ". Reason: " + e.getMessage());
+                    continue;
+                }
+                final int begin = tokens.size();
+                for (TokenEntry token : tokenizedFile.tokens.getTokens()) {
+                    tokens.add(TokenEntry.moveToCurrentThread(token, tokenizedFile.images));
+                }
+                if (tokenCache != null) {
+                    tokenCache.tokensAdded(sourceCode.getFileName(), checksums.get(i), begin, tokens.size());
+                }
+                listener.addedFile(1, new File(sourceCode.getFileName()));
+                source.put(sourceCode.getFileName(), sourceCode);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the result of a task submitted by CPD, and rethrows the exception
+     * the task failed with, if any.
+     *
+     * @param result  The pending result of the task
+     * @param message The message of the exception thrown when the current thread is interrupted
+     */
+    static <T> T getResult(Future<T> result, String message) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(message);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
         }
     }
 
@@ -80,31 +208,53 @@ public class CPD {
     }
 
     public void add(File file) throws IOException {
+        if (shouldAdd(file)) {
+            SourceCode sourceCode = configuration.sourceCodeFor(file);
+            add(sourceCode, tokenCache == null ? 0L : TokenCache.computeChecksum(file));
+        }
+    }
 
-        if (configuration.isSkipDuplicates()) {
-            // TODO refactor this thing into a separate class
-            String signature = file.getName() + '_' + file.length();
-            if (current.contains(signature)) {
-                System.err.println("Skipping " + file.getAbsolutePath()
-                        + " since it appears to be a duplicate file and --skip-duplicate-files is set");
-                return;
+    /**
+     * Adds the given file, from the cached tokens if its contents didn't change.
+     */
+    private void add(SourceCode sourceCode, long checksum) throws IOException {
+        if (tokenCache == null) {
+            add(sourceCode);
+        } else if (tokenCache.isUpToDate(sourceCode.getFileName(), checksum)) {
+            tokenCache.addCachedTokens(sourceCode.getFileName(), tokens);
+            listener.addedFile(1, new File(sourceCode.getFileName()));
+            source.put(sourceCode.getFileName(), sourceCode);
+        } else {
+            int begin = tokens.size();
+            add(sourceCode);
+            // files skipped due to lexical errors don't add any token
+            if (tokens.size() > begin) {
+                tokenCache.tokensAdded(sourceCode.getFileName(), checksum, begin, tokens.size());
             }
-            current.add(signature);
         }
+    }
 
+    private boolean shouldAdd(File file) throws IOException {
         if (!FilenameUtils.equalsNormalizedOnSystem(file.getAbsoluteFile().getCanonicalPath(),
                 file.getAbsolutePath())) {
             System.err.println("Skipping " + file + " since it appears to be a symlink");
-            return;
+            return false;
         }
 
         if (!file.exists()) {
             System.err.println("Skipping " + file + " since it doesn't exist (broken symlink?)");
-            return;
+            return false;
         }
 
-        SourceCode sourceCode = configuration.sourceCodeFor(file);
-        add(sourceCode);
+        if (configuration.isSkipDuplicates()) {
+            File original = fingerprints.findDuplicate(file);
+            if (original != null) {
+                System.err.println("Skipping " + file.getAbsolutePath() + " since it is identical to "
+                        + original.getAbsolutePath() + " and --skip-duplicate-files is set");
+                return false;
+            }
+        }
+        return true;
     }
 
     public void add(DBURI dburi) throws IOException {
@@ -173,6 +323,19 @@ public class CPD {
         return new ArrayList<>(source.values());
     }
 
+    /**
+     * The tokens of a file, which has been tokenized on another thread.
+     */
+    private static final class TokenizedFile {
+        private final Tokens tokens;
+        private final String[] images;
+
+        TokenizedFile(Tokens tokens, String[] images) {
+            this.tokens = tokens;
+            this.images = images;
+        }
+    }
+
     public static void main(String[] args) {
         CPDCommandLineInterface.main(args);
     }
@@ -19,6 +19,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 
 import net.sourceforge.pmd.AbstractConfiguration;
 import net.sourceforge.pmd.cpd.renderer.CPDRenderer;
@@ -58,7 +59,7 @@ public class CPDConfiguration extends AbstractConfiguration {
     private int minimumTileSize;
 
     @Parameter(names = "--skip-duplicate-files",
-            description = "Ignore multiple copies of files of the same name and length in comparison", required = false)
+            description = "Ignore multiple copies of files with the same contents in comparison", required = false)
     private boolean skipDuplicates;
 
     @Parameter(names = "--format", description = "Report format. Default value is " + DEFAULT_RENDERER,
@@ -91,6 +92,22 @@ public class CPDConfiguration extends AbstractConfiguration {
     @Parameter(names = "--ignore-usings", description = "Ignore using directives in C#", required = false)
     private boolean ignoreUsings;
 
+    @Parameter(names = "--suffix-array",
+            description = "Find duplicates with a suffix array instead of hashing, which needs less memory on large code bases",
+            required = false)
+    private boolean useSuffixArray;
+
+    @Parameter(names = "--threads",
+            description = "Number of threads used to read and tokenize the files. Default is 1.",
+            required = false)
+    private int threads = 1;
+
+    @Parameter(names = "--cache",
+            description = "Specify the location of the cache file, which stores the tokens of each file, "
+                    + "so that unchanged files don't need to be tokenized again on the next run.",
+            required = false)
+    private String cacheLocation;
+
     @Parameter(names = "--skip-lexical-errors",
             description = "Skip files which can't be tokenized due to invalid characters instead of aborting CPD",
             required = false)
@@ -252,6 +269,10 @@ public class CPDConfiguration extends AbstractConfiguration {
     }
 
     public static void setSystemProperties(CPDConfiguration configuration) {
+        configuration.getLanguage().setProperties(languageProperties(configuration));
+    }
+
+    private static Properties languageProperties(CPDConfiguration configuration) {
         Properties properties = new Properties();
         if (configuration.isIgnoreLiterals()) {
             properties.setProperty(Tokenizer.IGNORE_LITERALS, "true");
@@ -275,7 +296,7 @@ public class CPDConfiguration extends AbstractConfiguration {
         }
         properties.setProperty(Tokenizer.OPTION_SKIP_BLOCKS, Boolean.toString(!configuration.isNoSkipBlocks()));
         properties.setProperty(Tokenizer.OPTION_SKIP_BLOCKS_PATTERN, configuration.getSkipBlocksPattern());
-        configuration.getLanguage().setProperties(properties);
+        return properties;
     }
 
     public Language getLanguage() {
@@ -329,6 +350,26 @@ public class CPDConfiguration extends AbstractConfiguration {
         return language.getTokenizer();
     }
 
+    /**
+     * Creates a new tokenizer for the language, configured with the options of
+     * this configuration. Tokenizers are not thread-safe, so each thread, which
+     * tokenizes files concurrently, needs its own.
+     *
+     * @return The new tokenizer, or null if the language can't be instantiated again
+     */
+    Tokenizer newTokenizer() {
+        if (language == null) {
+            throw new IllegalStateException("Language is null.");
+        }
+        try {
+            Language copy = language.getClass().getConstructor().newInstance();
+            copy.setProperties(languageProperties(this));
+            return copy.getTokenizer();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     public FilenameFilter filenameFilter() {
         if (language == null) {
             throw new IllegalStateException("Language is null.");
@@ -411,6 +452,39 @@ public class CPDConfiguration extends AbstractConfiguration {
         this.ignoreUsings = ignoreUsings;
     }
 
+    public boolean isUseSuffixArray() {
+        return useSuffixArray;
+    }
+
+    public void setUseSuffixArray(boolean useSuffixArray) {
+        this.useSuffixArray = useSuffixArray;
+    }
+
+    public String getCacheLocation() {
+        return cacheLocation;
+    }
+
+    public void setCacheLocation(String cacheLocation) {
+        this.cacheLocation = cacheLocation;
+    }
+
+    /**
+     * Identifies the language, the encoding and the tokenizer options, which
+     * determine the tokens of a file.
+     */
+    String getTokenizerKey() {
+        return language.getTerseName() + '/' + getSourceEncoding().name() + '/'
+                + new TreeMap<>(languageProperties(this));
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     public boolean isSkipLexicalErrors() {
         return skipLexicalErrors;
     }
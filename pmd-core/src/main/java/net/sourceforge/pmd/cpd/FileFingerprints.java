@@ -0,0 +1,152 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Finds files, whose contents are identical to the contents of a file seen before.
+ * The files are compared by a digest of their contents. Since only files of the same
+ * length can be identical, a file is only read when another file of the same length
+ * has been seen, so that most files are never read twice.
+ */
+final class FileFingerprints {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    /** Files are mapped in chunks of this size, to digest files larger than 2 GB too. */
+    private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+    /** The lengths of the files seen so far. */
+    private final Set<Long> lengths = new HashSet<>();
+    /** The first file of each length, as long as it is the only one, and hasn't been digested. */
+    private final Map<Long, File> undigested = new HashMap<>();
+    /** The first file of each digest. */
+    private final Map<ByteBuffer, File> filesByDigest = new HashMap<>();
+    /** The digests computed ahead by {@link #precompute(List, int)}, which haven't been used yet. */
+    private final Map<File, ByteBuffer> precomputed = new HashMap<>();
+
+    /**
+     * Digests the files, which will need to be digested when they're passed to
+     * {@link #findDuplicate(File)}, on multiple threads.
+     *
+     * @param files   The files, which will be passed to {@link #findDuplicate(File)}
+     * @param threads The number of threads to use
+     * @throws IOException If a file can't be read
+     */
+    void precompute(List<File> files, int threads) throws IOException {
+        final Map<Long, List<File>> filesByLength = new HashMap<>();
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            final long length = file.length();
+            List<File> sameLength = filesByLength.get(length);
+            if (sameLength == null) {
+                sameLength = new ArrayList<>();
+                filesByLength.put(length, sameLength);
+            }
+            sameLength.add(file);
+        }
+
+        final List<File> toDigest = new ArrayList<>();
+        for (Map.Entry<Long, List<File>> entry : filesByLength.entrySet()) {
+            if (entry.getValue().size() > 1 || lengths.contains(entry.getKey())) {
+                toDigest.addAll(entry.getValue());
+            }
+        }
+        if (toDigest.size() < 2 || threads < 2) {
+            // digested when needed
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, toDigest.size()));
+        try {
+            final List<Future<ByteBuffer>> results = new ArrayList<>(toDigest.size());
+            for (final File file : toDigest) {
+                results.add(executor.submit(new Callable<ByteBuffer>() {
+                    @Override
+                    public ByteBuffer call() throws IOException {
+                        return computeDigest(file);
+                    }
+                }));
+            }
+            for (int i = 0; i < toDigest.size(); i++) {
+                precomputed.put(toDigest.get(i), CPD.getResult(results.get(i), "Interrupted while reading files"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the first file seen, whose contents are identical to the contents of
+     * the given file. If there is none, the given file is remembered.
+     *
+     * @param file The file
+     * @return The identical file, or null if the file isn't a duplicate
+     * @throws IOException If a file can't be read
+     */
+    File findDuplicate(File file) throws IOException {
+        final long length = file.length();
+        if (lengths.add(length)) {
+            undigested.put(length, file);
+            return null;
+        }
+
+        final File first = undigested.remove(length);
+        if (first != null) {
+            filesByDigest.put(digestOf(first), first);
+        }
+        final ByteBuffer digest = digestOf(file);
+        final File original = filesByDigest.get(digest);
+        if (original != null) {
+            return original;
+        }
+        filesByDigest.put(digest, file);
+        return null;
+    }
+
+    private ByteBuffer digestOf(File file) throws IOException {
+        final ByteBuffer digest = precomputed.remove(file);
+        return digest != null ? digest : computeDigest(file);
+    }
+
+    /**
+     * Computes the digest of the contents of the given file, which is read through
+     * a memory mapping, so that it isn't copied on the heap.
+     */
+    static ByteBuffer computeDigest(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not supported", e);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            for (long position = 0; position < size; position += CHUNK_SIZE) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(CHUNK_SIZE, size - position)));
+            }
+        }
+        return ByteBuffer.wrap(digest.digest());
+    }
+}
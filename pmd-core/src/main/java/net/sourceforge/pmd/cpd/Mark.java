@@ -41,6 +41,10 @@ public class Mark implements Comparable<Mark> {
         return this.code.getSlice(getBeginLine(), getEndLine());
     }
 
+    public SourceCode getSourceCode() {
+        return this.code;
+    }
+
     public void setSourceCode(SourceCode code) {
         this.code = code;
     }
@@ -23,17 +23,35 @@ public class MatchAlgorithm {
     private List<TokenEntry> code;
     private CPDListener cpdListener;
     private int min;
+    private boolean useSuffixArray;
 
     public MatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min) {
         this(sourceCode, tokens, min, new CPDNullListener());
     }
 
     public MatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min, CPDListener listener) {
+        this(sourceCode, tokens, min, listener, false);
+    }
+
+    /**
+     * Creates a match algorithm, which finds the duplicates either by hashing
+     * each token sequence (Karp-Rabin), or with a suffix array, which needs
+     * less memory on large code bases. Both find the same matches.
+     *
+     * @param sourceCode     The source code of each file
+     * @param tokens         The tokens of all files
+     * @param min            The minimum tile size
+     * @param listener       The listener notified of the progress
+     * @param useSuffixArray Whether to use a suffix array instead of hashing
+     */
+    public MatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min, CPDListener listener,
+            boolean useSuffixArray) {
         this.source = sourceCode;
         this.tokens = tokens;
         this.code = tokens.getTokens();
         this.min = min;
         this.cpdListener = listener;
+        this.useSuffixArray = useSuffixArray;
         for (int i = 0; i < min; i++) {
             lastMod *= MOD;
         }
@@ -56,20 +74,25 @@ public class MatchAlgorithm {
     }
 
     public void findMatches() {
-        cpdListener.phaseUpdate(CPDListener.HASH);
-        Map<TokenEntry, Object> markGroups = hash();
-
-        cpdListener.phaseUpdate(CPDListener.MATCH);
         MatchCollector matchCollector = new MatchCollector(this);
-        for (Iterator<Object> i = markGroups.values().iterator(); i.hasNext();) {
-            Object o = i.next();
-            if (o instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<TokenEntry> l = (List<TokenEntry>) o;
-                Collections.reverse(l);
-                matchCollector.collect(l);
+        if (useSuffixArray) {
+            cpdListener.phaseUpdate(CPDListener.MATCH);
+            SuffixArrayMatchFinder.findMatches(code, min, matchCollector);
+        } else {
+            cpdListener.phaseUpdate(CPDListener.HASH);
+            Map<TokenEntry, Object> markGroups = hash();
+
+            cpdListener.phaseUpdate(CPDListener.MATCH);
+            for (Iterator<Object> i = markGroups.values().iterator(); i.hasNext();) {
+                Object o = i.next();
+                if (o instanceof List) {
+                    @SuppressWarnings("unchecked")
+                    List<TokenEntry> l = (List<TokenEntry>) o;
+                    Collections.reverse(l);
+                    matchCollector.collect(l);
+                }
+                i.remove();
             }
-            i.remove();
         }
         cpdListener.phaseUpdate(CPDListener.GROUPING);
         matches = matchCollector.getMatches();
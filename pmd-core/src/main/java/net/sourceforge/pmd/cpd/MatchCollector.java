@@ -4,13 +4,22 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class MatchCollector {
+    /** Marks the first token of a file, which is never preceded by the same token as another mark. */
+    private static final int NO_PREVIOUS = -1;
+
     private List<Match> matchList = new ArrayList<>();
     private Map<Integer, Map<Integer, Match>> matchTree = new TreeMap<>();
     private MatchAlgorithm ma;
@@ -19,34 +28,139 @@ public class MatchCollector {
         this.ma = ma;
     }
 
+    /**
+     * Collects the matches between the given marks, which start with the same
+     * tokens. Only the pairs of marks, which aren't preceded by the same token and
+     * don't overlap, are matches. The marks are grouped by their common prefix,
+     * which is extended once per group instead of once per pair of marks, so
+     * that long runs of repetitive code don't compare every pair of marks.
+     *
+     * @param marks The marks, ordered by index
+     */
     public void collect(List<TokenEntry> marks) {
-        // first get a pairwise collection of all maximal matches
-        for (int i = 0; i < marks.size() - 1; i++) {
-            TokenEntry mark1 = marks.get(i);
-            for (int j = i + 1; j < marks.size(); j++) {
-                TokenEntry mark2 = marks.get(j);
-                int diff = mark1.getIndex() - mark2.getIndex();
-                if (-diff < ma.getMinimumTileSize()) {
-                    continue;
+        final List<TokenEntry> sorted = new ArrayList<>(marks);
+        Collections.sort(sorted);
+
+        final Deque<List<TokenEntry>> groups = new ArrayDeque<>();
+        final Deque<Integer> depths = new ArrayDeque<>();
+        groups.push(sorted);
+        depths.push(0);
+        while (!groups.isEmpty()) {
+            collect(groups.pop(), depths.pop(), groups, depths);
+        }
+    }
+
+    /**
+     * Collects the matches of a group of marks, which share a prefix of the given length,
+     * and pushes the groups with a longer prefix.
+     */
+    private void collect(List<TokenEntry> group, int sharedTokens, Deque<List<TokenEntry>> groups,
+            Deque<Integer> depths) {
+        final int size = group.size();
+        final int[] previous = new int[size];
+        boolean hasPairs = false;
+        for (int i = 0; i < size; i++) {
+            previous[i] = previousIdentifier(group.get(i));
+            hasPairs |= previous[i] == NO_PREVIOUS || previous[i] != previous[0];
+        }
+        if (size < 2 || !hasPairs) {
+            // marks preceded by the same token are part of a longer match
+            return;
+        }
+
+        // extend the prefix until the marks differ
+        int depth = sharedTokens;
+        final int[] next = new int[size];
+        Map<Integer, List<TokenEntry>> children = partition(group, depth, next);
+        while (children.size() == 1) {
+            depth++;
+            children = partition(group, depth, next);
+        }
+
+        if (depth >= ma.getMinimumTileSize()) {
+            collectPairs(group, previous, next, depth);
+        }
+        for (List<TokenEntry> child : children.values()) {
+            groups.push(child);
+            depths.push(depth + 1);
+        }
+    }
+
+    /**
+     * Partitions the marks of a group by their token at the given offset.
+     */
+    private Map<Integer, List<TokenEntry>> partition(List<TokenEntry> group, int offset, int[] next) {
+        final Map<Integer, List<TokenEntry>> children = new LinkedHashMap<>();
+        for (int i = 0; i < group.size(); i++) {
+            final TokenEntry token = ma.tokenAt(offset, group.get(i));
+            // the EOF marker never matches
+            next[i] = token == TokenEntry.EOF ? -i - 1 : token.getIdentifier();
+            List<TokenEntry> child = children.get(next[i]);
+            if (child == null) {
+                child = new ArrayList<>();
+                children.put(next[i], child);
+            }
+            child.add(group.get(i));
+        }
+        return children;
+    }
+
+    /**
+     * Reports the pairs of marks of a group, whose common prefix has the given length,
+     * in the order of their indexes. Only the pairs, which change the matches, are
+     * reported: a pair of marks, which already belong to a match, is skipped.
+     */
+    private void collectPairs(List<TokenEntry> group, int[] previous, int[] next, int dupes) {
+        final int size = group.size();
+        final int[] indexes = new int[size];
+        final TreeSet<Integer> unmatched = new TreeSet<>();
+        for (int i = 0; i < size; i++) {
+            indexes[i] = group.get(i).getIndex();
+            unmatched.add(i);
+        }
+
+        for (int i = 0; i < size; i++) {
+            // the following marks, which don't overlap with this one
+            int from = Arrays.binarySearch(indexes, i + 1, size, indexes[i] + dupes);
+            if (from < 0) {
+                from = -from - 1;
+            }
+
+            if (unmatched.remove(i)) {
+                while (from < size && !isMatch(previous, next, i, from)) {
+                    from++;
                 }
-                if (hasPreviousDupe(mark1, mark2)) {
+                if (from == size) {
                     continue;
                 }
+                reportMatch(group.get(i), group.get(from), dupes);
+                unmatched.remove(from);
+                from++;
+            }
 
-                // "match too small" check
-                int dupes = countDuplicateTokens(mark1, mark2);
-                if (dupes < ma.getMinimumTileSize()) {
-                    continue;
+            for (Iterator<Integer> it = unmatched.tailSet(from).iterator(); it.hasNext();) {
+                final int j = it.next();
+                if (isMatch(previous, next, i, j)) {
+                    reportMatch(group.get(i), group.get(j), dupes);
+                    it.remove();
                 }
-                // is it still too close together
-                if (diff + dupes >= 1) {
-                    continue;
-                }
-                reportMatch(mark1, mark2, dupes);
             }
         }
     }
 
+    private static boolean isMatch(int[] previous, int[] next, int i, int j) {
+        return next[i] != next[j]
+                && (previous[i] == NO_PREVIOUS || previous[j] == NO_PREVIOUS || previous[i] != previous[j]);
+    }
+
+    private int previousIdentifier(TokenEntry mark) {
+        if (mark.getIndex() == 0) {
+            return NO_PREVIOUS;
+        }
+        final TokenEntry previous = ma.tokenAt(-1, mark);
+        return previous == TokenEntry.EOF ? NO_PREVIOUS : previous.getIdentifier();
+    }
+
     private void reportMatch(TokenEntry mark1, TokenEntry mark2, int dupes) {
         Map<Integer, Match> matches = matchTree.get(dupes);
         if (matches == null) {
@@ -81,23 +195,4 @@ public class MatchCollector {
         Collections.sort(matchList);
         return matchList;
     }
-
-    private boolean hasPreviousDupe(TokenEntry mark1, TokenEntry mark2) {
-        if (mark1.getIndex() == 0) {
-            return false;
-        }
-        return !matchEnded(ma.tokenAt(-1, mark1), ma.tokenAt(-1, mark2));
-    }
-
-    private int countDuplicateTokens(TokenEntry mark1, TokenEntry mark2) {
-        int index = 0;
-        while (!matchEnded(ma.tokenAt(index, mark1), ma.tokenAt(index, mark2))) {
-            index++;
-        }
-        return index;
-    }
-
-    private boolean matchEnded(TokenEntry token1, TokenEntry token2) {
-        return token1.getIdentifier() != token2.getIdentifier() || token1 == TokenEntry.EOF || token2 == TokenEntry.EOF;
-    }
 }
@@ -33,7 +33,7 @@ public class SimpleRenderer implements Renderer, CPDRenderer {
         separator = theSeparator;
     }
 
-    private void renderOn(Writer writer, Match match) throws IOException {
+    private void renderOn(Writer writer, Match match, String source) throws IOException {
 
         writer.append("Found a ").append(String.valueOf(match.getLineCount())).append(" line (").append(String.valueOf(match.getTokenCount()))
                 .append(" tokens) duplication in the following files: ").append(PMD.EOL);
@@ -46,8 +46,6 @@ public class SimpleRenderer implements Renderer, CPDRenderer {
 
         writer.append(PMD.EOL); // add a line to separate the source from the desc above
 
-        String source = match.getSourceCodeSlice();
-
         if (trimLeadingWhitespace) {
             String[] lines = source.split('[' + PMD.EOL + ']');
             int trimDepth = StringUtil.maxCommonLeadingWhitespaceForAll(lines);
@@ -76,15 +74,17 @@ public class SimpleRenderer implements Renderer, CPDRenderer {
 
     @Override
     public void render(Iterator<Match> matches, Writer writer) throws IOException {
-        if (matches.hasNext()) {
-            renderOn(writer, matches.next());
+        SourceCodeSlices slices = new SourceCodeSlices(matches);
+        if (slices.hasNext()) {
+            Match match = slices.next();
+            renderOn(writer, match, slices.getSourceCodeSlice(match));
         }
 
         Match match;
-        while (matches.hasNext()) {
-            match = matches.next();
+        while (slices.hasNext()) {
+            match = slices.next();
             writer.append(separator).append(PMD.EOL);
-            renderOn(writer, match);
+            renderOn(writer, match, slices.getSourceCodeSlice(match));
         }
         writer.flush();
     }
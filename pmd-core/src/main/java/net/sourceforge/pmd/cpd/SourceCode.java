@@ -12,6 +12,7 @@ import java.io.StringReader;
 import java.lang.ref.SoftReference;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.io.ByteOrderMark;
@@ -47,6 +48,28 @@ public class SourceCode {
             return load(startLine, endLine);
         }
 
+        /**
+         * Returns the slices of the code between the given lines, reading the code at most once.
+         *
+         * @param startLines The first line of each slice, 1-based and in ascending order
+         * @param endLines   The last line of each slice, inclusive
+         * @return The lines of each slice
+         */
+        public List<List<String>> getCodeSlices(int[] startLines, int[] endLines) {
+            List<String> c = null;
+            if (code != null) {
+                c = code.get();
+            }
+            List<List<String>> slices = new ArrayList<>(startLines.length);
+            if (c != null) {
+                for (int i = 0; i < startLines.length; i++) {
+                    slices.add(c.subList(startLines[i] - 1, Math.min(endLines[i], c.size())));
+                }
+                return slices;
+            }
+            return load(startLines, endLines);
+        }
+
         public abstract String getFileName();
 
         protected abstract Reader getReader() throws Exception;
@@ -89,6 +112,41 @@ public class SourceCode {
                 throw new RuntimeException("Problem while reading " + getFileName() + ":" + e.getMessage());
             }
         }
+
+        protected List<List<String>> load(int[] startLines, int[] endLines) {
+            List<List<String>> slices = new ArrayList<>(startLines.length);
+            int lastLine = 0;
+            for (int i = 0; i < startLines.length; i++) {
+                slices.add(new ArrayList<String>(Math.max(0, endLines[i] - startLines[i] + 1)));
+                lastLine = Math.max(lastLine, endLines[i]);
+            }
+
+            try (BufferedReader reader = new BufferedReader(getReader())) {
+                // the slices, which contain the current line
+                List<Integer> active = new ArrayList<>();
+                int next = 0;
+                for (int line = 1; line <= lastLine; line++) {
+                    String currentLine = reader.readLine();
+                    if (currentLine == null) {
+                        break;
+                    }
+                    while (next < startLines.length && startLines[next] == line) {
+                        active.add(next++);
+                    }
+                    for (Iterator<Integer> it = active.iterator(); it.hasNext();) {
+                        int slice = it.next();
+                        slices.get(slice).add(currentLine);
+                        if (endLines[slice] == line) {
+                            it.remove();
+                        }
+                    }
+                }
+                return slices;
+            } catch (Exception e) {
+                e.printStackTrace();
+                throw new RuntimeException("Problem while reading " + getFileName() + ":" + e.getMessage());
+            }
+        }
     }
 
     public static class FileCodeLoader extends CodeLoader {
@@ -195,8 +253,27 @@ public class SourceCode {
     }
 
     public String getSlice(int startLine, int endLine) {
-        List<String> lines = cl.getCodeSlice(startLine, endLine);
+        return join(cl.getCodeSlice(startLine, endLine));
+    }
+
+    /**
+     * Returns the slices of the code between the given lines. Unlike calling
+     * {@link #getSlice(int, int)} for each slice, the code is read at most once.
+     *
+     * @param startLines The first line of each slice, 1-based and in ascending order
+     * @param endLines   The last line of each slice, inclusive
+     * @return The code of each slice
+     */
+    public String[] getSlices(int[] startLines, int[] endLines) {
+        List<List<String>> slices = cl.getCodeSlices(startLines, endLines);
+        String[] result = new String[slices.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = join(slices.get(i));
+        }
+        return result;
+    }
 
+    private static String join(List<String> lines) {
         StringBuilder sb = new StringBuilder();
         for (String line : lines) {
             if (sb.length() != 0) {
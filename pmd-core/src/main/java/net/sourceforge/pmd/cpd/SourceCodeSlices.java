@@ -0,0 +1,113 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over matches, and reads the source code slices of the matches ahead,
+ * in batches. The slices of a batch are grouped by file, and each file is read
+ * at most once per batch, from its start to its last slice, instead of once per
+ * match. Only the slices of the current batch are kept in memory.
+ */
+final class SourceCodeSlices implements Iterator<Match> {
+
+    /** The number of matches, whose slices are read at once. */
+    private static final int BATCH_SIZE = 1000;
+
+    private static final Comparator<Match> BY_BEGIN_LINE = new Comparator<Match>() {
+        @Override
+        public int compare(Match match1, Match match2) {
+            return Integer.compare(match1.getFirstMark().getBeginLine(), match2.getFirstMark().getBeginLine());
+        }
+    };
+
+    private final Iterator<Match> matches;
+    private final List<Match> batch = new ArrayList<>(BATCH_SIZE);
+    private final Map<Match, String> slices = new IdentityHashMap<>();
+    private int position;
+
+    SourceCodeSlices(Iterator<Match> matches) {
+        this.matches = matches;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < batch.size() || matches.hasNext();
+    }
+
+    @Override
+    public Match next() {
+        if (position == batch.size()) {
+            if (!matches.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            readBatch();
+        }
+        return batch.get(position++);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the source code slice of the given match, which must be the last match returned by {@link #next()}.
+     *
+     * @param match The match
+     * @return The source code of the first mark of the match, or null if it has no source code
+     */
+    public String getSourceCodeSlice(Match match) {
+        return slices.get(match);
+    }
+
+    private void readBatch() {
+        batch.clear();
+        slices.clear();
+        position = 0;
+        while (batch.size() < BATCH_SIZE && matches.hasNext()) {
+            batch.add(matches.next());
+        }
+
+        // the slice of a match is the code of its first mark
+        final Map<SourceCode, List<Match>> matchesBySource = new IdentityHashMap<>();
+        for (Match match : batch) {
+            final SourceCode sourceCode = match.getFirstMark().getSourceCode();
+            if (sourceCode == null) {
+                continue;
+            }
+            List<Match> matchesOfSource = matchesBySource.get(sourceCode);
+            if (matchesOfSource == null) {
+                matchesOfSource = new ArrayList<>();
+                matchesBySource.put(sourceCode, matchesOfSource);
+            }
+            matchesOfSource.add(match);
+        }
+
+        for (Map.Entry<SourceCode, List<Match>> entry : matchesBySource.entrySet()) {
+            final List<Match> matchesOfSource = entry.getValue();
+            Collections.sort(matchesOfSource, BY_BEGIN_LINE);
+            final int[] startLines = new int[matchesOfSource.size()];
+            final int[] endLines = new int[matchesOfSource.size()];
+            for (int i = 0; i < startLines.length; i++) {
+                startLines[i] = matchesOfSource.get(i).getFirstMark().getBeginLine();
+                endLines[i] = matchesOfSource.get(i).getFirstMark().getEndLine();
+            }
+
+            final String[] codes = entry.getKey().getSlices(startLines, endLines);
+            for (int i = 0; i < codes.length; i++) {
+                slices.put(matchesOfSource.get(i), codes[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the groups of duplicate token sequences with a suffix array and its
+ * LCP array (longest common prefix of adjacent suffixes), instead of hashing
+ * each token sequence. The tokens are stored in plain int arrays, so the memory
+ * needed is linear in the number of tokens, without any per-token object.
+ *
+ * <p>Each group consists of all the token sequences of at least the minimum
+ * tile size, which start with the same tokens. These are the same groups as the
+ * ones found by hashing, and they're passed on to the {@link MatchCollector}.
+ */
+final class SuffixArrayMatchFinder {
+
+    private SuffixArrayMatchFinder() {
+        // utility class
+    }
+
+    /**
+     * Finds the groups of duplicate token sequences, and passes them on to the collector.
+     *
+     * @param code      The tokens, with the EOF marker after each file
+     * @param min       The minimum tile size
+     * @param collector The collector of the matches
+     */
+    static void findMatches(List<TokenEntry> code, int min, MatchCollector collector) {
+        final int n = code.size();
+        if (n == 0) {
+            return;
+        }
+
+        // each EOF marker is unique, so that no common prefix spans multiple files
+        final int[] tokens = new int[n];
+        int maxIdentifier = 0;
+        for (int i = 0; i < n; i++) {
+            maxIdentifier = Math.max(maxIdentifier, code.get(i).getIdentifier());
+        }
+        int alphabetSize = maxIdentifier;
+        for (int i = 0; i < n; i++) {
+            final TokenEntry token = code.get(i);
+            tokens[i] = token == TokenEntry.EOF ? ++alphabetSize : token.getIdentifier();
+        }
+
+        final int[] rank = new int[n];
+        final int[] suffixArray = buildSuffixArray(tokens, alphabetSize, rank);
+        final int[] lcp = buildLcpArray(tokens, suffixArray, rank);
+
+        // suffixes sharing a prefix of at least min tokens are adjacent in the suffix array
+        int start = 0;
+        for (int i = 1; i <= n; i++) {
+            if (i < n && lcp[i] >= min) {
+                continue;
+            }
+            if (i - start > 1) {
+                final List<TokenEntry> group = new ArrayList<>(i - start);
+                for (int j = start; j < i; j++) {
+                    group.add(code.get(suffixArray[j]));
+                }
+                Collections.sort(group);
+                collector.collect(group);
+            }
+            start = i;
+        }
+    }
+
+    /**
+     * Sorts the suffixes by prefix doubling, with a radix sort on each round.
+     * Once all ranks are distinct, the rank array contains the position of each
+     * suffix in the suffix array, starting from 1.
+     */
+    private static int[] buildSuffixArray(int[] tokens, int alphabetSize, int[] rank) {
+        final int n = tokens.length;
+        final int[] suffixArray = new int[n];
+        final int[] byRank = new int[n];
+        final int[] newRank = new int[n];
+        final int[] count = new int[Math.max(alphabetSize, n) + 1];
+
+        System.arraycopy(tokens, 0, rank, 0, n);
+        for (int i = 0; i < n; i++) {
+            count[rank[i]]++;
+        }
+        for (int i = 1; i < count.length; i++) {
+            count[i] += count[i - 1];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            suffixArray[--count[rank[i]]] = i;
+        }
+
+        // compact the ranks, so that they only count the distinct tokens
+        int maxRank = 1;
+        newRank[suffixArray[0]] = 1;
+        for (int i = 1; i < n; i++) {
+            if (tokens[suffixArray[i - 1]] != tokens[suffixArray[i]]) {
+                maxRank++;
+            }
+            newRank[suffixArray[i]] = maxRank;
+        }
+        System.arraycopy(newRank, 0, rank, 0, n);
+
+        for (int k = 1; maxRank < n; k <<= 1) {
+            // order by the rank of the second half, suffixes without one come first
+            int p = 0;
+            for (int i = n - k; i < n; i++) {
+                byRank[p++] = i;
+            }
+            for (int i = 0; i < n; i++) {
+                if (suffixArray[i] >= k) {
+                    byRank[p++] = suffixArray[i] - k;
+                }
+            }
+
+            // then stable sort by the rank of the first half
+            Arrays.fill(count, 0, maxRank + 1, 0);
+            for (int i = 0; i < n; i++) {
+                count[rank[i]]++;
+            }
+            for (int i = 1; i <= maxRank; i++) {
+                count[i] += count[i - 1];
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                suffixArray[--count[rank[byRank[i]]]] = byRank[i];
+            }
+
+            newRank[suffixArray[0]] = 1;
+            int r = 1;
+            for (int i = 1; i < n; i++) {
+                final int a = suffixArray[i - 1];
+                final int b = suffixArray[i];
+                if (rank[a] != rank[b] || secondRank(rank, a, k) != secondRank(rank, b, k)) {
+                    r++;
+                }
+                newRank[b] = r;
+            }
+            System.arraycopy(newRank, 0, rank, 0, n);
+            maxRank = r;
+        }
+        return suffixArray;
+    }
+
+    private static int secondRank(int[] rank, int suffix, int k) {
+        return suffix + k < rank.length ? rank[suffix + k] : 0;
+    }
+
+    /**
+     * Computes the length of the common prefix of each suffix with the previous
+     * one in the suffix array (Kasai et al.).
+     */
+    private static int[] buildLcpArray(int[] tokens, int[] suffixArray, int[] rank) {
+        final int n = tokens.length;
+        final int[] lcp = new int[n];
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            final int position = rank[i] - 1;
+            if (position > 0) {
+                final int j = suffixArray[position - 1];
+                while (i + h < n && j + h < n && tokens[i + h] == tokens[j + h]) {
+                    h++;
+                }
+                lcp[position] = h;
+                if (h > 0) {
+                    h--;
+                }
+            } else {
+                h = 0;
+            }
+        }
+        return lcp;
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.Adler32;
+import java.util.zip.CheckedInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import net.sourceforge.pmd.PMDVersion;
+
+/**
+ * Stores the tokens of each file, so that files, whose contents didn't change
+ * since the previous run, don't need to be read and tokenized again. The tokens
+ * are stored with the images of the previous run, and get their identifiers from
+ * the images when they're added again, so that they're the same as if the files
+ * had been tokenized.
+ *
+ * <p>The tokens are only valid for the same PMD version, language and tokenizer
+ * options, otherwise the whole cache is discarded.
+ */
+final class TokenCache {
+
+    private static final Logger LOG = Logger.getLogger(TokenCache.class.getName());
+
+    private final File cacheFile;
+    private final String configurationKey;
+
+    /** The images of the previous run, indexed by their identifier. */
+    private String[] images = new String[0];
+    /** The tokens of the previous run. */
+    private final Map<String, CachedFile> cachedFiles = new HashMap<>();
+    /** The files added in this run, in order. */
+    private final Map<String, AddedFile> addedFiles = new LinkedHashMap<>();
+
+    /**
+     * Creates a new cache backed by the given file, and loads the tokens of the previous run from it.
+     *
+     * @param cacheFile        The file on which to store the tokens
+     * @param configurationKey Identifies the language and the tokenizer options
+     */
+    TokenCache(File cacheFile, String configurationKey) {
+        this.cacheFile = cacheFile;
+        this.configurationKey = configurationKey;
+
+        loadFromFile();
+    }
+
+    private void loadFromFile() {
+        if (!cacheFile.isFile() || cacheFile.length() == 0) {
+            return;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))) {
+            if (!PMDVersion.VERSION.equals(inputStream.readUTF())) {
+                LOG.info("CPD cache invalidated, PMD version changed.");
+                return;
+            }
+            if (!configurationKey.equals(inputStream.readUTF())) {
+                LOG.info("CPD cache invalidated, language or options changed.");
+                return;
+            }
+
+            final int countImages = inputStream.readInt();
+            final String[] loadedImages = new String[countImages + 1];
+            for (int i = 1; i <= countImages; i++) {
+                loadedImages[i] = readImage(inputStream);
+            }
+
+            final int countFiles = inputStream.readInt();
+            for (int i = 0; i < countFiles; i++) {
+                final String fileName = inputStream.readUTF();
+                final long checksum = inputStream.readLong();
+                final int countTokens = inputStream.readInt();
+                final int[] identifiers = new int[countTokens];
+                final int[] lines = new int[countTokens];
+                for (int j = 0; j < countTokens; j++) {
+                    identifiers[j] = inputStream.readInt();
+                    lines[j] = inputStream.readInt();
+                    if (identifiers[j] < 0 || identifiers[j] > countImages) {
+                        throw new IOException("Unknown image " + identifiers[j]);
+                    }
+                }
+                cachedFiles.put(fileName, new CachedFile(checksum, identifiers, lines));
+            }
+            images = loadedImages;
+            LOG.info("CPD cache loaded");
+        } catch (final IOException e) {
+            cachedFiles.clear();
+            LOG.warning("CPD cache file " + cacheFile.getPath() + " is malformed, will not be used for current run");
+        }
+    }
+
+    /**
+     * Computes the checksum of the contents of the given file.
+     *
+     * @param file The file
+     * @return The checksum
+     * @throws IOException If the file can't be read
+     */
+    static long computeChecksum(File file) throws IOException {
+        try (CheckedInputStream inputStream = new CheckedInputStream(
+                Files.newInputStream(file.toPath()), new Adler32())) {
+            // Just read it, the CheckedInputStream will update the checksum on it's own
+            while (IOUtils.skip(inputStream, Long.MAX_VALUE) == Long.MAX_VALUE) {
+                // just loop
+            }
+            return inputStream.getChecksum().getValue();
+        }
+    }
+
+    /**
+     * Returns true if the tokens of the given file are cached, for the same contents.
+     *
+     * @param fileName The name of the file
+     * @param checksum The checksum of the current contents of the file
+     */
+    boolean isUpToDate(String fileName, long checksum) {
+        final CachedFile cachedFile = cachedFiles.get(fileName);
+        return cachedFile != null && cachedFile.checksum == checksum;
+    }
+
+    /**
+     * Adds the cached tokens of the given file, which must be up to date.
+     *
+     * @param fileName The name of the file
+     * @param tokens   The tokens to which to add the tokens of the file
+     */
+    void addCachedTokens(String fileName, Tokens tokens) {
+        final CachedFile cachedFile = cachedFiles.get(fileName);
+        final int begin = tokens.size();
+        for (int i = 0; i < cachedFile.identifiers.length; i++) {
+            final int identifier = cachedFile.identifiers[i];
+            tokens.add(identifier == 0 ? TokenEntry.getEOF()
+                    : new TokenEntry(images[identifier], fileName, cachedFile.lines[i]));
+        }
+        addedFiles.put(fileName, new AddedFile(cachedFile.checksum, begin, tokens.size()));
+    }
+
+    /**
+     * Records the tokens of a file, which has been tokenized in this run.
+     *
+     * @param fileName The name of the file
+     * @param checksum The checksum of the contents of the file
+     * @param begin    The index of the first token of the file
+     * @param end      The index after the last token of the file
+     */
+    void tokensAdded(String fileName, long checksum, int begin, int end) {
+        addedFiles.put(fileName, new AddedFile(checksum, begin, end));
+    }
+
+    /**
+     * Stores the tokens of the files added in this run. The tokens of the other
+     * files of the previous run are discarded.
+     *
+     * @param tokens The tokens of this run, whose identifiers have been assigned on the current thread
+     */
+    void persist(Tokens tokens) {
+        final boolean cacheFileShouldBeCreated = !cacheFile.exists();
+
+        // Create directories missing along the way
+        if (cacheFileShouldBeCreated) {
+            final File parentFile = cacheFile.getAbsoluteFile().getParentFile();
+            if (parentFile != null && !parentFile.exists()) {
+                parentFile.mkdirs();
+            }
+        }
+
+        final String[] currentImages = TokenEntry.getImages();
+        final List<TokenEntry> code = tokens.getTokens();
+        // the cache is written to a temporary file, and moved in place when it's complete,
+        // so that an interrupted run or a concurrent run never sees a truncated cache
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+            write(tempFile, currentImages, code);
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            if (cacheFileShouldBeCreated) {
+                LOG.info("CPD cache created");
+            } else {
+                LOG.info("CPD cache updated");
+            }
+        } catch (final IOException e) {
+            LOG.severe("Could not persist CPD cache to file. " + e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private void write(File file, String[] currentImages, List<TokenEntry> code) throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            outputStream.writeUTF(PMDVersion.VERSION);
+            outputStream.writeUTF(configurationKey);
+
+            outputStream.writeInt(currentImages.length - 1);
+            for (int i = 1; i < currentImages.length; i++) {
+                writeImage(outputStream, currentImages[i]);
+            }
+
+            outputStream.writeInt(addedFiles.size());
+            for (final Map.Entry<String, AddedFile> entry : addedFiles.entrySet()) {
+                final AddedFile addedFile = entry.getValue();
+                outputStream.writeUTF(entry.getKey());
+                outputStream.writeLong(addedFile.checksum);
+                outputStream.writeInt(addedFile.end - addedFile.begin);
+                for (int i = addedFile.begin; i < addedFile.end; i++) {
+                    final TokenEntry token = code.get(i);
+                    outputStream.writeInt(token.getIdentifier());
+                    outputStream.writeInt(token.getBeginLine());
+                }
+            }
+        }
+    }
+
+    // images may be longer than the 64k bytes supported by writeUTF
+    private static void writeImage(DataOutputStream outputStream, String image) throws IOException {
+        final byte[] bytes = image.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static String readImage(DataInputStream inputStream) throws IOException {
+        final int length = inputStream.readInt();
+        if (length < 0) {
+            throw new IOException("Negative image length");
+        }
+        final byte[] bytes = new byte[length];
+        inputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The tokens of a file, loaded from the cache. An identifier of 0 denotes the EOF marker.
+     */
+    private static final class CachedFile {
+        private final long checksum;
+        private final int[] identifiers;
+        private final int[] lines;
+
+        CachedFile(long checksum, int[] identifiers, int[] lines) {
+            this.checksum = checksum;
+            this.identifiers = identifiers;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * The range of the tokens of a file added in this run.
+     */
+    private static final class AddedFile {
+        private final long checksum;
+        private final int begin;
+        private final int end;
+
+        AddedFile(long checksum, int begin, int end) {
+            this.checksum = checksum;
+            this.begin = begin;
+            this.end = end;
+        }
+    }
+}
@@ -62,6 +62,37 @@ public class TokenEntry implements Comparable<TokenEntry> {
         TOKEN_COUNT.remove();
     }
 
+    /**
+     * Returns the images known on the current thread, indexed by their identifier.
+     */
+    static String[] getImages() {
+        Map<String, Integer> tokens = TOKENS.get();
+        String[] images = new String[tokens.size() + 1];
+        for (Map.Entry<String, Integer> e : tokens.entrySet()) {
+            images[e.getValue()] = e.getKey();
+        }
+        return images;
+    }
+
+    /**
+     * Moves a token, which has been created on another thread, to the current thread:
+     * its identifier is assigned from the images known on the current thread, and its
+     * index is the next one, as if it had been created on the current thread.
+     *
+     * @param token  The token to move, or {@link #EOF}
+     * @param images The images of the thread, which created the token
+     * @return The token
+     */
+    static TokenEntry moveToCurrentThread(TokenEntry token, String[] images) {
+        if (token.identifier == 0) {
+            // only the EOF marker has no image
+            return getEOF();
+        }
+        token.setImage(images[token.identifier]);
+        token.index = TOKEN_COUNT.get().getAndIncrement();
+        return token;
+    }
+
     /**
      * Helper class to preserve and restore the current state of the token
      * entries.
@@ -7,21 +7,12 @@ package net.sourceforge.pmd.cpd;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
 import java.util.Iterator;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import net.sourceforge.pmd.cpd.renderer.CPDRenderer;
+import net.sourceforge.pmd.util.StringUtil;
 
 /**
  * @author Philippe T'Seyen - original implementation
@@ -30,6 +21,9 @@ import net.sourceforge.pmd.cpd.renderer.CPDRenderer;
  */
 public final class XMLRenderer implements Renderer, CPDRenderer {
 
+    private static final String INDENT = "   ";
+    private static final String EOL = "\n";
+
     private String encoding;
 
     /**
@@ -62,30 +56,6 @@ public final class XMLRenderer implements Renderer, CPDRenderer {
         return this.encoding;
     }
 
-    private Document createDocument() {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder parser = factory.newDocumentBuilder();
-            return parser.newDocument();
-        } catch (ParserConfigurationException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-    private void dumpDocToWriter(Document doc, Writer writer) {
-        try {
-            TransformerFactory tf = TransformerFactory.newInstance();
-            Transformer transformer = tf.newTransformer();
-            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-            transformer.setOutputProperty(OutputKeys.ENCODING, encoding);
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.CDATA_SECTION_ELEMENTS, "codefragment");
-            transformer.transform(new DOMSource(doc), new StreamResult(writer));
-        } catch (TransformerException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
     @Override
     public String render(Iterator<Match> matches) {
         StringWriter writer = new StringWriter();
@@ -97,48 +67,74 @@ public final class XMLRenderer implements Renderer, CPDRenderer {
         return writer.toString();
     }
     
+    /**
+     * Writes the report while iterating over the matches, without building a DOM
+     * of the whole report. The source code slices are read in batches, see
+     * {@link SourceCodeSlices}.
+     */
     @Override
     public void render(Iterator<Match> matches, Writer writer) throws IOException {
-        Document doc = createDocument();
-        Element root = doc.createElement("pmd-cpd");
-        doc.appendChild(root);
-
-        Match match;
-        while (matches.hasNext()) {
-            match = matches.next();
-            root.appendChild(addCodeSnippet(doc,
-                    addFilesToDuplicationElement(doc, createDuplicationElement(doc, match), match), match));
+        final boolean supportUTF8 = "UTF-8".equalsIgnoreCase(encoding);
+        CharsetEncoder encoder = null;
+        if (!supportUTF8 && Charset.isSupported(encoding)) {
+            encoder = Charset.forName(encoding).newEncoder();
         }
-        dumpDocToWriter(doc, writer);
-        writer.flush();
-    }
 
-    private Element addFilesToDuplicationElement(Document doc, Element duplication, Match match) {
-        Mark mark;
-        for (Iterator<Mark> iterator = match.iterator(); iterator.hasNext();) {
-            mark = iterator.next();
-            Element file = doc.createElement("file");
-            file.setAttribute("line", String.valueOf(mark.getBeginLine()));
-            file.setAttribute("path", mark.getFilename());
-            duplication.appendChild(file);
+        writer.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>" + EOL);
+        SourceCodeSlices slices = new SourceCodeSlices(matches);
+        if (!slices.hasNext()) {
+            writer.write("<pmd-cpd/>");
+            writer.flush();
+            return;
         }
-        return duplication;
-    }
 
-    private Element addCodeSnippet(Document doc, Element duplication, Match match) {
-        String codeSnipet = match.getSourceCodeSlice();
-        if (codeSnipet != null) {
-            Element codefragment = doc.createElement("codefragment");
-            codefragment.appendChild(doc.createCDATASection(codeSnipet));
-            duplication.appendChild(codefragment);
+        writer.write("<pmd-cpd>" + EOL);
+        StringBuilder buf = new StringBuilder();
+        while (slices.hasNext()) {
+            Match match = slices.next();
+            buf.setLength(0);
+            buf.append(INDENT).append("<duplication lines=\"").append(match.getLineCount())
+                .append("\" tokens=\"").append(match.getTokenCount()).append("\">").append(EOL);
+            for (Mark mark : match) {
+                buf.append(INDENT).append(INDENT).append("<file line=\"").append(mark.getBeginLine())
+                    .append("\" path=\"");
+                StringUtil.appendXmlEscaped(buf, mark.getFilename(), supportUTF8);
+                buf.append("\"/>").append(EOL);
+            }
+
+            String codeSnippet = slices.getSourceCodeSlice(match);
+            if (codeSnippet != null) {
+                buf.append(INDENT).append(INDENT).append("<codefragment>");
+                appendCData(buf, codeSnippet, encoder);
+                buf.append("</codefragment>").append(EOL);
+            }
+            buf.append(INDENT).append("</duplication>").append(EOL);
+            writer.write(buf.toString());
         }
-        return duplication;
+        writer.write("</pmd-cpd>");
+        writer.flush();
     }
 
-    private Element createDuplicationElement(Document doc, Match match) {
-        Element duplication = doc.createElement("duplication");
-        duplication.setAttribute("lines", String.valueOf(match.getLineCount()));
-        duplication.setAttribute("tokens", String.valueOf(match.getTokenCount()));
-        return duplication;
+    /**
+     * Appends a CDATA section, which is split around "]]>", and around the characters,
+     * which can't be encoded in the output encoding.
+     */
+    private static void appendCData(StringBuilder buf, String text, CharsetEncoder encoder) {
+        String escaped = text.replace("]]>", "]]]]><![CDATA[>");
+        buf.append("<![CDATA[");
+        if (encoder == null || encoder.canEncode(escaped)) {
+            buf.append(escaped);
+        } else {
+            for (int i = 0; i < escaped.length(); i += Character.charCount(escaped.codePointAt(i))) {
+                int codePoint = escaped.codePointAt(i);
+                String character = new String(Character.toChars(codePoint));
+                if (encoder.canEncode(character)) {
+                    buf.append(character);
+                } else {
+                    buf.append("]]>&#x").append(Integer.toHexString(codePoint)).append(";<![CDATA[");
+                }
+            }
+        }
+        buf.append("]]>");
     }
 }
@@ -187,7 +187,9 @@ public abstract class AbstractNode implements Node {
     public DataFlowNode getDataFlowNode() {
         if (this.dataFlowNode == null) {
             if (this.parent != null) {
-                return parent.getDataFlowNode();
+                final DataFlowNode parentFlowNode = parent.getDataFlowNode();
+                // the data flow may have been built lazily by the parent in the meantime
+                return this.dataFlowNode != null ? this.dataFlowNode : parentFlowNode;
             }
             return null; // TODO wise?
         }
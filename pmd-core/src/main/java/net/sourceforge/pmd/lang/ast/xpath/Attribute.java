@@ -4,7 +4,6 @@
 
 package net.sourceforge.pmd.lang.ast.xpath;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -30,11 +29,9 @@ public class Attribute {
     private static final Logger LOG = Logger.getLogger(Attribute.class.getName());
     private static final ConcurrentMap<String, Boolean> DETECTED_DEPRECATED_ATTRIBUTES = new ConcurrentHashMap<>();
 
-    private static final Object[] EMPTY_OBJ_ARRAY = new Object[0];
-
     private final Node parent;
     private final String name;
-    private Method method;
+    private final AttributeAccessor accessor;
     private Object value;
     private String stringValue;
 
@@ -42,13 +39,21 @@ public class Attribute {
     public Attribute(Node parent, String name, Method m) {
         this.parent = parent;
         this.name = name;
-        this.method = m;
+        this.accessor = new AttributeAccessor(m, name);
+    }
+
+    /** Creates a new attribute belonging to the given node using a cached accessor. */
+    Attribute(Node parent, AttributeAccessor accessor) {
+        this.parent = parent;
+        this.name = accessor.getName();
+        this.accessor = accessor;
     }
 
     /** Creates a new attribute belonging to the given node using its string value. */
     public Attribute(Node parent, String name, String value) {
         this.parent = parent;
         this.name = name;
+        this.accessor = null;
         this.value = value;
         this.stringValue = value;
     }
@@ -68,20 +73,15 @@ public class Attribute {
             return value;
         }
 
-        if (method.isAnnotationPresent(Deprecated.class) && LOG.isLoggable(Level.WARNING)
+        if (accessor.isDeprecated() && LOG.isLoggable(Level.WARNING)
                 && DETECTED_DEPRECATED_ATTRIBUTES.putIfAbsent(getLoggableAttributeName(), Boolean.TRUE) == null) {
             // this message needs to be kept in sync with PMDCoverageTest
             LOG.warning("Use of deprecated attribute '" + getLoggableAttributeName() + "' in XPath query");
         }
 
-        // this lazy loading reduces calls to Method.invoke() by about 90%
-        try {
-            value = method.invoke(parent, EMPTY_OBJ_ARRAY);
-            return value;
-        } catch (IllegalAccessException | InvocationTargetException iae) {
-            iae.printStackTrace();
-        }
-        return null;
+        // this lazy loading reduces calls to the accessor by about 90%
+        value = accessor.invoke(parent);
+        return value;
     }
 
     public String getStringValue() {
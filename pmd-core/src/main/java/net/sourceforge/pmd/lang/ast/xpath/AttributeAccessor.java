@@ -0,0 +1,85 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.xpath;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * The accessor method of an XPath attribute. Everything that only depends
+ * on the method, like the name of the attribute and whether it is deprecated,
+ * is computed once, when the accessors of a node class are cached, and is
+ * shared by the attributes of all nodes of that class.
+ */
+final class AttributeAccessor {
+
+    private static final Object[] EMPTY_OBJ_ARRAY = new Object[0];
+
+    private final Method method;
+    private final String name;
+    private final boolean deprecated;
+
+    AttributeAccessor(Method method) {
+        this(method, truncateMethodName(method.getName()));
+    }
+
+    AttributeAccessor(Method method, String name) {
+        this.method = method;
+        this.name = name;
+        this.deprecated = method.isAnnotationPresent(Deprecated.class);
+        try {
+            // skips the access checks on each invocation
+            method.setAccessible(true);
+        } catch (RuntimeException ignored) {
+            // the access is checked on each invocation
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isDeprecated() {
+        return deprecated;
+    }
+
+    /**
+     * Returns the value of the attribute for the given node, or null if the
+     * accessor could not be invoked.
+     */
+    Object invoke(Node node) {
+        try {
+            return method.invoke(node, EMPTY_OBJ_ARRAY);
+        } catch (IllegalAccessException | InvocationTargetException iae) {
+            iae.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * This method produces the actual XPath name of an attribute
+     * from the name of its accessor.
+     */
+    private static String truncateMethodName(String n) {
+        // about 70% of the methods start with 'get', so this case goes
+        // first
+        if (n.startsWith("get")) {
+            return n.substring("get".length());
+        }
+        if (n.startsWith("is")) {
+            return n.substring("is".length());
+        }
+        if (n.startsWith("has")) {
+            return n.substring("has".length());
+        }
+        if (n.startsWith("uses")) {
+            return n.substring("uses".length());
+        }
+
+        return n;
+    }
+}
@@ -7,9 +7,11 @@ package net.sourceforge.pmd.lang.ast.xpath;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -30,8 +32,8 @@ import net.sourceforge.pmd.lang.ast.Node;
 @InternalApi
 public class AttributeAxisIterator implements Iterator<Attribute> {
 
-    /** Caches the precomputed attribute accessors of a given class. */
-    private static final ConcurrentMap<Class<?>, MethodWrapper[]> METHOD_CACHE = new ConcurrentHashMap<>();
+    /** Caches the precomputed attribute accessors of a given class, indexed by their name. */
+    private static final ConcurrentMap<Class<?>, ClassAccessors> METHOD_CACHE = new ConcurrentHashMap<>();
 
     /* Constants used to determine which methods are accessors */
     private static final Set<Class<?>> CONSIDERED_RETURN_TYPES
@@ -39,11 +41,12 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
     private static final Set<String> FILTERED_OUT_NAMES
             = new HashSet<>(Arrays.asList("toString", "getClass", "getXPathNodeName", "getTypeNameNode", "hashCode", "getImportedNameNode", "getScope"));
 
+    private static final AttributeAccessor[] NO_ACCESSORS = new AttributeAccessor[0];
+
     /* Iteration variables */
-    private Attribute currObj;
-    private MethodWrapper[] methodWrappers;
+    private final AttributeAccessor[] accessors;
     private int position;
-    private Node node;
+    private final Node node;
 
 
     /**
@@ -53,20 +56,41 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
      */
     public AttributeAxisIterator(Node contextNode) {
         this.node = contextNode;
-        if (!METHOD_CACHE.containsKey(contextNode.getClass())) {
+        this.accessors = getClassAccessors(contextNode).all;
+    }
+
+
+    /**
+     * Creates a new iterator that enumerates the attributes with the given name
+     * of the given node. The accessors of the other attributes are not invoked.
+     *
+     * @param contextNode   The node
+     * @param attributeName The name of the attributes to enumerate
+     */
+    public AttributeAxisIterator(Node contextNode, String attributeName) {
+        this.node = contextNode;
+        final AttributeAccessor[] named = getClassAccessors(contextNode).byName.get(attributeName);
+        this.accessors = named == null ? NO_ACCESSORS : named;
+    }
+
+
+    private ClassAccessors getClassAccessors(Node contextNode) {
+        ClassAccessors cached = METHOD_CACHE.get(contextNode.getClass());
+        if (cached == null) {
             Method[] preFilter = contextNode.getClass().getMethods();
-            List<MethodWrapper> postFilter = new ArrayList<>();
+            List<AttributeAccessor> postFilter = new ArrayList<>();
             for (Method element : preFilter) {
                 if (isAttributeAccessor(element)) {
-                    postFilter.add(new MethodWrapper(element));
+                    postFilter.add(new AttributeAccessor(element));
                 }
             }
-            METHOD_CACHE.putIfAbsent(contextNode.getClass(), postFilter.toArray(new MethodWrapper[0]));
+            cached = new ClassAccessors(postFilter.toArray(NO_ACCESSORS));
+            ClassAccessors previous = METHOD_CACHE.putIfAbsent(contextNode.getClass(), cached);
+            if (previous != null) {
+                cached = previous;
+            }
         }
-        this.methodWrappers = METHOD_CACHE.get(contextNode.getClass());
-
-        this.position = 0;
-        this.currObj = getNextAttribute();
+        return cached;
     }
 
     /**
@@ -95,15 +119,13 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
         if (!hasNext()) {
             throw new IndexOutOfBoundsException();
         }
-        Attribute ret = currObj;
-        currObj = getNextAttribute();
-        return ret;
+        return new Attribute(node, accessors[position++]);
     }
 
 
     @Override
     public boolean hasNext() {
-        return currObj != null;
+        return position < accessors.length;
     }
 
 
@@ -113,53 +135,24 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
     }
 
 
-    private Attribute getNextAttribute() {
-        if (methodWrappers == null || position == methodWrappers.length) {
-            return null;
-        }
-        MethodWrapper m = methodWrappers[position++];
-        return new Attribute(node, m.name, m.method);
-    }
-
-
     /**
-     * Associates an attribute accessor with the XPath-accessible
-     * name of the attribute. This is used to avoid recomputing
-     * the name of the attribute for each attribute (it's only done
-     * once and put inside the {@link #METHOD_CACHE}).
+     * The attribute accessors of a node class, in the order of
+     * {@link Class#getMethods()}, and indexed by the name of their attribute.
      */
-    private static class MethodWrapper {
-        public Method method;
-        public String name;
-
-
-        MethodWrapper(Method m) {
-            this.method = m;
-            this.name = truncateMethodName(m.getName());
-        }
-
-
-        /**
-         * This method produces the actual XPath name of an attribute
-         * from the name of its accessor.
-         */
-        private String truncateMethodName(String n) {
-            // about 70% of the methods start with 'get', so this case goes
-            // first
-            if (n.startsWith("get")) {
-                return n.substring("get".length());
-            }
-            if (n.startsWith("is")) {
-                return n.substring("is".length());
+    private static final class ClassAccessors {
+
+        private final AttributeAccessor[] all;
+        private final Map<String, AttributeAccessor[]> byName = new HashMap<>();
+
+        ClassAccessors(AttributeAccessor[] all) {
+            this.all = all;
+            for (AttributeAccessor accessor : all) {
+                // several methods may have the same attribute name, e.g. getFoo and isFoo
+                AttributeAccessor[] named = byName.get(accessor.getName());
+                named = named == null ? new AttributeAccessor[1] : Arrays.copyOf(named, named.length + 1);
+                named[named.length - 1] = accessor;
+                byName.put(accessor.getName(), named);
             }
-            if (n.startsWith("has")) {
-                return n.substring("has".length());
-            }
-            if (n.startsWith("uses")) {
-                return n.substring("uses".length());
-            }
-
-            return n;
         }
     }
 }
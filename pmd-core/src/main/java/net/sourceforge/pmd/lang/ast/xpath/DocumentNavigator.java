@@ -5,9 +5,12 @@
 package net.sourceforge.pmd.lang.ast.xpath;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.jaxen.DefaultNavigator;
+import org.jaxen.NamedAccessNavigator;
 import org.jaxen.XPath;
 import org.jaxen.util.SingleObjectIterator;
 
@@ -16,11 +19,15 @@ import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
 
 /**
+ * The navigator of the Jaxen model. As a {@link NamedAccessNavigator}, it lets
+ * Jaxen select the attributes and children of a node by name, which only builds
+ * the requested attributes of nodes whose attributes are found by reflection.
+ *
  * @author daniels
  */
 @Deprecated
 @InternalApi
-public class DocumentNavigator extends DefaultNavigator {
+public class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator {
 
     private static final Iterator<Node> EMPTY_ITERATOR = new ArrayList<Node>().iterator();
 
@@ -141,6 +148,21 @@ public class DocumentNavigator extends DefaultNavigator {
         return ((Node) arg0).getXPathAttributesIterator();
     }
 
+    @Override
+    public Iterator<Attribute> getAttributeAxisIterator(Object contextNode, final String localName,
+            String namespacePrefix, String namespaceURI) {
+        if (!isDefaultNamespace(namespaceURI)) {
+            return Collections.<Attribute>emptyIterator();
+        }
+        final Node node = (Node) contextNode;
+        final Iterator<Attribute> attributes = node.getXPathAttributesIterator();
+        if (attributes instanceof AttributeAxisIterator) {
+            // the attributes are found by reflection, only the requested ones are built
+            return new AttributeAxisIterator(node, localName);
+        }
+        return new NamedAttributeIterator(attributes, localName);
+    }
+
     /**
      * Get an iterator over all of this node's children.
      *
@@ -163,6 +185,41 @@ public class DocumentNavigator extends DefaultNavigator {
         };
     }
 
+    @Override
+    public Iterator<Node> getChildAxisIterator(Object contextNode, final String localName,
+            String namespacePrefix, String namespaceURI) {
+        if (!isDefaultNamespace(namespaceURI)) {
+            return EMPTY_ITERATOR;
+        }
+        return new NodeIterator((Node) contextNode) {
+            @Override
+            protected Node getFirstNode(Node node) {
+                return getNamedNode(getFirstChild(node));
+            }
+
+            @Override
+            protected Node getNextNode(Node node) {
+                return getNamedNode(getNextSibling(node));
+            }
+
+            private Node getNamedNode(Node node) {
+                Node named = node;
+                while (named != null && !localName.equals(named.getXPathNodeName())) {
+                    named = getNextSibling(named);
+                }
+                return named;
+            }
+        };
+    }
+
+    /**
+     * The nodes and attributes of the AST are in no namespace, so a name
+     * with a namespace selects nothing.
+     */
+    private static boolean isDefaultNamespace(String namespaceURI) {
+        return namespaceURI == null || namespaceURI.isEmpty();
+    }
+
     /**
      * Get a (single-member) iterator over this node's parent.
      *
@@ -323,4 +380,51 @@ public class DocumentNavigator extends DefaultNavigator {
         }
         return getDocumentNode(getParentNode(contextNode));
     }
+
+    /**
+     * Selects the attributes with a given name among the attributes of a
+     * node, which aren't found by reflection.
+     */
+    private static final class NamedAttributeIterator implements Iterator<Attribute> {
+
+        private final Iterator<Attribute> attributes;
+        private final String name;
+        private Attribute next;
+
+        NamedAttributeIterator(Iterator<Attribute> attributes, String name) {
+            this.attributes = attributes;
+            this.name = name;
+            this.next = findNext();
+        }
+
+        private Attribute findNext() {
+            while (attributes.hasNext()) {
+                Attribute attribute = attributes.next();
+                if (name.equals(attribute.getName())) {
+                    return attribute;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Attribute next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Attribute result = next;
+            next = findNext();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
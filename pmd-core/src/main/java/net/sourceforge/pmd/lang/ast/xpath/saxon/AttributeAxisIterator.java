@@ -22,6 +22,8 @@ public class AttributeAxisIterator extends Navigator.BaseEnumeration {
 
     protected final ElementNode startNodeInfo;
     protected final Iterator<Attribute> iterator;
+    /** The name of the selected attributes, or null if all attributes are selected. */
+    private final String attributeName;
 
     /**
      * Create an iterator over the Attribute axis for the given ElementNode.
@@ -29,22 +31,38 @@ public class AttributeAxisIterator extends Navigator.BaseEnumeration {
      * @see net.sourceforge.pmd.lang.ast.xpath.AttributeAxisIterator
      */
     public AttributeAxisIterator(ElementNode startNodeInfo) {
+        this(startNodeInfo, null);
+    }
+
+    /**
+     * Create an iterator over the attributes with the given name of the given ElementNode.
+     * Only these attributes are wrapped into {@link AttributeNode}s.
+     */
+    AttributeAxisIterator(ElementNode startNodeInfo, String attributeName) {
         this.startNodeInfo = startNodeInfo;
-        this.iterator = startNodeInfo.node.getXPathAttributesIterator();
+        Iterator<Attribute> attributes = startNodeInfo.node.getXPathAttributesIterator();
+        if (attributeName != null && attributes instanceof net.sourceforge.pmd.lang.ast.xpath.AttributeAxisIterator) {
+            // the attributes are found by reflection, only the requested ones are built
+            attributes = new net.sourceforge.pmd.lang.ast.xpath.AttributeAxisIterator(startNodeInfo.node, attributeName);
+        }
+        this.iterator = attributes;
+        this.attributeName = attributeName;
     }
 
     @Override
     public SequenceIterator getAnother() {
-        return new AttributeAxisIterator(startNodeInfo);
+        return new AttributeAxisIterator(startNodeInfo, attributeName);
     }
 
     @Override
     public void advance() {
-        if (this.iterator.hasNext()) {
+        while (this.iterator.hasNext()) {
             Attribute attribute = this.iterator.next();
-            super.current = new AttributeNode(attribute, super.position());
-        } else {
-            super.current = null;
+            if (attributeName == null || attributeName.equals(attribute.getName())) {
+                super.current = new AttributeNode(attribute, super.position());
+                return;
+            }
         }
+        super.current = null;
     }
 }
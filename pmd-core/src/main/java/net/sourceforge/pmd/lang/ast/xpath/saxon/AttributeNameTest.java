@@ -0,0 +1,43 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.xpath.saxon;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+
+import net.sf.saxon.om.NamePool;
+import net.sf.saxon.pattern.NameTest;
+import net.sf.saxon.type.Type;
+
+/**
+ * A name test for attributes without namespace, like {@code @Image}, which
+ * knows the local name of the attribute. An {@link ElementNode} uses it to
+ * select the attributes by name, without wrapping the other attributes into
+ * {@link AttributeNode}s just to test their names.
+ *
+ * @since 6.17.0
+ */
+@InternalApi
+public class AttributeNameTest extends NameTest {
+
+    private final String localName;
+
+    /**
+     * Creates a name test for the attribute with the given fingerprint.
+     *
+     * @param fingerprint The fingerprint of the attribute name, which has no namespace
+     * @param namePool    The name pool, which contains the fingerprint
+     */
+    public AttributeNameTest(int fingerprint, NamePool namePool) {
+        super(Type.ATTRIBUTE, fingerprint, namePool);
+        this.localName = namePool.getLocalName(fingerprint);
+    }
+
+    /**
+     * Returns the local name of the selected attributes.
+     */
+    public String getLocalName() {
+        return localName;
+    }
+}
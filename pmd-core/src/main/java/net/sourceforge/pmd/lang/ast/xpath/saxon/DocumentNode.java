@@ -4,9 +4,9 @@
 
 package net.sourceforge.pmd.lang.ast.xpath.saxon;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.Map;
 
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
@@ -31,14 +31,10 @@ public class DocumentNode extends AbstractNodeInfo implements DocumentInfo {
      */
     protected final ElementNode rootNode;
 
-    /**
-     * Mapping from AST Node to corresponding ElementNode.
-     */
-    public final Map<Node, ElementNode> nodeToElementNode = new HashMap<>();
-
     /**
      * Construct a DocumentNode, with the given AST Node serving as the root
-     * ElementNode.
+     * ElementNode. The ElementNodes of the other AST Nodes are created,
+     * when they are navigated to.
      *
      * @param node
      *            The root AST Node.
@@ -46,7 +42,34 @@ public class DocumentNode extends AbstractNodeInfo implements DocumentInfo {
      * @see ElementNode
      */
     public DocumentNode(Node node) {
-        this.rootNode = new ElementNode(this, new IdGenerator(), null, node, -1);
+        this.rootNode = new ElementNode(this, null, node, -1);
+    }
+
+    /**
+     * Returns the root AST Node of this document.
+     */
+    public Node getRootAstNode() {
+        return rootNode.node;
+    }
+
+    /**
+     * Gets the ElementNode corresponding to the given AST Node, which must
+     * belong to the AST of this document.
+     *
+     * @param node The AST Node
+     *
+     * @return The ElementNode
+     */
+    public ElementNode getElementNode(Node node) {
+        final Deque<Node> path = new ArrayDeque<>();
+        for (Node n = node; n.jjtGetParent() != null; n = n.jjtGetParent()) {
+            path.push(n);
+        }
+        ElementNode elementNode = rootNode;
+        while (!path.isEmpty()) {
+            elementNode = elementNode.getChildren()[path.pop().jjtGetChildIndex()];
+        }
+        return elementNode;
     }
 
     @Override
@@ -74,6 +97,12 @@ public class DocumentNode extends AbstractNodeInfo implements DocumentInfo {
         return this;
     }
 
+    @Override
+    public int compareOrder(NodeInfo other) {
+        // the document node comes first
+        return other == this ? 0 : -1;
+    }
+
     @Override
     public boolean hasChildNodes() {
         return true;
@@ -15,6 +15,7 @@ import net.sf.saxon.om.Navigator;
 import net.sf.saxon.om.NodeArrayIterator;
 import net.sf.saxon.om.NodeInfo;
 import net.sf.saxon.om.SingleNodeIterator;
+import net.sf.saxon.pattern.NodeTest;
 import net.sf.saxon.type.Type;
 
 /**
@@ -27,26 +28,32 @@ public class ElementNode extends AbstractNodeInfo {
     protected final DocumentNode document;
     protected final ElementNode parent;
     protected final Node node;
-    protected final int id;
     protected final int siblingPosition;
-    protected final NodeInfo[] children;
+    /** The number of ancestors, used to compare the document order. */
+    private final int depth;
+    /** The children, wrapped on the first access to them. */
+    private ElementNode[] children;
 
-    public ElementNode(DocumentNode document, IdGenerator idGenerator, ElementNode parent, Node node,
-            int siblingPosition) {
+    public ElementNode(DocumentNode document, ElementNode parent, Node node, int siblingPosition) {
         this.document = document;
         this.parent = parent;
         this.node = node;
-        this.id = idGenerator.getNextId();
         this.siblingPosition = siblingPosition;
-        if (node.jjtGetNumChildren() > 0) {
-            this.children = new NodeInfo[node.jjtGetNumChildren()];
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
+
+    /**
+     * Returns the children of this node, which are wrapped on the first call.
+     * This isn't synchronized, as a document is only used by one thread.
+     */
+    ElementNode[] getChildren() {
+        if (children == null) {
+            children = new ElementNode[node.jjtGetNumChildren()];
             for (int i = 0; i < children.length; i++) {
-                children[i] = new ElementNode(document, idGenerator, this, node.jjtGetChild(i), i);
+                children[i] = new ElementNode(document, this, node.jjtGetChild(i), i);
             }
-        } else {
-            this.children = null;
         }
-        document.nodeToElementNode.put(node, this);
+        return children;
     }
 
     @Override
@@ -71,7 +78,7 @@ public class ElementNode extends AbstractNodeInfo {
 
     @Override
     public boolean hasChildNodes() {
-        return children != null;
+        return node.jjtGetNumChildren() > 0;
     }
 
     @Override
@@ -100,8 +107,35 @@ public class ElementNode extends AbstractNodeInfo {
     }
 
     @Override
+    @SuppressWarnings("PMD.CompareObjectsWithEquals")
     public int compareOrder(NodeInfo other) {
-        return Integer.signum(this.node.jjtGetId() - ((ElementNode) other).node.jjtGetId());
+        if (!(other instanceof ElementNode)) {
+            // the document node comes first
+            return 1;
+        }
+        ElementNode self = this;
+        ElementNode that = (ElementNode) other;
+        while (self.depth > that.depth) {
+            self = self.parent;
+            if (self == that) {
+                // the ancestor comes first
+                return 1;
+            }
+        }
+        while (that.depth > self.depth) {
+            that = that.parent;
+            if (that == self) {
+                return -1;
+            }
+        }
+        if (self == that) {
+            return 0;
+        }
+        while (self.parent != that.parent) {
+            self = self.parent;
+            that = that.parent;
+        }
+        return Integer.signum(self.siblingPosition - that.siblingPosition);
     }
 
     @SuppressWarnings("PMD.MissingBreakInSwitch")
@@ -115,10 +149,10 @@ public class ElementNode extends AbstractNodeInfo {
         case Axis.ATTRIBUTE:
             return new AttributeAxisIterator(this);
         case Axis.CHILD:
-            if (children == null) {
+            if (!hasChildNodes()) {
                 return EmptyIterator.getInstance();
             } else {
-                return new NodeArrayIterator(children);
+                return new NodeArrayIterator(getChildren());
             }
         case Axis.DESCENDANT:
             return new Navigator.DescendantEnumeration(this, false, true);
@@ -127,10 +161,11 @@ public class ElementNode extends AbstractNodeInfo {
         case Axis.FOLLOWING:
             return new Navigator.FollowingEnumeration(this);
         case Axis.FOLLOWING_SIBLING:
-            if (parent == null || siblingPosition == parent.children.length - 1) {
+            if (parent == null || siblingPosition == parent.node.jjtGetNumChildren() - 1) {
                 return EmptyIterator.getInstance();
             } else {
-                return new NodeArrayIterator(parent.children, siblingPosition + 1, parent.children.length);
+                final ElementNode[] siblings = parent.getChildren();
+                return new NodeArrayIterator(siblings, siblingPosition + 1, siblings.length);
             }
         case Axis.NAMESPACE:
             return super.iterateAxis(axisNumber);
@@ -142,7 +177,7 @@ public class ElementNode extends AbstractNodeInfo {
             if (parent == null || siblingPosition == 0) {
                 return EmptyIterator.getInstance();
             } else {
-                return new NodeArrayIterator(parent.children, 0, siblingPosition);
+                return new NodeArrayIterator(parent.getChildren(), 0, siblingPosition);
             }
         case Axis.SELF:
             return SingleNodeIterator.makeIterator(this);
@@ -153,4 +188,12 @@ public class ElementNode extends AbstractNodeInfo {
         }
     }
 
+    @Override
+    public AxisIterator iterateAxis(byte axisNumber, NodeTest nodeTest) {
+        if (axisNumber == Axis.ATTRIBUTE && nodeTest instanceof AttributeNameTest) {
+            return new AttributeAxisIterator(this, ((AttributeNameTest) nodeTest).getLocalName());
+        }
+        return super.iterateAxis(axisNumber, nodeTest);
+    }
+
 }
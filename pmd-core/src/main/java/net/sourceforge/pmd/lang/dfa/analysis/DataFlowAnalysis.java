@@ -0,0 +1,239 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.dfa.VariableAccess;
+
+/**
+ * An iterative gen/kill analysis over the data flow of a method. The facts of the
+ * analysis are numbered, and the facts, which hold before and after each node, are
+ * kept in bit sets. Each node generates and kills some facts. The states are
+ * propagated along the edges of the data flow with a worklist, until they don't change
+ * anymore. Unlike enumerating the paths through a method, this takes time linear in
+ * the number of nodes times the number of facts, also for methods with many branches.
+ *
+ * <p>Subclasses number their facts, declare the facts generated and killed by each node
+ * with {@link #gen(int, int)} and {@link #kill(int, int)}, and then call {@link #solve(int)}
+ * from their constructor.
+ *
+ * @since 6.17.0
+ */
+public abstract class DataFlowAnalysis {
+
+    private final List<DataFlowNode> flow;
+    private final Map<DataFlowNode, Integer> indexes;
+    private final boolean forward;
+    private final boolean union;
+
+    private final BitSet[] gen;
+    private final BitSet[] kill;
+    private final BitSet[] before;
+    private final BitSet[] after;
+
+    /**
+     * Creates a new analysis.
+     *
+     * @param flow    The data flow of the method, starting with its start node
+     * @param forward Whether the facts flow in the direction of the data flow, like reaching
+     *                definitions, or against it, like live variables
+     * @param union   Whether a fact holds where paths meet, if it holds on any of the paths,
+     *                or only if it holds on all of them
+     */
+    protected DataFlowAnalysis(List<DataFlowNode> flow, boolean forward, boolean union) {
+        this.flow = flow;
+        this.forward = forward;
+        this.union = union;
+
+        indexes = new IdentityHashMap<>(flow.size() * 2);
+        for (int i = 0; i < flow.size(); i++) {
+            indexes.put(flow.get(i), i);
+        }
+
+        gen = new BitSet[flow.size()];
+        kill = new BitSet[flow.size()];
+        before = new BitSet[flow.size()];
+        after = new BitSet[flow.size()];
+        for (int i = 0; i < flow.size(); i++) {
+            gen[i] = new BitSet();
+            kill[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Returns the data flow, which is analyzed.
+     */
+    public List<DataFlowNode> getFlow() {
+        return flow;
+    }
+
+    /**
+     * Returns the position of the given node in the data flow.
+     *
+     * @throws IllegalArgumentException If the node is not part of the data flow
+     */
+    protected final int indexOf(DataFlowNode node) {
+        Integer index = indexes.get(node);
+        if (index == null) {
+            throw new IllegalArgumentException("Node is not part of the analyzed data flow: " + node);
+        }
+        return index;
+    }
+
+    /**
+     * Declares, that the node at the given position generates the given fact. Together
+     * with {@link #kill(int, int)}, the calls for a node are applied in the order they
+     * are made, so they must follow the direction of the analysis through the node.
+     */
+    protected final void gen(int node, int fact) {
+        gen[node].set(fact);
+    }
+
+    /**
+     * Declares, that the node at the given position kills the given fact.
+     */
+    protected final void kill(int node, int fact) {
+        gen[node].clear(fact);
+        kill[node].set(fact);
+    }
+
+    /**
+     * Declares, that the node at the given position kills the given facts.
+     */
+    protected final void kill(int node, BitSet facts) {
+        gen[node].andNot(facts);
+        kill[node].or(facts);
+    }
+
+    /**
+     * Computes the states of all nodes. Called by the subclasses, once they declared the
+     * facts generated and killed by each node.
+     *
+     * @param factCount The number of facts
+     */
+    protected final void solve(int factCount) {
+        final int size = flow.size();
+        final List<List<Integer>> successors = new ArrayList<>(size);
+        final List<List<Integer>> predecessors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            successors.add(new ArrayList<Integer>());
+            predecessors.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < size; i++) {
+            for (DataFlowNode child : flow.get(i).getChildren()) {
+                Integer j = indexes.get(child);
+                if (j != null) {
+                    successors.get(forward ? i : j).add(forward ? j : i);
+                    predecessors.get(forward ? j : i).add(forward ? i : j);
+                }
+            }
+        }
+
+        // "input" is the state on the side the facts come from, "output" the other one
+        final BitSet[] input = forward ? before : after;
+        final BitSet[] output = forward ? after : before;
+        final BitSet top = new BitSet(factCount);
+        if (!union) {
+            top.set(0, factCount);
+        }
+        for (int i = 0; i < size; i++) {
+            input[i] = new BitSet(factCount);
+            output[i] = (BitSet) top.clone();
+        }
+
+        // the nodes are processed roughly in the order the facts flow
+        final int[] worklist = new int[size + 1];
+        final boolean[] queued = new boolean[size];
+        int head = 0;
+        int tail = 0;
+        for (int k = 0; k < size; k++) {
+            worklist[tail++] = forward ? k : size - 1 - k;
+            queued[k] = true;
+        }
+
+        while (head != tail) {
+            final int i = worklist[head];
+            head = (head + 1) % worklist.length;
+            queued[i] = false;
+
+            // at the boundary of the data flow, where there are no sources, none of the facts holds
+            final BitSet state = input[i];
+            final List<Integer> sources = predecessors.get(i);
+            state.clear();
+            if (!sources.isEmpty()) {
+                state.or(output[sources.get(0)]);
+                for (int s = 1; s < sources.size(); s++) {
+                    if (union) {
+                        state.or(output[sources.get(s)]);
+                    } else {
+                        state.and(output[sources.get(s)]);
+                    }
+                }
+            }
+
+            final BitSet result = (BitSet) state.clone();
+            result.andNot(kill[i]);
+            result.or(gen[i]);
+            if (!result.equals(output[i])) {
+                output[i] = result;
+                for (int target : successors.get(i)) {
+                    if (!queued[target]) {
+                        queued[target] = true;
+                        worklist[tail] = target;
+                        tail = (tail + 1) % worklist.length;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the facts, which hold right before the given node is executed. Don't
+     * modify the returned set.
+     */
+    protected final BitSet getStateBefore(DataFlowNode node) {
+        return before[indexOf(node)];
+    }
+
+    /**
+     * Returns the facts, which hold right after the given node is executed. Don't
+     * modify the returned set.
+     */
+    protected final BitSet getStateAfter(DataFlowNode node) {
+        return after[indexOf(node)];
+    }
+
+    /**
+     * Numbers the variables accessed in the given data flow, in the order of their first access.
+     */
+    protected static Map<String, Integer> indexVariables(List<DataFlowNode> flow) {
+        final Map<String, Integer> variables = new LinkedHashMap<>();
+        for (DataFlowNode node : flow) {
+            for (VariableAccess access : getVariableAccess(node)) {
+                if (!variables.containsKey(access.getVariableName())) {
+                    variables.put(access.getVariableName(), variables.size());
+                }
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Returns the variable accesses of the given node in the order they are executed,
+     * or an empty list, if the node doesn't access any variables.
+     */
+    protected static List<VariableAccess> getVariableAccess(DataFlowNode node) {
+        final List<VariableAccess> accesses = node.getVariableAccess();
+        return accesses == null ? Collections.<VariableAccess>emptyList() : accesses;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.dfa.VariableAccess;
+
+/**
+ * Finds the variables, which are definitely assigned at a point of the data flow. A
+ * variable is definitely assigned, if it is defined on every path from the start of the
+ * method to that point, and not undefined afterwards.
+ *
+ * @since 6.17.0
+ */
+public class DefiniteAssignment extends DataFlowAnalysis {
+
+    private final Map<String, Integer> variables;
+
+    /**
+     * Computes the definitely assigned variables of the given data flow.
+     *
+     * @param flow The data flow of a method, starting with its start node
+     */
+    public DefiniteAssignment(List<DataFlowNode> flow) {
+        super(flow, true, false);
+        variables = indexVariables(flow);
+
+        for (int i = 0; i < flow.size(); i++) {
+            for (VariableAccess access : getVariableAccess(flow.get(i))) {
+                final int variable = variables.get(access.getVariableName());
+                if (access.isDefinition()) {
+                    gen(i, variable);
+                } else if (access.isUndefinition()) {
+                    kill(i, variable);
+                }
+            }
+        }
+        solve(variables.size());
+    }
+
+    /**
+     * Returns true, if the given variable is definitely assigned right before the given node is executed.
+     */
+    public boolean isAssignedBefore(DataFlowNode node, String variable) {
+        final Integer index = variables.get(variable);
+        return index != null && getStateBefore(node).get(index);
+    }
+
+    /**
+     * Returns true, if the given variable is definitely assigned right after the given node is executed.
+     */
+    public boolean isAssignedAfter(DataFlowNode node, String variable) {
+        final Integer index = variables.get(variable);
+        return index != null && getStateAfter(node).get(index);
+    }
+}
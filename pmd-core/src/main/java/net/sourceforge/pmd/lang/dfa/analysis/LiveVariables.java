@@ -0,0 +1,65 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.dfa.VariableAccess;
+
+/**
+ * Finds the variables, which are live at a point of the data flow. A variable is live,
+ * if there is a path from that point to a reference of the variable, on which the
+ * variable is neither defined nor undefined. The value of a variable, which is not
+ * live after its definition, is never used.
+ *
+ * @since 6.17.0
+ */
+public class LiveVariables extends DataFlowAnalysis {
+
+    private final Map<String, Integer> variables;
+
+    /**
+     * Computes the live variables of the given data flow.
+     *
+     * @param flow The data flow of a method, starting with its start node
+     */
+    public LiveVariables(List<DataFlowNode> flow) {
+        super(flow, false, true);
+        variables = indexVariables(flow);
+
+        for (int i = 0; i < flow.size(); i++) {
+            final List<VariableAccess> accesses = getVariableAccess(flow.get(i));
+            // against the data flow, so from the last access of the node to the first one
+            for (int a = accesses.size() - 1; a >= 0; a--) {
+                final VariableAccess access = accesses.get(a);
+                final int variable = variables.get(access.getVariableName());
+                if (access.isReference()) {
+                    gen(i, variable);
+                } else {
+                    kill(i, variable);
+                }
+            }
+        }
+        solve(variables.size());
+    }
+
+    /**
+     * Returns true, if the given variable is live right before the given node is executed.
+     */
+    public boolean isLiveBefore(DataFlowNode node, String variable) {
+        final Integer index = variables.get(variable);
+        return index != null && getStateBefore(node).get(index);
+    }
+
+    /**
+     * Returns true, if the given variable is live right after the given node is executed.
+     */
+    public boolean isLiveAfter(DataFlowNode node, String variable) {
+        final Integer index = variables.get(variable);
+        return index != null && getStateAfter(node).get(index);
+    }
+}
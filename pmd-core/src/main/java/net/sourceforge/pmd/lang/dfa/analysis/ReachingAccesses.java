@@ -0,0 +1,168 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.dfa.VariableAccess;
+
+/**
+ * Finds the variable accesses, which may directly precede another access of the same
+ * variable. An access reaches a point of the data flow, if there is a path from the access
+ * to that point, on which the variable is not accessed again. E.g. a definition, which
+ * reaches another definition of the same variable, is a DD-anomaly.
+ *
+ * @since 6.17.0
+ */
+public class ReachingAccesses extends DataFlowAnalysis {
+
+    private final boolean definitionsOnly;
+    private final List<Site> sites = new ArrayList<>();
+    private final Map<String, BitSet> sitesByVariable = new HashMap<>();
+    /** The number of the site of each variable access of each node, or -1 if it's not tracked. */
+    private final int[][] siteNumbers;
+
+    /**
+     * Computes the reaching accesses of the given data flow.
+     *
+     * @param flow The data flow of a method, starting with its start node
+     */
+    public ReachingAccesses(List<DataFlowNode> flow) {
+        this(flow, false);
+    }
+
+    ReachingAccesses(List<DataFlowNode> flow, boolean definitionsOnly) {
+        super(flow, true, true);
+        this.definitionsOnly = definitionsOnly;
+
+        siteNumbers = new int[flow.size()][];
+        for (int i = 0; i < flow.size(); i++) {
+            final List<VariableAccess> accesses = getVariableAccess(flow.get(i));
+            siteNumbers[i] = new int[accesses.size()];
+            for (int a = 0; a < accesses.size(); a++) {
+                final VariableAccess access = accesses.get(a);
+                if (isTracked(access)) {
+                    siteNumbers[i][a] = sites.size();
+                    variableSites(access.getVariableName()).set(sites.size());
+                    sites.add(new Site(flow.get(i), access));
+                } else {
+                    siteNumbers[i][a] = -1;
+                }
+            }
+        }
+
+        for (int i = 0; i < flow.size(); i++) {
+            final List<VariableAccess> accesses = getVariableAccess(flow.get(i));
+            for (int a = 0; a < accesses.size(); a++) {
+                final VariableAccess access = accesses.get(a);
+                if (isKilling(access)) {
+                    kill(i, variableSites(access.getVariableName()));
+                }
+                if (siteNumbers[i][a] >= 0) {
+                    gen(i, siteNumbers[i][a]);
+                }
+            }
+        }
+        solve(sites.size());
+    }
+
+    private boolean isTracked(VariableAccess access) {
+        return !definitionsOnly || access.isDefinition();
+    }
+
+    private boolean isKilling(VariableAccess access) {
+        return !definitionsOnly || !access.isReference();
+    }
+
+    private BitSet variableSites(String variable) {
+        BitSet result = sitesByVariable.get(variable);
+        if (result == null) {
+            result = new BitSet();
+            sitesByVariable.put(variable, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the accesses of the given variable, which reach the given node, before
+     * any of the variable accesses of the node are executed.
+     *
+     * @param node     A node of the data flow
+     * @param variable The name of the variable
+     *
+     * @return The reaching accesses, in the order of the data flow
+     */
+    public List<Site> getReaching(DataFlowNode node, String variable) {
+        return toSites(getStateBefore(node), variable);
+    }
+
+    /**
+     * Returns the accesses of the same variable, which reach the given variable access of
+     * the node. The preceding accesses of the same node are taken into account.
+     *
+     * @param node        A node of the data flow
+     * @param accessIndex The position of the variable access in {@link DataFlowNode#getVariableAccess()}
+     *
+     * @return The reaching accesses, in the order of the data flow
+     */
+    public List<Site> getReaching(DataFlowNode node, int accessIndex) {
+        final int i = indexOf(node);
+        final List<VariableAccess> accesses = getVariableAccess(node);
+        final BitSet state = (BitSet) getStateBefore(node).clone();
+        for (int a = 0; a < accessIndex; a++) {
+            if (isKilling(accesses.get(a))) {
+                state.andNot(variableSites(accesses.get(a).getVariableName()));
+            }
+            if (siteNumbers[i][a] >= 0) {
+                state.set(siteNumbers[i][a]);
+            }
+        }
+        return toSites(state, accesses.get(accessIndex).getVariableName());
+    }
+
+    private List<Site> toSites(BitSet state, String variable) {
+        final BitSet variableSites = sitesByVariable.get(variable);
+        final List<Site> result = new ArrayList<>();
+        if (variableSites != null) {
+            for (int s = state.nextSetBit(0); s >= 0; s = state.nextSetBit(s + 1)) {
+                if (variableSites.get(s)) {
+                    result.add(sites.get(s));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A variable access at a node of the data flow.
+     */
+    public static final class Site {
+        private final DataFlowNode node;
+        private final VariableAccess variableAccess;
+
+        Site(DataFlowNode node, VariableAccess variableAccess) {
+            this.node = node;
+            this.variableAccess = variableAccess;
+        }
+
+        public DataFlowNode getNode() {
+            return node;
+        }
+
+        public VariableAccess getVariableAccess() {
+            return variableAccess;
+        }
+
+        @Override
+        public String toString() {
+            return variableAccess + " at line " + node.getLine();
+        }
+    }
+}
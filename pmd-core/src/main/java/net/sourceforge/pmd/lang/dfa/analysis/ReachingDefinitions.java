@@ -0,0 +1,29 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import java.util.List;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+
+/**
+ * Finds the definitions of variables, which may reach a point of the data flow. A
+ * definition reaches a point, if there is a path from the definition to that point,
+ * on which the variable is neither defined again nor undefined. References don't
+ * affect the definitions.
+ *
+ * @since 6.17.0
+ */
+public class ReachingDefinitions extends ReachingAccesses {
+
+    /**
+     * Computes the reaching definitions of the given data flow.
+     *
+     * @param flow The data flow of a method, starting with its start node
+     */
+    public ReachingDefinitions(List<DataFlowNode> flow) {
+        super(flow, true);
+    }
+}
@@ -64,7 +64,7 @@ public abstract class AbstractMetricsComputer<T extends QualifiableNode, O exten
         List<Double> values = new ArrayList<>();
         for (O op : ops) {
             if (key.supports(op)) {
-                MetricMemoizer<O> opStats = stats.getOperationMemoizer(op.getQualifiedName());
+                MetricMemoizer<O> opStats = BasicProjectMemoizer.operationMemoizerOf(stats, op);
                 double val = this.computeForOperation(key, op, force, options, opStats);
                 if (val != Double.NaN) {
                     values.add(val);
@@ -61,7 +61,7 @@ public abstract class AbstractMetricsFacade<T extends QualifiableNode, O extends
             return Double.NaN;
         }
 
-        MetricMemoizer<T> memoizer = getLanguageSpecificProjectMemoizer().getClassMemoizer(node.getQualifiedName());
+        MetricMemoizer<T> memoizer = BasicProjectMemoizer.classMemoizerOf(getLanguageSpecificProjectMemoizer(), node);
 
         return memoizer == null ? Double.NaN
                                 : getLanguageSpecificComputer().computeForType(key, node, false,
@@ -89,7 +89,8 @@ public abstract class AbstractMetricsFacade<T extends QualifiableNode, O extends
             return Double.NaN;
         }
 
-        MetricMemoizer<O> memoizer = getLanguageSpecificProjectMemoizer().getOperationMemoizer(node.getQualifiedName());
+        MetricMemoizer<O> memoizer
+            = BasicProjectMemoizer.operationMemoizerOf(getLanguageSpecificProjectMemoizer(), node);
 
         return memoizer == null ? Double.NaN
                                 : getLanguageSpecificComputer().computeForOperation(key, node, false,
@@ -4,14 +4,20 @@
 
 package net.sourceforge.pmd.lang.metrics;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import net.sourceforge.pmd.lang.ast.Node;
 
 /**
  * Basic implementation of a metric memoizer.
  *
+ * <p>The results are stored unboxed, next to their key. A node usually only has
+ * a few memoized metrics, so they're looked up with a linear scan. Keys are compared
+ * by identity, which is correct since they're pooled by {@link ParameterizedMetricKey#getInstance(MetricKey, MetricOptions)}.
+ *
+ * <p>This class is not thread-safe. It's meant to be kept on the node it memoizes
+ * the metrics of, which is only ever accessed by the thread analysing its file.
+ *
  * @param <N> Type of node on which the memoized metric can be computed
  *
  * @author Clément Fournier
@@ -19,18 +25,43 @@ import net.sourceforge.pmd.lang.ast.Node;
  */
 public class BasicMetricMemoizer<N extends Node> implements MetricMemoizer<N> {
 
+    private static final ParameterizedMetricKey<?>[] NO_KEYS = {};
+    private static final double[] NO_VALUES = {};
 
-    private final Map<ParameterizedMetricKey<N>, Double> memo = new HashMap<>();
+    private ParameterizedMetricKey<?>[] keys = NO_KEYS;
+    private double[] values = NO_VALUES;
+    private int size;
 
 
     @Override
     public Double getMemo(ParameterizedMetricKey<N> key) {
-        return memo.get(key);
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
     }
 
 
     @Override
     public void memoize(ParameterizedMetricKey<N> key, double value) {
-        memo.put(key, value);
+        int i = indexOf(key);
+        if (i < 0) {
+            if (size == keys.length) {
+                int capacity = Math.max(4, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            i = size++;
+            keys[i] = key;
+        }
+        values[i] = value;
+    }
+
+
+    private int indexOf(ParameterizedMetricKey<N> key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
     }
 }
@@ -16,6 +16,10 @@ import net.sourceforge.pmd.lang.ast.QualifiedName;
  *
  * <p>This implementation takes care of recollecting irrelevant memoizers by storing them in {@link WeakHashMap}.
  *
+ * <p>The lookups by node default to the lookups by qualified name, which are synchronized, and
+ * shared by all files of the analysis. Subclasses should rather override them to return a memoizer
+ * kept on the node, e.g. a {@link BasicMetricMemoizer}, which needs no locking.
+ *
  * @param <T> Type of type declaration nodes of the language
  * @param <O> Type of operation declaration nodes of the language
  *
@@ -60,4 +64,56 @@ public abstract class BasicProjectMemoizer<T extends QualifiableNode, O extends
 
         return classes.get(qname);
     }
+
+
+    /**
+     * Gets the operation metric memoizer of the given operation node.
+     * Subclasses may keep the memoizer on the node itself, so that it's
+     * released together with the AST.
+     *
+     * @param node The operation node
+     *
+     * @return The correct memoizer, or null if it wasn't found
+     */
+    public MetricMemoizer<O> getOperationMemoizer(O node) {
+        return getOperationMemoizer(node.getQualifiedName());
+    }
+
+
+    /**
+     * Gets the class metric memoizer of the given class node.
+     * Subclasses may keep the memoizer on the node itself, so that it's
+     * released together with the AST.
+     *
+     * @param node The class node
+     *
+     * @return The correct memoizer, or null if it wasn't found
+     */
+    public MetricMemoizer<T> getClassMemoizer(T node) {
+        return getClassMemoizer(node.getQualifiedName());
+    }
+
+
+    /**
+     * Gets the memoizer of the given operation, by node if the project memoizer
+     * is a basic one, otherwise by qualified name.
+     */
+    static <T extends QualifiableNode, O extends QualifiableNode> MetricMemoizer<O> operationMemoizerOf(
+            ProjectMemoizer<T, O> memoizer, O node) {
+        return memoizer instanceof BasicProjectMemoizer
+               ? ((BasicProjectMemoizer<T, O>) memoizer).getOperationMemoizer(node)
+               : memoizer.getOperationMemoizer(node.getQualifiedName());
+    }
+
+
+    /**
+     * Gets the memoizer of the given class, by node if the project memoizer
+     * is a basic one, otherwise by qualified name.
+     */
+    static <T extends QualifiableNode, O extends QualifiableNode> MetricMemoizer<T> classMemoizerOf(
+            ProjectMemoizer<T, O> memoizer, T node) {
+        return memoizer instanceof BasicProjectMemoizer
+               ? ((BasicProjectMemoizer<T, O>) memoizer).getClassMemoizer(node)
+               : memoizer.getClassMemoizer(node.getQualifiedName());
+    }
 }
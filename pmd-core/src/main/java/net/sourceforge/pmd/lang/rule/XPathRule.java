@@ -117,6 +117,15 @@ public class XPathRule extends AbstractRule {
         }
     }
 
+    @Override
+    public void end(RuleContext ctx) {
+        // the XPath rules of the file share its DocumentNode and the values evaluated once for
+        // the file, which must not outlive the analysis
+        SaxonXPathRuleQuery.releaseCurrentDocument();
+        JaxenXPathRuleQuery.releaseCurrentDocument();
+        super.end(ctx);
+    }
+
     /**
      * Initializes {@link #xpathRuleQuery} iff {@link #xPathRuleQueryNeedsInitialization()} is true. To select the
      * engine in which the query will be run it looks at the XPath version.
@@ -0,0 +1,746 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jaxen.BaseXPath;
+import org.jaxen.Context;
+import org.jaxen.ContextSupport;
+import org.jaxen.JaxenException;
+import org.jaxen.expr.BinaryExpr;
+import org.jaxen.expr.DefaultFilterExpr;
+import org.jaxen.expr.DefaultXPathFactory;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.FilterExpr;
+import org.jaxen.expr.FunctionCallExpr;
+import org.jaxen.expr.LiteralExpr;
+import org.jaxen.expr.LocationPath;
+import org.jaxen.expr.NumberExpr;
+import org.jaxen.expr.PathExpr;
+import org.jaxen.expr.Predicate;
+import org.jaxen.expr.Step;
+import org.jaxen.expr.UnaryExpr;
+import org.jaxen.expr.UnionExpr;
+import org.jaxen.expr.VariableReferenceExpr;
+import org.jaxen.expr.XPathFactory;
+import org.jaxen.function.BooleanFunction;
+import org.jaxen.saxpath.Axis;
+import org.jaxen.saxpath.Operator;
+
+/**
+ * Rewrites the expression tree of a Jaxen query into an equivalent one, which
+ * is cheaper to evaluate:
+ *
+ * <ul>
+ * <li>The operands of {@code and} and {@code or}, and the predicates of a step,
+ * which don't depend on the position of the context node, are evaluated from
+ * the cheapest to the most expensive one. E.g. attribute tests are evaluated
+ * before calls to {@code pmd-java:typeIs} or {@code pmd-java:metric}, or before
+ * paths on the descendant axis. Operands of about the same cost keep their
+ * order, as the rule's author often puts the most selective one first. No
+ * operand is moved across one, which walks the whole file, as the author may
+ * have put it there as a guard for the following ones.</li>
+ * <li>A relative path, which walks a subtree, and whose value is only tested
+ * for emptiness, stops at the first node it finds, instead of collecting all
+ * of them. For this, {@code count(path) > 0} becomes {@code boolean(path)},
+ * and {@code count(path) = 0} becomes {@code not(path)}.</li>
+ * <li>An absolute path inside a predicate, like
+ * {@code //Name[@Image = //ImportDeclaration/Name/@Image]}, doesn't depend on
+ * the context node. It is evaluated once per file, instead of once per context
+ * node.</li>
+ * </ul>
+ *
+ * <p>Other paths are left as they are: collecting the few nodes around the
+ * context node costs about as much as stopping at the first one.
+ *
+ * <p>The root expression of a query is never replaced, only its subexpressions.
+ * The rewritten expressions print as the original ones, so that the text of a
+ * rewritten query can be parsed again.
+ */
+final class JaxenQueryOptimizer {
+
+    /** Functions, whose evaluation costs much more than navigating the tree. */
+    private static final Set<String> EXPENSIVE_FUNCTIONS = new HashSet<>(Arrays.asList("typeIs", "typeIsExactly",
+            "typeof", "metric"));
+    /** The prefixes of the PMD functions. */
+    private static final Set<String> PMD_PREFIXES = new HashSet<>(Arrays.asList("pmd", "pmd-java"));
+    private static final Set<String> PMD_BOOLEAN_FUNCTIONS = new HashSet<>(Arrays.asList("matches", "typeIs",
+            "typeIsExactly", "typeof"));
+    private static final Set<String> BOOLEAN_FUNCTIONS = new HashSet<>(Arrays.asList("boolean", "not", "true",
+            "false", "lang", "contains", "starts-with", "ends-with"));
+    private static final Set<String> STRING_FUNCTIONS = new HashSet<>(Arrays.asList("string", "concat",
+            "substring", "substring-before", "substring-after", "normalize-space", "translate", "upper-case",
+            "lower-case", "local-name", "name", "namespace-uri"));
+    private static final Set<String> NUMBER_FUNCTIONS = new HashSet<>(Arrays.asList("count", "sum", "number",
+            "string-length", "floor", "ceiling", "round", "position", "last"));
+
+    private static final int SUBTREE_COST = 50;
+    private static final int EXPENSIVE_FUNCTION_COST = 100;
+    private static final int ABSOLUTE_PATH_COST = 1000;
+    /**
+     * The values of the document constant expressions for the file analyzed by the current
+     * thread. They're released when the analysis of the file ends, see
+     * {@link #releaseCurrentDocument()}, so that the thread doesn't retain the AST.
+     */
+    private static final ThreadLocal<DocumentValues> CURRENT_VALUES = new ThreadLocal<>();
+
+    /** The cost class of the expressions, which walk the whole file. */
+    private static final int WHOLE_FILE = 3;
+
+    private final XPathFactory xpathFactory = new DefaultXPathFactory();
+
+    private JaxenQueryOptimizer() {
+    }
+
+    /**
+     * Rewrites the subexpressions of the given query.
+     *
+     * @param xpath The query, which is not evaluated yet
+     *
+     * @throws JaxenException If an expression can't be created
+     */
+    static void optimize(BaseXPath xpath) throws JaxenException {
+        new JaxenQueryOptimizer().optimize(xpath.getRootExpr(), false, false);
+    }
+
+    /**
+     * Releases the values of the document constant expressions, which have been
+     * evaluated on the file analyzed by the current thread.
+     */
+    static void releaseCurrentDocument() {
+        CURRENT_VALUES.remove();
+    }
+
+    /* package */ static Object getCurrentDocument() {
+        final DocumentValues values = CURRENT_VALUES.get();
+        return values == null ? null : values.document;
+    }
+
+    /**
+     * Rewrites the given expression.
+     *
+     * @param expr        The expression
+     * @param asBoolean   Whether only the boolean value of the expression is used
+     * @param inPredicate Whether the expression is part of a predicate
+     *
+     * @return The rewritten expression, or the given one, if it's only rewritten in place
+     */
+    private Expr optimize(Expr expr, boolean asBoolean, boolean inPredicate) throws JaxenException {
+        if (expr instanceof LocationPath) {
+            final LocationPath path = (LocationPath) expr;
+            optimizeSteps(path);
+            if (path.isAbsolute()) {
+                return inPredicate ? new DocumentConstantExpr(path) : path;
+            }
+            return asBoolean && walksSubtree(path) && hasNonPositionalPredicates(path) ? new NonEmptyPathExpr(path)
+                    : path;
+        } else if (expr instanceof PathExpr) {
+            final PathExpr pathExpr = (PathExpr) expr;
+            if (pathExpr.getFilterExpr() != null) {
+                pathExpr.setFilterExpr(optimize(pathExpr.getFilterExpr(), false, inPredicate));
+            }
+            if (pathExpr.getLocationPath() != null) {
+                optimizeSteps(pathExpr.getLocationPath());
+            }
+            return pathExpr;
+        } else if (expr instanceof FilterExpr) {
+            final FilterExpr filterExpr = (FilterExpr) expr;
+            optimizePredicates(getPredicates(filterExpr.getPredicates()));
+            final Expr inner = optimize(filterExpr.getExpr(), false, inPredicate);
+            return inner == filterExpr.getExpr() ? filterExpr : new DefaultFilterExpr(inner,
+                    filterExpr.getPredicateSet());
+        } else if (expr instanceof UnionExpr) {
+            final UnionExpr union = (UnionExpr) expr;
+            final Expr lhs = optimize(union.getLHS(), false, inPredicate);
+            final Expr rhs = optimize(union.getRHS(), false, inPredicate);
+            return lhs == union.getLHS() && rhs == union.getRHS() ? union : xpathFactory.createUnionExpr(lhs, rhs);
+        } else if (expr instanceof BinaryExpr) {
+            return optimizeBinaryExpr((BinaryExpr) expr, inPredicate);
+        } else if (expr instanceof UnaryExpr) {
+            final UnaryExpr unary = (UnaryExpr) expr;
+            final Expr inner = optimize(unary.getExpr(), false, inPredicate);
+            return inner == unary.getExpr() ? unary : xpathFactory.createUnaryExpr(inner, Operator.NEGATIVE);
+        } else if (expr instanceof FunctionCallExpr) {
+            final FunctionCallExpr call = (FunctionCallExpr) expr;
+            final boolean booleanArguments = isCoreFunction(call, "not") || isCoreFunction(call, "boolean");
+            final List<Expr> parameters = getParameters(call);
+            for (int i = 0; i < parameters.size(); i++) {
+                parameters.set(i, optimize(parameters.get(i), booleanArguments, inPredicate));
+            }
+            return call;
+        }
+        return expr;
+    }
+
+    private void optimizeSteps(LocationPath path) throws JaxenException {
+        for (Step step : getSteps(path)) {
+            optimizePredicates(getPredicates(step.getPredicates()));
+        }
+    }
+
+    private void optimizePredicates(List<Predicate> predicates) throws JaxenException {
+        boolean nonPositional = true;
+        for (Predicate predicate : predicates) {
+            final boolean predicateNonPositional = isNonPositional(predicate.getExpr());
+            predicate.setExpr(optimize(predicate.getExpr(), predicateNonPositional, true));
+            nonPositional &= predicateNonPositional;
+        }
+        if (nonPositional && predicates.size() > 1) {
+            // the predicates only filter the nodes, so their order doesn't matter
+            final List<Expr> exprs = new ArrayList<>(predicates.size());
+            for (Predicate predicate : predicates) {
+                exprs.add(predicate.getExpr());
+            }
+            final List<Predicate> sorted = new ArrayList<>(predicates.size());
+            for (int index : costOrder(exprs)) {
+                sorted.add(predicates.get(index));
+            }
+            Collections.copy(predicates, sorted);
+        }
+    }
+
+    private Expr optimizeBinaryExpr(BinaryExpr binary, boolean inPredicate) throws JaxenException {
+        final String operator = binary.getOperator();
+        if ("and".equals(operator) || "or".equals(operator)) {
+            return optimizeBooleanOperands(binary, inPredicate);
+        }
+
+        final Expr emptinessTest = getEmptinessTest(binary);
+        if (emptinessTest != null) {
+            return optimize(emptinessTest, false, inPredicate);
+        }
+
+        final Expr lhs = optimize(binary.getLHS(), false, inPredicate);
+        final Expr rhs = optimize(binary.getRHS(), false, inPredicate);
+        if (lhs == binary.getLHS() && rhs == binary.getRHS()) {
+            return binary;
+        }
+        return createBinaryExpr(operator, lhs, rhs);
+    }
+
+    /**
+     * Evaluates the operands of a chain of {@code and} or {@code or} from the
+     * cheapest to the most expensive one. Both only use the boolean values of
+     * their operands, which have no side effects, so the order doesn't change
+     * the result.
+     */
+    private Expr optimizeBooleanOperands(BinaryExpr binary, boolean inPredicate) throws JaxenException {
+        final String operator = binary.getOperator();
+        final List<Expr> operands = new ArrayList<>();
+        collectOperands(binary, operator, operands);
+
+        final List<Expr> rewritten = new ArrayList<>(operands.size());
+        for (Expr operand : operands) {
+            rewritten.add(optimize(operand, true, inPredicate));
+        }
+        final List<Expr> optimized = new ArrayList<>(operands.size());
+        for (int index : costOrder(rewritten)) {
+            optimized.add(rewritten.get(index));
+        }
+        if (optimized.equals(operands)) {
+            return binary;
+        }
+
+        Expr result = optimized.get(0);
+        for (int i = 1; i < optimized.size(); i++) {
+            result = "and".equals(operator) ? xpathFactory.createAndExpr(result, optimized.get(i))
+                    : xpathFactory.createOrExpr(result, optimized.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indices of the given operands, from the cheapest to the most
+     * expensive one. Operands of the same cost class keep their order. Operands,
+     * which walk the whole file, stay in place, and the others are only sorted
+     * between them.
+     */
+    private static List<Integer> costOrder(final List<Expr> operands) {
+        final List<Integer> order = new ArrayList<>(operands.size());
+        int start = 0;
+        for (int i = 0; i <= operands.size(); i++) {
+            if (i == operands.size() || costClass(operands.get(i)) == WHOLE_FILE) {
+                final List<Integer> between = new ArrayList<>();
+                for (int j = start; j < i; j++) {
+                    between.add(j);
+                }
+                Collections.sort(between, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer i1, Integer i2) {
+                        return Integer.compare(costClass(operands.get(i1)), costClass(operands.get(i2)));
+                    }
+                });
+                order.addAll(between);
+                if (i < operands.size()) {
+                    order.add(i);
+                }
+                start = i + 1;
+            }
+        }
+        return order;
+    }
+
+    private static void collectOperands(Expr expr, String operator, List<Expr> operands) {
+        if (expr instanceof BinaryExpr && operator.equals(((BinaryExpr) expr).getOperator())) {
+            collectOperands(((BinaryExpr) expr).getLHS(), operator, operands);
+            collectOperands(((BinaryExpr) expr).getRHS(), operator, operands);
+        } else {
+            operands.add(expr);
+        }
+    }
+
+    /**
+     * Returns {@code boolean(path)} for a comparison like {@code count(path) > 0},
+     * and {@code not(path)} for one like {@code count(path) = 0}, if the path walks
+     * a subtree. Returns null for other expressions.
+     */
+    private Expr getEmptinessTest(BinaryExpr binary) throws JaxenException {
+        String operator = binary.getOperator();
+        Expr count = binary.getLHS();
+        Expr number = binary.getRHS();
+        if (number instanceof FunctionCallExpr) {
+            // 0 < count(path) is count(path) > 0
+            count = binary.getRHS();
+            number = binary.getLHS();
+            operator = mirror(operator);
+        }
+        if (!(count instanceof FunctionCallExpr) || !(number instanceof NumberExpr)
+                || !isCoreFunction((FunctionCallExpr) count, "count")
+                || getParameters((FunctionCallExpr) count).size() != 1
+                || !(getParameters((FunctionCallExpr) count).get(0) instanceof LocationPath)
+                || !walksSubtree((LocationPath) getParameters((FunctionCallExpr) count).get(0))) {
+            return null;
+        }
+
+        final double value = ((NumberExpr) number).getNumber().doubleValue();
+        final String function;
+        if (value == 0 && (">".equals(operator) || "!=".equals(operator))
+                || value == 1 && ">=".equals(operator)) {
+            function = "boolean";
+        } else if (value == 0 && ("=".equals(operator) || "<=".equals(operator))
+                || value == 1 && "<".equals(operator)) {
+            function = "not";
+        } else {
+            return null;
+        }
+        final FunctionCallExpr test = xpathFactory.createFunctionCallExpr("", function);
+        test.addParameter(getParameters((FunctionCallExpr) count).get(0));
+        return test;
+    }
+
+    private static String mirror(String operator) {
+        switch (operator) {
+        case "<":
+            return ">";
+        case "<=":
+            return ">=";
+        case ">":
+            return "<";
+        case ">=":
+            return "<=";
+        default:
+            return operator;
+        }
+    }
+
+    private Expr createBinaryExpr(String operator, Expr lhs, Expr rhs) throws JaxenException {
+        switch (operator) {
+        case "=":
+            return xpathFactory.createEqualityExpr(lhs, rhs, Operator.EQUALS);
+        case "!=":
+            return xpathFactory.createEqualityExpr(lhs, rhs, Operator.NOT_EQUALS);
+        case "<":
+            return xpathFactory.createRelationalExpr(lhs, rhs, Operator.LESS_THAN);
+        case "<=":
+            return xpathFactory.createRelationalExpr(lhs, rhs, Operator.LESS_THAN_EQUALS);
+        case ">":
+            return xpathFactory.createRelationalExpr(lhs, rhs, Operator.GREATER_THAN);
+        case ">=":
+            return xpathFactory.createRelationalExpr(lhs, rhs, Operator.GREATER_THAN_EQUALS);
+        case "+":
+            return xpathFactory.createAdditiveExpr(lhs, rhs, Operator.ADD);
+        case "-":
+            return xpathFactory.createAdditiveExpr(lhs, rhs, Operator.SUBTRACT);
+        case "*":
+            return xpathFactory.createMultiplicativeExpr(lhs, rhs, Operator.MULTIPLY);
+        case "div":
+            return xpathFactory.createMultiplicativeExpr(lhs, rhs, Operator.DIV);
+        case "mod":
+            return xpathFactory.createMultiplicativeExpr(lhs, rhs, Operator.MOD);
+        default:
+            throw new JaxenException("Unknown operator " + operator);
+        }
+    }
+
+    /**
+     * Returns true if the expression can't select a node by its position,
+     * when used as predicate. This is the case, if its value isn't a number,
+     * and it doesn't use the position of the context node.
+     */
+    private static boolean isNonPositional(Expr expr) {
+        final ResultType type = getResultType(expr);
+        return type != ResultType.NUMBER && type != ResultType.UNKNOWN && !usesPosition(expr);
+    }
+
+    /**
+     * Returns true if the path is relative, and has a step on an axis, which
+     * selects more than the nodes around the context node.
+     */
+    private static boolean walksSubtree(LocationPath path) {
+        if (path.isAbsolute()) {
+            return false;
+        }
+        for (Step step : getSteps(path)) {
+            if (cost(step.getAxis()) >= SUBTREE_COST) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasNonPositionalPredicates(LocationPath path) {
+        for (Step step : getSteps(path)) {
+            for (Predicate predicate : getPredicates(step.getPredicates())) {
+                if (!isNonPositional(predicate.getExpr())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private enum ResultType {
+        BOOLEAN, NUMBER, STRING, NODE_SET, UNKNOWN
+    }
+
+    private static ResultType getResultType(Expr expr) {
+        if (expr instanceof LocationPath || expr instanceof PathExpr || expr instanceof UnionExpr
+                || expr instanceof DocumentConstantExpr) {
+            return ResultType.NODE_SET;
+        } else if (expr instanceof NonEmptyPathExpr) {
+            return ResultType.BOOLEAN;
+        } else if (expr instanceof FilterExpr) {
+            return getResultType(((FilterExpr) expr).getExpr()) == ResultType.NODE_SET ? ResultType.NODE_SET
+                    : ResultType.UNKNOWN;
+        } else if (expr instanceof BinaryExpr) {
+            switch (((BinaryExpr) expr).getOperator()) {
+            case "and":
+            case "or":
+            case "=":
+            case "!=":
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                return ResultType.BOOLEAN;
+            default:
+                return ResultType.NUMBER;
+            }
+        } else if (expr instanceof UnaryExpr || expr instanceof NumberExpr) {
+            return ResultType.NUMBER;
+        } else if (expr instanceof LiteralExpr) {
+            return ResultType.STRING;
+        } else if (expr instanceof FunctionCallExpr) {
+            return getResultType((FunctionCallExpr) expr);
+        }
+        // e.g. variables, which may be numbers
+        return ResultType.UNKNOWN;
+    }
+
+    private static ResultType getResultType(FunctionCallExpr call) {
+        final String name = call.getFunctionName();
+        if (PMD_PREFIXES.contains(call.getPrefix())) {
+            return PMD_BOOLEAN_FUNCTIONS.contains(name) ? ResultType.BOOLEAN : ResultType.UNKNOWN;
+        } else if (!"".equals(call.getPrefix())) {
+            return ResultType.UNKNOWN;
+        } else if (BOOLEAN_FUNCTIONS.contains(name)) {
+            return ResultType.BOOLEAN;
+        } else if (STRING_FUNCTIONS.contains(name)) {
+            return ResultType.STRING;
+        } else if (NUMBER_FUNCTIONS.contains(name)) {
+            return ResultType.NUMBER;
+        }
+        return ResultType.UNKNOWN;
+    }
+
+    /**
+     * Returns true if the expression calls {@code position()} or {@code last()}
+     * for the context node. The calls in predicates of paths use the position
+     * of the nodes selected by the path instead.
+     */
+    private static boolean usesPosition(Expr expr) {
+        if (expr instanceof PathExpr) {
+            final PathExpr pathExpr = (PathExpr) expr;
+            return pathExpr.getFilterExpr() != null && usesPosition(pathExpr.getFilterExpr());
+        } else if (expr instanceof FilterExpr) {
+            return usesPosition(((FilterExpr) expr).getExpr());
+        } else if (expr instanceof BinaryExpr) {
+            return usesPosition(((BinaryExpr) expr).getLHS()) || usesPosition(((BinaryExpr) expr).getRHS());
+        } else if (expr instanceof UnaryExpr) {
+            return usesPosition(((UnaryExpr) expr).getExpr());
+        } else if (expr instanceof FunctionCallExpr) {
+            final FunctionCallExpr call = (FunctionCallExpr) expr;
+            if (isCoreFunction(call, "position") || isCoreFunction(call, "last")) {
+                return true;
+            }
+            for (Expr parameter : getParameters(call)) {
+                if (usesPosition(parameter)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Classifies the expression by its estimated cost: navigating around the
+     * context node, walking a subtree, calling an expensive function, or
+     * walking the whole file.
+     */
+    private static int costClass(Expr expr) {
+        final int cost = cost(expr);
+        if (cost < SUBTREE_COST) {
+            return 0;
+        } else if (cost < EXPENSIVE_FUNCTION_COST) {
+            return 1;
+        } else if (cost < ABSOLUTE_PATH_COST) {
+            return 2;
+        }
+        return WHOLE_FILE;
+    }
+
+    /**
+     * Estimates the cost of evaluating the expression. Only the order of the
+     * estimates matters.
+     */
+    private static int cost(Expr expr) {
+        if (expr instanceof LiteralExpr || expr instanceof NumberExpr || expr instanceof VariableReferenceExpr) {
+            return 0;
+        } else if (expr instanceof LocationPath) {
+            final LocationPath path = (LocationPath) expr;
+            int cost = path.isAbsolute() ? ABSOLUTE_PATH_COST : 0;
+            for (Step step : getSteps(path)) {
+                cost += cost(step.getAxis());
+                for (Predicate predicate : getPredicates(step.getPredicates())) {
+                    cost += cost(predicate.getExpr());
+                }
+            }
+            return cost;
+        } else if (expr instanceof PathExpr) {
+            final PathExpr pathExpr = (PathExpr) expr;
+            return (pathExpr.getFilterExpr() == null ? 0 : cost(pathExpr.getFilterExpr()))
+                    + (pathExpr.getLocationPath() == null ? 0 : cost(pathExpr.getLocationPath()));
+        } else if (expr instanceof FilterExpr) {
+            int cost = cost(((FilterExpr) expr).getExpr());
+            for (Predicate predicate : getPredicates(((FilterExpr) expr).getPredicates())) {
+                cost += cost(predicate.getExpr());
+            }
+            return cost;
+        } else if (expr instanceof BinaryExpr) {
+            return 1 + cost(((BinaryExpr) expr).getLHS()) + cost(((BinaryExpr) expr).getRHS());
+        } else if (expr instanceof UnaryExpr) {
+            return cost(((UnaryExpr) expr).getExpr());
+        } else if (expr instanceof FunctionCallExpr) {
+            final FunctionCallExpr call = (FunctionCallExpr) expr;
+            int cost = EXPENSIVE_FUNCTIONS.contains(call.getFunctionName()) ? EXPENSIVE_FUNCTION_COST : 1;
+            for (Expr parameter : getParameters(call)) {
+                cost += cost(parameter);
+            }
+            return cost;
+        } else if (expr instanceof NonEmptyPathExpr) {
+            return cost(((NonEmptyPathExpr) expr).path);
+        } else if (expr instanceof DocumentConstantExpr) {
+            // the first evaluation for a file is as expensive as before, and the cheaper
+            // operands and predicates often make it unnecessary for the whole file
+            return cost(((DocumentConstantExpr) expr).path);
+        }
+        return 1;
+    }
+
+    private static int cost(int axis) {
+        switch (axis) {
+        case Axis.DESCENDANT:
+        case Axis.DESCENDANT_OR_SELF:
+        case Axis.FOLLOWING:
+        case Axis.PRECEDING:
+            return SUBTREE_COST;
+        case Axis.ANCESTOR:
+        case Axis.ANCESTOR_OR_SELF:
+        case Axis.FOLLOWING_SIBLING:
+        case Axis.PRECEDING_SIBLING:
+            return 5;
+        default:
+            return 1;
+        }
+    }
+
+    private static boolean isCoreFunction(FunctionCallExpr call, String name) {
+        return "".equals(call.getPrefix()) && name.equals(call.getFunctionName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Step> getSteps(LocationPath path) {
+        return path.getSteps();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Predicate> getPredicates(List<?> predicates) {
+        return (List<Predicate>) predicates;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Expr> getParameters(FunctionCallExpr call) {
+        return call.getParameters();
+    }
+
+    /**
+     * A relative path, whose value is only tested for emptiness. The steps are
+     * followed depth first, until a node is found, like for an {@code exists}
+     * test. All predicates are non positional, so that each node can be tested
+     * on its own.
+     */
+    private static final class NonEmptyPathExpr implements Expr {
+        private static final long serialVersionUID = 1L;
+
+        private final LocationPath path;
+
+        NonEmptyPathExpr(LocationPath path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getText() {
+            return path.getText();
+        }
+
+        @Override
+        public Expr simplify() {
+            return this;
+        }
+
+        @Override
+        public Object evaluate(Context context) throws JaxenException {
+            final List<Step> steps = getSteps(path);
+            for (Object node : context.getNodeSet()) {
+                if (matches(steps, 0, node, context.getContextSupport())) {
+                    return Boolean.TRUE;
+                }
+            }
+            return Boolean.FALSE;
+        }
+
+        private static boolean matches(List<Step> steps, int index, Object node, ContextSupport support)
+                throws JaxenException {
+            if (index == steps.size()) {
+                return true;
+            }
+            final Step step = steps.get(index);
+            for (Iterator<?> iterator = step.axisIterator(node, support); iterator.hasNext();) {
+                final Object next = iterator.next();
+                if (step.matches(next, support) && matchesPredicates(step, next, support)
+                        && matches(steps, index + 1, next, support)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean matchesPredicates(Step step, Object node, ContextSupport support)
+                throws JaxenException {
+            final List<Predicate> predicates = getPredicates(step.getPredicates());
+            if (predicates.isEmpty()) {
+                return true;
+            }
+            final Context context = new Context(support);
+            context.setNodeSet(Collections.singletonList(node));
+            context.setPosition(1);
+            context.setSize(1);
+            for (Predicate predicate : predicates) {
+                if (!BooleanFunction.evaluate(predicate.evaluate(context), support.getNavigator())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return getText();
+        }
+    }
+
+    /**
+     * An absolute path inside a predicate. Its value only depends on the file,
+     * so it's evaluated once for each file.
+     */
+    private static final class DocumentConstantExpr implements Expr {
+        private static final long serialVersionUID = 1L;
+
+        private final LocationPath path;
+
+        DocumentConstantExpr(LocationPath path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getText() {
+            return path.getText();
+        }
+
+        @Override
+        public Expr simplify() {
+            return this;
+        }
+
+        @Override
+        @SuppressWarnings("PMD.CompareObjectsWithEquals")
+        public Object evaluate(Context context) throws JaxenException {
+            if (context.getNodeSet().isEmpty()) {
+                return path.evaluate(context);
+            }
+            final Object document = context.getNavigator().getDocumentNode(context.getNodeSet().get(0));
+            DocumentValues values = CURRENT_VALUES.get();
+            if (values == null || values.document != document) {
+                values = new DocumentValues(document);
+                CURRENT_VALUES.set(values);
+            }
+            List<?> nodes = values.nodes.get(this);
+            if (nodes == null) {
+                nodes = (List<?>) path.evaluate(context);
+                values.nodes.put(this, nodes);
+            }
+            // the callers may modify the returned list
+            return new ArrayList<>(nodes);
+        }
+
+        @Override
+        public String toString() {
+            return getText();
+        }
+    }
+
+    /**
+     * The values of the document constant expressions, which have been
+     * evaluated on a document.
+     */
+    private static final class DocumentValues {
+        private final Object document;
+        private final Map<DocumentConstantExpr, List<?>> nodes = new IdentityHashMap<>();
+
+        DocumentValues(Object document) {
+            this.document = document;
+        }
+    }
+}
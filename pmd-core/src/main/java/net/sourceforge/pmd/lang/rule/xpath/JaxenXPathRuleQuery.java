@@ -31,6 +31,7 @@ import org.jaxen.expr.XPathFactory;
 import org.jaxen.saxpath.Axis;
 
 import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.properties.PropertyDescriptor;
 
@@ -90,6 +91,17 @@ public class JaxenXPathRuleQuery extends AbstractXPathRuleQuery {
         return xPaths;
     }
 
+    /**
+     * Releases the parts of the queries, which have been evaluated once for the file
+     * analyzed by the current thread, so that its AST can be garbage collected. This is
+     * called when the analysis of a file ends.
+     */
+    @InternalApi
+    @Deprecated
+    public static void releaseCurrentDocument() {
+        JaxenQueryOptimizer.releaseCurrentDocument();
+    }
+
     @Override
     public List<String> getRuleChainVisits() {
         try {
@@ -247,6 +259,7 @@ public class JaxenXPathRuleQuery extends AbstractXPathRuleQuery {
 
     private BaseXPath createXPath(final String xpathQueryString, final Navigator navigator) throws JaxenException {
         final BaseXPath xpath = new BaseXPath(xpathQueryString, navigator);
+        JaxenQueryOptimizer.optimize(xpath);
 
         if (properties.size() > 1) {
             final SimpleVariableContext vc = new SimpleVariableContext();
@@ -0,0 +1,202 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.sf.saxon.Configuration;
+import net.sf.saxon.expr.AxisExpression;
+import net.sf.saxon.expr.Expression;
+import net.sf.saxon.expr.FilterExpression;
+import net.sf.saxon.expr.FirstItemExpression;
+import net.sf.saxon.expr.LastItemExpression;
+import net.sf.saxon.expr.LetExpression;
+import net.sf.saxon.expr.Literal;
+import net.sf.saxon.expr.RootExpression;
+import net.sf.saxon.expr.SlashExpression;
+import net.sf.saxon.expr.StaticProperty;
+import net.sf.saxon.expr.TailExpression;
+import net.sf.saxon.expr.Token;
+import net.sf.saxon.expr.UnaryExpression;
+import net.sf.saxon.expr.VennExpression;
+import net.sf.saxon.om.Axis;
+import net.sf.saxon.om.NamePool;
+import net.sf.saxon.pattern.NameTest;
+import net.sf.saxon.pattern.NodeTest;
+import net.sf.saxon.sort.DocumentSorter;
+import net.sf.saxon.type.Type;
+
+/**
+ * Analyzes a compiled Saxon expression, to find out whether it can be evaluated
+ * on the RuleChain. This is the case for expressions like {@code //A[...]/B} or
+ * {@code //A[...] | //B[...]}, which select elements by name on the descendant axis
+ * from the document root, and only use the selected elements in a way, that gives
+ * the same results when the expression is evaluated once per selected element.
+ *
+ * <p>Such an expression is rewritten for each element name into a subquery, which
+ * is evaluated with an element of that name as context node: the paths selecting
+ * that element are replaced by {@code self::A}, the paths selecting other elements
+ * by the empty sequence. Subexpressions, which aren't part of these paths, like
+ * predicates, are kept as they are.
+ *
+ * <p>An analyzer rewrites the expression it analyzed in place, so the expression
+ * must be compiled and analyzed once per element name.
+ */
+final class RuleChainAnalyzer {
+
+    private static final int POSITIONAL_DEPENDENCIES = StaticProperty.DEPENDS_ON_POSITION
+            | StaticProperty.DEPENDS_ON_LAST;
+
+    private final Configuration configuration;
+    private final List<RootPath> rootPaths = new ArrayList<>();
+    private Expression expression;
+    private boolean hasSteps;
+
+    RuleChainAnalyzer(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Analyzes the given expression.
+     *
+     * @param expression The compiled expression
+     * @return true if the expression can be evaluated on the RuleChain
+     */
+    boolean analyze(Expression expression) {
+        this.expression = expression;
+        if (!analyze(null, expression)) {
+            return false;
+        }
+        // Steps from different elements could select the same node twice
+        return !hasSteps || getRootElementNames().size() == 1;
+    }
+
+    /**
+     * Returns the names of the elements, for which the analyzed expression has to be evaluated.
+     */
+    Set<String> getRootElementNames() {
+        final Set<String> names = new LinkedHashSet<>();
+        for (RootPath rootPath : rootPaths) {
+            names.add(rootPath.elementName);
+        }
+        return names;
+    }
+
+    /**
+     * Rewrites the analyzed expression into the subquery for the given element name.
+     *
+     * @param elementName One of the {@link #getRootElementNames()}
+     * @return The subquery, which is evaluated with an element of the given name as context node
+     */
+    Expression rewrite(String elementName) {
+        Expression result = expression;
+        for (RootPath rootPath : rootPaths) {
+            final Expression replacement = elementName.equals(rootPath.elementName)
+                    ? new AxisExpression(Axis.SELF, rootPath.nodeTest) : Literal.makeEmptySequence();
+            if (rootPath.parent == null) {
+                result = replacement;
+            } else if (!rootPath.parent.replaceSubExpression(rootPath.path, replacement)) {
+                throw new IllegalStateException("Can't replace " + rootPath.path + " in " + rootPath.parent);
+            }
+        }
+        return result;
+    }
+
+    private boolean analyze(Expression parent, Expression expr) {
+        final RootPath rootPath = getRootPath(parent, expr);
+        if (rootPath != null) {
+            rootPaths.add(rootPath);
+            return true;
+        } else if (expr instanceof DocumentSorter) {
+            return analyze(expr, ((DocumentSorter) expr).getBaseExpression());
+        } else if (expr instanceof VennExpression && ((VennExpression) expr).getOperator() == Token.UNION) {
+            final Expression[] operands = ((VennExpression) expr).getOperands();
+            return analyze(expr, operands[0]) && analyze(expr, operands[1]);
+        } else if (expr instanceof FilterExpression) {
+            // a positional filter depends on all the selected elements
+            final FilterExpression filter = (FilterExpression) expr;
+            return !filter.isPositional(configuration.getTypeHierarchy())
+                    && (filter.getFilter().getDependencies() & POSITIONAL_DEPENDENCIES) == 0
+                    && analyze(expr, filter.getBaseExpression());
+        } else if (expr instanceof SlashExpression) {
+            final SlashExpression path = (SlashExpression) expr;
+            hasSteps = true;
+            return isUniqueStep(path.getStepExpression()) && analyze(expr, path.getStartExpression());
+        } else if (expr instanceof LetExpression) {
+            return analyze(expr, ((LetExpression) expr).getAction());
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the step selects each node from at most one context node, so
+     * that evaluating it separately for each context node doesn't select a node twice.
+     */
+    private static boolean isUniqueStep(Expression step) {
+        if (step instanceof AxisExpression) {
+            final byte axis = ((AxisExpression) step).getAxis();
+            return axis == Axis.CHILD || axis == Axis.SELF || axis == Axis.ATTRIBUTE;
+        } else if (step instanceof FilterExpression) {
+            return isUniqueStep(((FilterExpression) step).getBaseExpression());
+        } else if (step instanceof SlashExpression) {
+            final SlashExpression path = (SlashExpression) step;
+            return isUniqueStep(path.getStartExpression()) && isUniqueStep(path.getStepExpression());
+        } else if (step instanceof DocumentSorter || step instanceof FirstItemExpression
+                || step instanceof LastItemExpression) {
+            // positional filters select a subset of the nodes of the step
+            return isUniqueStep(((UnaryExpression) step).getBaseExpression());
+        } else if (step instanceof TailExpression) {
+            return isUniqueStep(((TailExpression) step).getBaseExpression());
+        } else if (step instanceof VennExpression && ((VennExpression) step).getOperator() == Token.UNION) {
+            final Expression[] operands = ((VennExpression) step).getOperands();
+            return isUniqueStep(operands[0]) && isUniqueStep(operands[1]);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the path, if the expression is a path like {@code //A}, which selects
+     * the elements of a given name on the descendant axis of the document root.
+     */
+    private RootPath getRootPath(Expression parent, Expression expr) {
+        if (!(expr instanceof SlashExpression)) {
+            return null;
+        }
+        final SlashExpression path = (SlashExpression) expr;
+        if (!(path.getStartExpression() instanceof RootExpression)
+                || !(path.getStepExpression() instanceof AxisExpression)) {
+            return null;
+        }
+        final AxisExpression step = (AxisExpression) path.getStepExpression();
+        final NodeTest nodeTest = step.getNodeTest();
+        if (step.getAxis() != Axis.DESCENDANT || !(nodeTest instanceof NameTest)
+                || nodeTest.getPrimitiveType() != Type.ELEMENT) {
+            return null;
+        }
+        final NamePool namePool = configuration.getNamePool();
+        final int fingerprint = nodeTest.getFingerprint();
+        if (!"".equals(namePool.getURI(fingerprint))) {
+            return null;
+        }
+        return new RootPath(parent, expr, nodeTest, namePool.getLocalName(fingerprint));
+    }
+
+    private static final class RootPath {
+        private final Expression parent;
+        private final Expression path;
+        private final NodeTest nodeTest;
+        private final String elementName;
+
+        RootPath(Expression parent, Expression path, NodeTest nodeTest, String elementName) {
+            this.parent = parent;
+            this.path = path;
+            this.nodeTest = nodeTest;
+            this.elementName = elementName;
+        }
+    }
+}
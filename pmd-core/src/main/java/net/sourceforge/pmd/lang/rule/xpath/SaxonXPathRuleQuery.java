@@ -5,21 +5,34 @@
 package net.sourceforge.pmd.lang.rule.xpath;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.xpath.saxon.AttributeNameTest;
 import net.sourceforge.pmd.lang.ast.xpath.saxon.DocumentNode;
 import net.sourceforge.pmd.lang.ast.xpath.saxon.ElementNode;
 import net.sourceforge.pmd.lang.xpath.Initializer;
 import net.sourceforge.pmd.properties.PropertyDescriptor;
 
+import net.sf.saxon.expr.AxisExpression;
+import net.sf.saxon.expr.Expression;
+import net.sf.saxon.expr.StaticProperty;
+import net.sf.saxon.om.Axis;
 import net.sf.saxon.om.Item;
+import net.sf.saxon.om.NamePool;
 import net.sf.saxon.om.NamespaceConstant;
+import net.sf.saxon.om.SequenceIterator;
 import net.sf.saxon.om.ValueRepresentation;
+import net.sf.saxon.pattern.NameTest;
 import net.sf.saxon.sxpath.AbstractStaticContext;
 import net.sf.saxon.sxpath.IndependentContext;
 import net.sf.saxon.sxpath.XPathDynamicContext;
@@ -28,6 +41,7 @@ import net.sf.saxon.sxpath.XPathExpression;
 import net.sf.saxon.sxpath.XPathStaticContext;
 import net.sf.saxon.sxpath.XPathVariable;
 import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.type.TypeHierarchy;
 import net.sf.saxon.value.AtomicValue;
 import net.sf.saxon.value.BigIntegerValue;
 import net.sf.saxon.value.BooleanValue;
@@ -36,6 +50,7 @@ import net.sf.saxon.value.EmptySequence;
 import net.sf.saxon.value.FloatValue;
 import net.sf.saxon.value.Int64Value;
 import net.sf.saxon.value.SequenceExtent;
+import net.sf.saxon.value.SequenceType;
 import net.sf.saxon.value.StringValue;
 import net.sf.saxon.value.UntypedAtomicValue;
 
@@ -44,15 +59,15 @@ import net.sf.saxon.value.UntypedAtomicValue;
  */
 public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
 
-    private static final int MAX_CACHE_SIZE = 20;
-    private static final Map<Node, DocumentNode> CACHE = new LinkedHashMap<Node, DocumentNode>(MAX_CACHE_SIZE) {
-        private static final long serialVersionUID = -7653916493967142443L;
+    private static final Logger LOG = Logger.getLogger(SaxonXPathRuleQuery.class.getName());
 
-        @Override
-        protected boolean removeEldestEntry(final Map.Entry<Node, DocumentNode> eldest) {
-            return size() > MAX_CACHE_SIZE;
-        }
-    };
+    /**
+     * The DocumentNode of the file, which is currently analyzed by a thread. A file is analyzed by
+     * one thread only, so the DocumentNode is shared by all the XPath rules for the file without any
+     * locking, and its ElementNodes don't need to be synchronized. It's released when the analysis
+     * of the file ends, see {@link #releaseCurrentDocument()}, so that the thread doesn't retain the AST.
+     */
+    private static final ThreadLocal<DocumentNode> CURRENT_DOCUMENT = new ThreadLocal<>();
 
     /**
      * Representation of an XPath query, created at {@link #initializeXPathExpression()} using {@link #xpath}.
@@ -60,11 +75,18 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
     private XPathExpression xpathExpression;
 
     /**
-     * Holds the static context later used to match the variables in the dynamic context in
-     * {@link #createDynamicContext(ElementNode)}. Created at {@link #initializeXPathExpression()}
-     * using the properties descriptors in {@link #properties}.
+     * Holds the variables of the static context, with the values to set on the dynamic context in
+     * {@link #createDynamicContext(XPathExpression, ElementNode)}. Created at {@link #initializeXPathExpression()}
+     * using the properties in {@link #properties}, which don't change afterwards. A value is null, if the
+     * property value has no XPath representation.
+     */
+    private Map<XPathVariable, ValueRepresentation> xpathVariables;
+
+    /**
+     * The subqueries used on the RuleChain, by the name of the node they're evaluated on.
+     * Empty, if the query can't be evaluated on the RuleChain.
      */
-    private List<XPathVariable> xpathVariables;
+    private Map<String, RuleChainQuery> nodeNameToQueries;
 
     @Override
     public boolean isSupportedVersion(String version) {
@@ -80,9 +102,14 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
             final DocumentNode documentNode = getDocumentNodeForRootNode(node);
 
             // Map AST Node -> Saxon Node
-            final ElementNode rootElementNode = documentNode.nodeToElementNode.get(node);
+            final ElementNode rootElementNode = documentNode.getElementNode(node);
+
+            final RuleChainQuery ruleChainQuery = nodeNameToQueries.get(node.getXPathNodeName());
+            if (ruleChainQuery != null) {
+                return evaluateRuleChainQuery(ruleChainQuery, rootElementNode);
+            }
 
-            final XPathDynamicContext xpathDynamicContext = createDynamicContext(rootElementNode);
+            final XPathDynamicContext xpathDynamicContext = createDynamicContext(xpathExpression, rootElementNode);
             final List<ElementNode> nodes = xpathExpression.evaluate(xpathDynamicContext);
 
             /*
@@ -99,9 +126,28 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
         }
     }
 
+    private List<Node> evaluateRuleChainQuery(final RuleChainQuery query, final ElementNode elementNode)
+            throws XPathException {
+        final XPathDynamicContext xpathDynamicContext = createDynamicContext(query.xpathExpression, elementNode);
+        final SequenceIterator iterator = query.subquery.iterate(xpathDynamicContext.getXPathContextObject());
+
+        final List<Node> results = new ArrayList<>();
+        for (Item item = iterator.next(); item != null; item = iterator.next()) {
+            results.add((Node) ((ElementNode) item).getUnderlyingNode());
+        }
+        return results;
+    }
+
+    @Override
+    public List<String> getRuleChainVisits() {
+        initializeXPathExpression();
+        return super.getRuleChainVisits();
+    }
+
     /**
-     * Attempt to create a dynamic context on which to evaluate the {@link #xpathExpression}.
+     * Attempt to create a dynamic context on which to evaluate the given expression.
      *
+     * @param expression  the expression to evaluate, either {@link #xpathExpression} or the one of a RuleChain query
      * @param elementNode the node on which to create the context; generally this node is the root node of the Saxon
      *                    Tree
      * @return the dynamic context on which to run the query
@@ -109,22 +155,33 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
      * variable, when setting up the dynamic context; or if the supplied value contains a node that does not belong to
      * this Configuration (or another Configuration that shares the same namePool)
      */
-    private XPathDynamicContext createDynamicContext(final ElementNode elementNode) throws XPathException {
-        final XPathDynamicContext dynamicContext = xpathExpression.createDynamicContext(elementNode);
+    private XPathDynamicContext createDynamicContext(final XPathExpression expression, final ElementNode elementNode)
+            throws XPathException {
+        final XPathDynamicContext dynamicContext = expression.createDynamicContext(elementNode);
 
         // Set variable values on the dynamic context
-        for (final XPathVariable xpathVariable : xpathVariables) {
-            final String variableName = xpathVariable.getVariableQName().getLocalName();
-            for (final Map.Entry<PropertyDescriptor<?>, Object> entry : super.properties.entrySet()) {
-                if (variableName.equals(entry.getKey().name())) {
-                    final ValueRepresentation valueRepresentation = getRepresentation(entry.getKey(), entry.getValue());
-                    dynamicContext.setVariable(xpathVariable, valueRepresentation);
-                }
+        for (final Map.Entry<XPathVariable, ValueRepresentation> variable : xpathVariables.entrySet()) {
+            ValueRepresentation valueRepresentation = variable.getValue();
+            if (valueRepresentation == null) {
+                // fails like before, when the value was converted on each evaluation
+                final PropertyDescriptor<?> descriptor = getPropertyDescriptor(variable.getKey());
+                valueRepresentation = getRepresentation(descriptor, super.properties.get(descriptor));
             }
+            dynamicContext.setVariable(variable.getKey(), valueRepresentation);
         }
         return dynamicContext;
     }
 
+    private PropertyDescriptor<?> getPropertyDescriptor(final XPathVariable xpathVariable) {
+        final String variableName = xpathVariable.getVariableQName().getLocalName();
+        for (final PropertyDescriptor<?> propertyDescriptor : super.properties.keySet()) {
+            if (variableName.equals(propertyDescriptor.name())) {
+                return propertyDescriptor;
+            }
+        }
+        throw new IllegalStateException("No property for the variable $" + variableName);
+    }
+
 
     private ValueRepresentation getRepresentation(final PropertyDescriptor<?> descriptor, final Object value) {
         if (descriptor.isMultiValue()) {
@@ -144,26 +201,39 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
 
     /**
      * Gets the DocumentNode representation for the whole AST in which the node is, that is, if the node is not the root
-     * of the AST, then the AST is traversed all the way up until the root node is found. If the DocumentNode was
-     * cached because this method was previously called, then a new DocumentNode will not be instanced.
+     * of the AST, then the AST is traversed all the way up until the root node is found. If the current thread already
+     * created the DocumentNode for this AST, then a new DocumentNode will not be instanced. Otherwise, it replaces
+     * the DocumentNode of the previous file analyzed by the thread.
      *
      * @param node the node from which the root node will be looked for.
      * @return the DocumentNode representing the whole AST
      */
+    @SuppressWarnings("PMD.CompareObjectsWithEquals")
     private DocumentNode getDocumentNodeForRootNode(final Node node) {
         final Node root = getRootNode(node);
 
-        DocumentNode documentNode;
-        synchronized (CACHE) {
-            documentNode = CACHE.get(root);
-            if (documentNode == null) {
-                documentNode = new DocumentNode(root);
-                CACHE.put(root, documentNode);
-            }
+        DocumentNode documentNode = CURRENT_DOCUMENT.get();
+        if (documentNode == null || documentNode.getRootAstNode() != root) {
+            documentNode = new DocumentNode(root);
+            CURRENT_DOCUMENT.set(documentNode);
         }
         return documentNode;
     }
 
+    /**
+     * Releases the DocumentNode of the file analyzed by the current thread, so that
+     * its AST can be garbage collected. This is called when the analysis of a file ends.
+     */
+    @InternalApi
+    @Deprecated
+    public static void releaseCurrentDocument() {
+        CURRENT_DOCUMENT.remove();
+    }
+
+    /* package */ static DocumentNode getCurrentDocument() {
+        return CURRENT_DOCUMENT.get();
+    }
+
     /**
      * Traverse the AST until the root node is found.
      *
@@ -186,42 +256,165 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
             return;
         }
         try {
-            final XPathEvaluator xpathEvaluator = new XPathEvaluator();
-            final XPathStaticContext xpathStaticContext = xpathEvaluator.getStaticContext();
-
-            // Enable XPath 1.0 compatibility
-            if (XPATH_1_0_COMPATIBILITY.equals(version)) {
-                ((AbstractStaticContext) xpathStaticContext).setBackwardsCompatibilityMode(true);
+            XPathEvaluator xpathEvaluator = createXPathEvaluator(true);
+            try {
+                xpathExpression = xpathEvaluator.createExpression(super.xpath);
+            } catch (final XPathException e) {
+                /*
+                With the static types of the variables, Saxon reports type errors at compile time, even in
+                branches which are never evaluated. Those queries are compiled with untyped variables, like
+                before the variables were typed.
+                */
+                LOG.log(Level.FINE, "Compiling " + super.xpath + " with untyped variables", e);
+                xpathEvaluator = createXPathEvaluator(false);
+                xpathExpression = xpathEvaluator.createExpression(super.xpath);
             }
+            useAttributeNameTests(xpathExpression.getInternalExpression(), xpathEvaluator.getConfiguration()
+                    .getNamePool());
+            analyzeXPathForRuleChain(xpathEvaluator);
+        } catch (final XPathException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            ((IndependentContext) xpathEvaluator.getStaticContext()).declareNamespace("fn", NamespaceConstant.FN);
+    /**
+     * Creates an evaluator, whose static context knows the PMD functions and a variable for each property.
+     *
+     * @param typedVariables Whether the variables get the static type of their values. This allows Saxon
+     *                       to tell that a filter like {@code [$flag]} isn't positional, so that the query
+     *                       can still be evaluated on the RuleChain.
+     */
+    private XPathEvaluator createXPathEvaluator(final boolean typedVariables) {
+        final XPathEvaluator xpathEvaluator = new XPathEvaluator();
+        final XPathStaticContext xpathStaticContext = xpathEvaluator.getStaticContext();
 
-            // Register PMD functions
-            Initializer.initialize((IndependentContext) xpathStaticContext);
+        // Enable XPath 1.0 compatibility
+        if (XPATH_1_0_COMPATIBILITY.equals(version)) {
+            ((AbstractStaticContext) xpathStaticContext).setBackwardsCompatibilityMode(true);
+        }
 
-            /*
-            Create XPathVariables for later use. It is a Saxon quirk that XPathVariables must be defined on the
-            static context, and reused later to associate an actual value on the dynamic context creation, in
-            createDynamicContext(ElementNode).
-            */
-            xpathVariables = new ArrayList<>();
-            for (final PropertyDescriptor<?> propertyDescriptor : super.properties.keySet()) {
-                final String name = propertyDescriptor.name();
-                if (!"xpath".equals(name)) {
-                    final XPathVariable xpathVariable = xpathStaticContext.declareVariable(null, name);
-                    xpathVariables.add(xpathVariable);
+        ((IndependentContext) xpathEvaluator.getStaticContext()).declareNamespace("fn", NamespaceConstant.FN);
+
+        // Register PMD functions
+        Initializer.initialize((IndependentContext) xpathStaticContext);
+
+        /*
+        Create XPathVariables for later use. It is a Saxon quirk that XPathVariables must be defined on the
+        static context, and reused later to associate an actual value on the dynamic context creation, in
+        createDynamicContext(XPathExpression, ElementNode). The properties are fixed by now, so their
+        values are converted once, and not on each evaluation.
+        */
+        final TypeHierarchy typeHierarchy = xpathEvaluator.getConfiguration().getTypeHierarchy();
+        xpathVariables = new LinkedHashMap<>();
+        for (final Map.Entry<PropertyDescriptor<?>, Object> entry : super.properties.entrySet()) {
+            final String name = entry.getKey().name();
+            if (!"xpath".equals(name)) {
+                final XPathVariable xpathVariable = xpathStaticContext.declareVariable(null, name);
+                final ValueRepresentation valueRepresentation = getRepresentationIfPossible(entry.getKey(),
+                        entry.getValue());
+                if (typedVariables && valueRepresentation != null) {
+                    final SequenceType requiredType = getSequenceType(valueRepresentation, typeHierarchy);
+                    if (requiredType != null) {
+                        xpathVariable.setRequiredType(requiredType);
+                    }
                 }
+                xpathVariables.put(xpathVariable, valueRepresentation);
             }
+        }
+        return xpathEvaluator;
+    }
 
-            // TODO Come up with a way to make use of RuleChain. I had hacked up
-            // an approach which used Jaxen's stuff, but that only works for
-            // 1.0 compatibility mode. Rather do it right instead of kludging.
-            xpathExpression = xpathEvaluator.createExpression(super.xpath);
-        } catch (final XPathException e) {
-            throw new RuntimeException(e);
+    private ValueRepresentation getRepresentationIfPossible(final PropertyDescriptor<?> descriptor,
+                                                            final Object value) {
+        try {
+            return getRepresentation(descriptor, value);
+        } catch (final RuntimeException e) {
+            // reported when the query is evaluated
+            return null;
         }
     }
 
+    /**
+     * Returns the static type of a property value, or null if it's left untyped.
+     */
+    private static SequenceType getSequenceType(final ValueRepresentation value, final TypeHierarchy typeHierarchy) {
+        if (value instanceof AtomicValue) {
+            return SequenceType.makeSequenceType(((AtomicValue) value).getItemType(typeHierarchy),
+                    StaticProperty.EXACTLY_ONE);
+        } else if (value instanceof SequenceExtent) {
+            return SequenceType.makeSequenceType(((SequenceExtent) value).getItemType(typeHierarchy),
+                    StaticProperty.ALLOWS_ZERO_OR_MORE);
+        }
+        // an empty sequence stays untyped, so that its uses don't fail to compile
+        return null;
+    }
+
+    /**
+     * Attempt to use the RuleChain with this XPath query. If the query selects nodes by name from the root,
+     * like //TypeA[...] or //TypeA | //TypeB, it is evaluated once for each node of these types, with a
+     * subquery, that starts at that node, instead of once from the root. Each subquery is compiled from the
+     * query, so that the subqueries don't share any part of their expression trees.
+     */
+    private void analyzeXPathForRuleChain(final XPathEvaluator xpathEvaluator) throws XPathException {
+        nodeNameToQueries = new HashMap<>();
+
+        final RuleChainAnalyzer analyzer = new RuleChainAnalyzer(xpathEvaluator.getConfiguration());
+        if (!analyzer.analyze(xpathExpression.getInternalExpression())) {
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE, "Unable to use RuleChain for XPath: " + xpath);
+            }
+            return;
+        }
+
+        for (final String nodeName : analyzer.getRootElementNames()) {
+            final XPathExpression expression = xpathEvaluator.createExpression(super.xpath);
+            useAttributeNameTests(expression.getInternalExpression(), xpathEvaluator.getConfiguration().getNamePool());
+            final RuleChainAnalyzer nodeAnalyzer = new RuleChainAnalyzer(xpathEvaluator.getConfiguration());
+            nodeAnalyzer.analyze(expression.getInternalExpression());
+            nodeNameToQueries.put(nodeName, new RuleChainQuery(expression, nodeAnalyzer.rewrite(nodeName)));
+        }
+        super.ruleChainVisits.addAll(nodeNameToQueries.keySet());
+    }
+
+    /**
+     * Replaces the name tests of the attribute steps in the given expression, like {@code @Image}, with
+     * {@link AttributeNameTest}s. The ElementNodes select the attributes by their name with these tests,
+     * instead of wrapping all their attributes and filtering them with the name test.
+     */
+    private static void useAttributeNameTests(final Expression parent, final NamePool namePool) {
+        final List<Expression> subExpressions = new ArrayList<>();
+        for (final Iterator<?> iterator = parent.iterateSubExpressions(); iterator.hasNext();) {
+            subExpressions.add((Expression) iterator.next());
+        }
+        for (final Expression subExpression : subExpressions) {
+            if (subExpression instanceof AxisExpression
+                    && ((AxisExpression) subExpression).getAxis() == Axis.ATTRIBUTE
+                    && ((AxisExpression) subExpression).getNodeTest() instanceof NameTest) {
+                final int fingerprint = ((AxisExpression) subExpression).getNodeTest().getFingerprint();
+                if ("".equals(namePool.getURI(fingerprint))) {
+                    parent.replaceSubExpression(subExpression,
+                            new AxisExpression(Axis.ATTRIBUTE, new AttributeNameTest(fingerprint, namePool)));
+                }
+            } else {
+                useAttributeNameTests(subExpression, namePool);
+            }
+        }
+    }
+
+    /**
+     * A query of the RuleChain, which is evaluated with a node of a given type as context node.
+     */
+    private static final class RuleChainQuery {
+        /** The compiled query, used to create the dynamic context. */
+        private final XPathExpression xpathExpression;
+        /** The rewritten expression tree of the query. */
+        private final Expression subquery;
+
+        RuleChainQuery(XPathExpression xpathExpression, Expression subquery) {
+            this.xpathExpression = xpathExpression;
+            this.subquery = subquery;
+        }
+    }
 
     /**
      * Gets the Saxon representation of the parameter, if its type corresponds 
@@ -102,20 +102,34 @@ public abstract class AbstractPMDProcessor {
         configuration.getAnalysisCache().checkValidity(rs, configuration.getClassLoader());
         SourceCodeProcessor processor = new SourceCodeProcessor(configuration);
 
+        // render base report first - general errors
+        renderReports(renderers, ctx.getReport());
+
+        // then add analysis results per file, as they become available
         for (DataSource dataSource : files) {
             String niceFileName = filenameFrom(dataSource);
 
             runAnalysis(new PmdRunnable(dataSource, niceFileName, renderers, ctx, rs, processor));
         }
 
-        // render base report first - general errors
-        renderReports(renderers, ctx.getReport());
-        
-        // then add analysis results per file
+        // finally wait for the remaining files
         collectReports(renderers);
     }
 
+    /**
+     * Schedules the analysis of a single file. Implementations may render
+     * the reports of previously scheduled files from here, e.g. to bound
+     * the number of reports kept in memory.
+     *
+     * @param runnable The analysis of the file
+     */
     protected abstract void runAnalysis(PmdRunnable runnable);
 
+    /**
+     * Renders the reports of all files, which have been scheduled but
+     * not rendered yet. Called once all files have been scheduled.
+     *
+     * @param renderers The renderers to use
+     */
     protected abstract void collectReports(List<Renderer> renderers);
 }
@@ -0,0 +1,56 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * A semantic pass run on the AST of a file, after it has been parsed and
+ * before the rules are applied, e.g. symbol table construction or type
+ * resolution. The stages are run in order by the
+ * {@link net.sourceforge.pmd.SourceCodeProcessor}, which times each of them
+ * and skips those which are not required by the rulesets.
+ *
+ * @see DefaultAstProcessingStage
+ * @since 6.17.0
+ */
+@Experimental
+public interface AstProcessingStage {
+
+    /**
+     * Returns the category under which the time spent in this stage
+     * is reported in the benchmark.
+     *
+     * @return The category
+     */
+    TimedOperationCategory getCategory();
+
+
+    /**
+     * Returns true if this stage needs to be run on files of the
+     * given language, in order to apply the given rulesets.
+     *
+     * @param ruleSets The rulesets to apply
+     * @param language The language of the file
+     *
+     * @return True if this stage should be run
+     */
+    boolean isRequired(RuleSets ruleSets, Language language);
+
+
+    /**
+     * Processes the AST of a file.
+     *
+     * @param rootNode        The root node of the file
+     * @param languageVersion The language version of the file
+     * @param classLoader     The auxclasspath class loader
+     */
+    void processAST(Node rootNode, LanguageVersion languageVersion, ClassLoader classLoader);
+}
@@ -0,0 +1,105 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * The semantic passes PMD runs on every file, as provided by the
+ * {@link net.sourceforge.pmd.lang.LanguageVersionHandler}. They're
+ * listed in the order they have to be run.
+ *
+ * @since 6.17.0
+ */
+@Experimental
+public enum DefaultAstProcessingStage implements AstProcessingStage {
+    QUALIFIED_NAME_RESOLUTION(TimedOperationCategory.QUALIFIED_NAME_RESOLUTION) {
+        @Override
+        public boolean isRequired(RuleSets ruleSets, Language language) {
+            return true;
+        }
+
+        @Override
+        public void processAST(Node rootNode, LanguageVersion languageVersion, ClassLoader classLoader) {
+            languageVersion.getLanguageVersionHandler().getQualifiedNameResolutionFacade(classLoader).start(rootNode);
+        }
+    },
+    SYMBOL_TABLE(TimedOperationCategory.SYMBOL_TABLE) {
+        @Override
+        public boolean isRequired(RuleSets ruleSets, Language language) {
+            return true;
+        }
+
+        @Override
+        public void processAST(Node rootNode, LanguageVersion languageVersion, ClassLoader classLoader) {
+            languageVersion.getLanguageVersionHandler().getSymbolFacade(classLoader).start(rootNode);
+        }
+    },
+    DFA(TimedOperationCategory.DFA) {
+        @Override
+        public boolean isRequired(RuleSets ruleSets, Language language) {
+            return ruleSets.usesDFA(language);
+        }
+
+        @Override
+        public void processAST(Node rootNode, LanguageVersion languageVersion, ClassLoader classLoader) {
+            languageVersion.getLanguageVersionHandler().getDataFlowFacade().start(rootNode);
+        }
+    },
+    TYPE_RESOLUTION(TimedOperationCategory.TYPE_RESOLUTION) {
+        @Override
+        public boolean isRequired(RuleSets ruleSets, Language language) {
+            return ruleSets.usesTypeResolution(language);
+        }
+
+        @Override
+        public void processAST(Node rootNode, LanguageVersion languageVersion, ClassLoader classLoader) {
+            languageVersion.getLanguageVersionHandler().getTypeResolutionFacade(classLoader).start(rootNode);
+        }
+    },
+    MULTIFILE_ANALYSIS(TimedOperationCategory.MULTIFILE_ANALYSIS) {
+        @Override
+        public boolean isRequired(RuleSets ruleSets, Language language) {
+            return ruleSets.usesMultifile(language);
+        }
+
+        @Override
+        public void processAST(Node rootNode, LanguageVersion languageVersion, ClassLoader classLoader) {
+            languageVersion.getLanguageVersionHandler().getMultifileFacade().start(rootNode);
+        }
+    };
+
+    private static final List<AstProcessingStage> DEFAULT_STAGES
+        = Collections.<AstProcessingStage>unmodifiableList(Arrays.<AstProcessingStage>asList(values()));
+
+    private final TimedOperationCategory category;
+
+    DefaultAstProcessingStage(TimedOperationCategory category) {
+        this.category = category;
+    }
+
+    @Override
+    public TimedOperationCategory getCategory() {
+        return category;
+    }
+
+    /**
+     * Returns all the default stages, in the order they have to be run.
+     *
+     * @return An unmodifiable list of the default stages
+     */
+    public static List<AstProcessingStage> getDefaultStages() {
+        return DEFAULT_STAGES;
+    }
+}
@@ -4,11 +4,9 @@
 
 package net.sourceforge.pmd.processor;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import net.sourceforge.pmd.PMDConfiguration;
-import net.sourceforge.pmd.Report;
 import net.sourceforge.pmd.renderers.Renderer;
 
 /**
@@ -17,8 +15,6 @@ import net.sourceforge.pmd.renderers.Renderer;
  */
 public final class MonoThreadProcessor extends AbstractPMDProcessor {
 
-    private final List<Report> reports = new ArrayList<>();
-    
     public MonoThreadProcessor(PMDConfiguration configuration) {
         super(configuration);
     }
@@ -26,14 +22,13 @@ public final class MonoThreadProcessor extends AbstractPMDProcessor {
     @Override
     protected void runAnalysis(PmdRunnable runnable) {
         // single thread execution, run analysis on same thread
-        reports.add(runnable.call());
+        // and render the report right away
+        super.renderReports(runnable.getRenderers(), runnable.call());
     }
 
     @Override
     protected void collectReports(List<Renderer> renderers) {
-        for (Report r : reports) {
-            super.renderReports(renderers, r);
-        }
+        // all reports have already been rendered
 
         // Since this thread may run PMD again, clean up the runnable
         PmdRunnable.reset();
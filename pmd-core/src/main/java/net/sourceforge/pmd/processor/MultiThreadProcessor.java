@@ -4,12 +4,16 @@
 
 package net.sourceforge.pmd.processor;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.Report;
@@ -17,36 +21,103 @@ import net.sourceforge.pmd.renderers.Renderer;
 
 
 /**
+ * Processes the files on a fixed number of threads. At most
+ * {@link PMDConfiguration#getMaxFilesInFlight()} files, but never fewer
+ * than the number of threads, are submitted at any time: once the limit is reached, a new file is only submitted after
+ * the report of a previous file has been rendered. This keeps the number of
+ * reports held in memory proportional to the number of threads instead of
+ * the number of files.
+ *
+ * <p>Reports are rendered in the order the files complete, unless
+ * {@link PMDConfiguration#isLargestFilesFirst()} is set, in which case they
+ * are rendered in the order the files have been submitted. In that case, the
+ * report of a completed file is buffered until the reports of all the files
+ * submitted before it are rendered. A buffered report still counts as in flight,
+ * so a slow file pauses the submissions, instead of letting the buffered reports
+ * grow with the number of files.
+ *
  * @author Romain Pelisse &lt;belaran@gmail.com&gt;
  */
 public class MultiThreadProcessor extends AbstractPMDProcessor {
     private final ExecutorService executor;
     private final CompletionService<Report> completionService;
+    private final int maxFilesInFlight;
+    /** Submission index of the pending files, only used if rendering is ordered. */
+    private final Map<Future<Report>, Long> submissionIndices;
+    /** Completed reports waiting for the reports of the files submitted before, by submission index. */
+    private final Map<Long, Report> bufferedReports;
 
     private long submittedTasks = 0L;
+    private long collectedTasks = 0L;
+    private long renderedTasks = 0L;
+    private boolean interrupted = false;
 
     public MultiThreadProcessor(final PMDConfiguration configuration) {
         super(configuration);
 
         executor = Executors.newFixedThreadPool(configuration.getThreads(), new PmdThreadFactory());
         completionService = new ExecutorCompletionService<>(executor);
+        // fewer files in flight than threads would leave some threads idle
+        maxFilesInFlight = Math.max(configuration.getThreads(), configuration.getMaxFilesInFlight());
+        if (configuration.isLargestFilesFirst()) {
+            submissionIndices = new IdentityHashMap<>();
+            bufferedReports = new HashMap<>();
+        } else {
+            submissionIndices = null;
+            bufferedReports = null;
+        }
     }
 
     @Override
     protected void runAnalysis(PmdRunnable runnable) {
-        completionService.submit(runnable);
-        submittedTasks++;
+        boolean success = false;
+        try {
+            // the collected reports, which are buffered, are still in flight
+            while (!interrupted && submittedTasks - renderedTasks >= maxFilesInFlight) {
+                collectNextReport(runnable.getRenderers());
+            }
+            if (!interrupted) {
+                final Future<Report> future = completionService.submit(runnable);
+                if (submissionIndices != null) {
+                    submissionIndices.put(future, submittedTasks);
+                }
+                submittedTasks++;
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                executor.shutdownNow();
+            }
+        }
     }
 
     @Override
     protected void collectReports(List<Renderer> renderers) {
         try {
-            for (int i = 0; i < submittedTasks; i++) {
-                final Report report = completionService.take().get();
-                super.renderReports(renderers, report);
+            while (!interrupted && collectedTasks < submittedTasks) {
+                collectNextReport(renderers);
             }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the next file to complete and renders its report, or buffers
+     * it if the rendering is ordered. If the current thread is interrupted, no
+     * more files are collected.
+     */
+    private void collectNextReport(List<Renderer> renderers) {
+        final Future<Report> future;
+        final Report report;
+        try {
+            future = completionService.take();
+            report = future.get();
         } catch (final InterruptedException ie) {
             Thread.currentThread().interrupt();
+            // give up on the remaining files
+            interrupted = true;
+            return;
         } catch (final ExecutionException ee) {
             final Throwable t = ee.getCause();
             if (t instanceof RuntimeException) {
@@ -56,8 +127,20 @@ public class MultiThreadProcessor extends AbstractPMDProcessor {
             } else {
                 throw new IllegalStateException("PmdRunnable exception", t);
             }
-        } finally {
-            executor.shutdownNow();
+        }
+        collectedTasks++;
+        if (submissionIndices == null) {
+            super.renderReports(renderers, report);
+            renderedTasks++;
+            return;
+        }
+
+        bufferedReports.put(submissionIndices.remove(future), report);
+        Report next = bufferedReports.remove(renderedTasks);
+        while (next != null) {
+            super.renderReports(renderers, next);
+            renderedTasks++;
+            next = bufferedReports.remove(renderedTasks);
         }
     }
 }
@@ -44,6 +44,10 @@ public class PmdRunnable implements Callable<Report> {
         this.sourceCodeProcessor = sourceCodeProcessor;
     }
 
+    /* default */ List<Renderer> getRenderers() {
+        return renderers;
+    }
+
     public static void reset() {
         LOCAL_THREAD_CONTEXT.remove();
     }
@@ -12,8 +12,11 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,7 +32,10 @@ import org.apache.commons.lang3.StringUtils;
 public class ClasspathClassLoader extends URLClassLoader {
 
     private static final Logger LOG = Logger.getLogger(ClasspathClassLoader.class.getName());
-    
+
+    /** The index of the classes on this classpath, if one is used. It may be set while classes are loaded. */
+    private final AtomicReference<ClasspathIndex> index = new AtomicReference<>();
+
     static {
         registerAsParallelCapable();
     }
@@ -95,6 +101,48 @@ public class ClasspathClassLoader extends URLClassLoader {
         return file.getAbsoluteFile().toURI().toURL();
     }
 
+    /**
+     * Uses an index of the classes on this classpath, which is stored in the
+     * given file. Classes, which are not on this classpath, are then looked up
+     * in the parent class loader without searching the jar files first. The
+     * index is built and stored, if the file doesn't exist or if a jar file
+     * changed since it was built.
+     *
+     * @param indexFile The file, which stores the index
+     */
+    public void useIndex(File indexFile) {
+        index.set(ClasspathIndex.forClasspath(indexFile, getURLs()));
+    }
+
+    private boolean isNotIndexed(String resourceName) {
+        final ClasspathIndex currentIndex = index.get();
+        return currentIndex != null && resourceName.endsWith(".class") && !currentIndex.mayContain(resourceName);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (isNotIndexed(name.replace('.', '/') + ".class")) {
+            throw new ClassNotFoundException(name);
+        }
+        return super.findClass(name);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        if (isNotIndexed(name)) {
+            return null;
+        }
+        return super.findResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        if (isNotIndexed(name)) {
+            return Collections.emptyEnumeration();
+        }
+        return super.findResources(name);
+    }
+
     @Override
     public String toString() {
         return new StringBuilder(getClass().getSimpleName())
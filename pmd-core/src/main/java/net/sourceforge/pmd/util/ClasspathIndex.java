@@ -0,0 +1,398 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * An index of the class files in the jar files of a classpath. It answers
+ * whether a class file may be found on the classpath, without opening the jar
+ * files. Class files in directories are looked up on the file system.
+ *
+ * <p>The index is persisted in a file, which is memory-mapped when it's loaded.
+ * It consists of a header, the sorted 64-bit hashes of the names of the class
+ * files, and the classpath entries it was built for. Like for the class loader,
+ * the entries include the ones listed in the {@code Class-Path} attribute of the
+ * manifest of a jar file. The jar files are identified by their size and
+ * modification time. If any entry changed, the index is built again and replaces
+ * the file. Hash collisions only make a missing class look
+ * present, in which case the class loader searches the jar files as before.
+ */
+final class ClasspathIndex {
+
+    private static final Logger LOG = Logger.getLogger(ClasspathIndex.class.getName());
+
+    /** Identifies the format of the file, spells "PMDI". */
+    private static final int MAGIC = 0x504d4449;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+    private static final String CLASS_FILE_SUFFIX = ".class";
+    private static final String VERSIONS_DIRECTORY = "META-INF/versions/";
+
+    private final LongBuffer hashes;
+    private final List<File> directories;
+
+    private ClasspathIndex(final LongBuffer hashes, final List<File> directories) {
+        this.hashes = hashes;
+        this.directories = directories;
+    }
+
+    /**
+     * Loads the index of the given classpath from the given file. If the file doesn't exist,
+     * or was built for other classpath entries, the index is built and stored in the file.
+     *
+     * @param indexFile The file, which stores the index
+     * @param urls      The classpath
+     *
+     * @return The index, or null if the classpath contains entries, which can't be indexed
+     */
+    static ClasspathIndex forClasspath(final File indexFile, final URL... urls) {
+        final List<Entry> entries = new ArrayList<>();
+        for (final URL url : urls) {
+            final Entry entry = Entry.forURL(url);
+            if (entry == null) {
+                LOG.fine("The classpath entry " + url + " can't be indexed");
+                return null;
+            }
+            entries.add(entry);
+        }
+
+        final ClasspathIndex loaded = load(indexFile, entries);
+        if (loaded != null) {
+            return loaded;
+        }
+
+        final long[] sortedHashes = computeHashes(entries);
+        if (sortedHashes == null) {
+            return null;
+        }
+        store(indexFile, entries, sortedHashes);
+        return new ClasspathIndex(LongBuffer.wrap(sortedHashes), getDirectories(entries));
+    }
+
+    /**
+     * Returns false if the given class file isn't on the classpath. Returns true if it may be on
+     * the classpath.
+     *
+     * @param resourceName The name of the class file, like {@code java/lang/String.class}
+     */
+    boolean mayContain(final String resourceName) {
+        if (binarySearch(hashes, hash(resourceName))) {
+            return true;
+        }
+        for (final File directory : directories) {
+            if (new File(directory, resourceName).isFile()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean binarySearch(final LongBuffer sortedHashes, final long key) {
+        int low = 0;
+        int high = sortedHashes.limit() - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final long value = sortedHashes.get(middle);
+            if (value < key) {
+                low = middle + 1;
+            } else if (value > key) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the 64-bit FNV-1a hash of the given name.
+     */
+    private static long hash(final String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the sorted hashes of the class files in the given jar files. The entries
+     * listed in the manifests of the jar files are appended to the given entries.
+     *
+     * @return The hashes, or null if a manifest lists an entry, which can't be indexed
+     */
+    private static long[] computeHashes(final List<Entry> entries) {
+        final Set<File> files = new HashSet<>();
+        for (final Entry entry : entries) {
+            files.add(entry.file);
+        }
+        long[] result = new long[1024];
+        int size = 0;
+        // the list grows while it's iterated
+        for (int i = 0; i < entries.size(); i++) {
+            final Entry entry = entries.get(i);
+            if (!entry.isJar()) {
+                continue;
+            }
+            try (JarFile jarFile = new JarFile(entry.file)) {
+                for (final URL url : getManifestClasspath(jarFile, entry.file)) {
+                    final Entry manifestEntry = Entry.forURL(url);
+                    if (manifestEntry == null) {
+                        LOG.fine("The classpath entry " + url + " of the manifest of " + entry.file
+                                + " can't be indexed");
+                        return null;
+                    }
+                    if (files.add(manifestEntry.file)) {
+                        entries.add(manifestEntry);
+                    }
+                }
+                final Enumeration<? extends ZipEntry> zipEntries = jarFile.entries();
+                while (zipEntries.hasMoreElements()) {
+                    String name = zipEntries.nextElement().getName();
+                    if (!name.endsWith(CLASS_FILE_SUFFIX)) {
+                        continue;
+                    }
+                    if (name.startsWith(VERSIONS_DIRECTORY)) {
+                        // a class of a multi-release jar, which is found by its unversioned name
+                        final int versionEnd = name.indexOf('/', VERSIONS_DIRECTORY.length());
+                        name = name.substring(versionEnd + 1);
+                    }
+                    if (size == result.length) {
+                        result = Arrays.copyOf(result, size * 2);
+                    }
+                    result[size++] = hash(name);
+                }
+            } catch (final ZipException e) {
+                // not a zip file, the class loader can't load anything from it either
+                LOG.fine("The classpath entry " + entry.file + " is not a jar file: " + e.getMessage());
+            } catch (final IOException e) {
+                LOG.log(Level.FINE, "Could not read the classpath entry " + entry.file, e);
+            }
+        }
+        result = Arrays.copyOf(result, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the URLs in the {@code Class-Path} attribute of the manifest of the given
+     * jar file. Like for the class loader, they're relative to the jar file, and malformed
+     * ones are ignored.
+     */
+    private static List<URL> getManifestClasspath(final JarFile jarFile, final File file) throws IOException {
+        final List<URL> result = new ArrayList<>();
+        final Manifest manifest = jarFile.getManifest();
+        final String classpath = manifest == null ? null
+                : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        if (classpath == null) {
+            return result;
+        }
+        final URL base = file.toURI().toURL();
+        for (final String path : classpath.trim().split("\\s+")) {
+            try {
+                result.add(new URL(base, path));
+            } catch (final MalformedURLException e) {
+                LOG.fine("Ignoring the malformed classpath entry " + path + " of the manifest of " + file);
+            }
+        }
+        return result;
+    }
+
+    private static List<File> getDirectories(final List<Entry> entries) {
+        final List<File> result = new ArrayList<>();
+        for (final Entry entry : entries) {
+            if (!entry.isJar()) {
+                result.add(entry.file);
+            }
+        }
+        return result;
+    }
+
+    private static ClasspathIndex load(final File indexFile, final List<Entry> entries) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                LOG.info("Classpath index invalidated, unknown file format.");
+                return null;
+            }
+            final int countHashes = buffer.getInt(8);
+            final long entriesOffset = HEADER_SIZE + (long) countHashes * Long.SIZE / Byte.SIZE;
+
+            channel.position(entriesOffset);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            final int countEntries = input.readInt();
+            final List<Entry> indexedEntries = new ArrayList<>(countEntries);
+            for (int i = 0; i < countEntries; i++) {
+                indexedEntries.add(Entry.loadFromStream(input));
+            }
+            if (!isUpToDate(indexedEntries, entries)) {
+                LOG.info("Classpath index invalidated, the classpath changed.");
+                return null;
+            }
+
+            buffer.position(HEADER_SIZE);
+            buffer.limit((int) entriesOffset);
+            return new ClasspathIndex(buffer.slice().asLongBuffer(), getDirectories(indexedEntries));
+        } catch (final IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            LOG.warning("Classpath index " + indexFile.getPath() + " is malformed, will be built again");
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the indexed entries start with the given ones, and the entries
+     * listed in the manifests of the jar files didn't change either.
+     */
+    private static boolean isUpToDate(final List<Entry> indexedEntries, final List<Entry> entries) {
+        if (indexedEntries.size() < entries.size()
+                || !indexedEntries.subList(0, entries.size()).equals(entries)) {
+            return false;
+        }
+        for (final Entry entry : indexedEntries.subList(entries.size(), indexedEntries.size())) {
+            if (!entry.equals(entry.current())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void store(final File indexFile, final List<Entry> entries, final long[] sortedHashes) {
+        final File parentFile = indexFile.getAbsoluteFile().getParentFile();
+        if (parentFile != null && !parentFile.exists()) {
+            parentFile.mkdirs();
+        }
+
+        final File tempFile = new File(parentFile, indexFile.getName() + ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt(sortedHashes.length);
+                for (final long hash : sortedHashes) {
+                    output.writeLong(hash);
+                }
+                output.writeInt(entries.size());
+                for (final Entry entry : entries) {
+                    entry.storeToStream(output);
+                }
+            }
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            LOG.info("Classpath index created");
+        } catch (final IOException e) {
+            LOG.severe("Could not persist classpath index to file. " + e.getMessage());
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * A classpath entry. Jar files are identified by their size and modification time,
+     * directories are looked up on each query.
+     */
+    private static final class Entry {
+        private final File file;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(final File file, final long size, final long lastModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        static Entry forURL(final URL url) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+            final File file;
+            try {
+                file = new File(url.toURI());
+            } catch (final URISyntaxException | IllegalArgumentException e) {
+                return null;
+            }
+            if (url.getPath().endsWith("/")) {
+                // like URLClassLoader, a URL ending with a slash is a directory
+                return new Entry(file, -1, -1);
+            }
+            return new Entry(file, file.length(), file.lastModified());
+        }
+
+        boolean isJar() {
+            return size >= 0;
+        }
+
+        /**
+         * Returns the entry for the current state of the file.
+         */
+        Entry current() {
+            return isJar() ? new Entry(file, file.length(), file.lastModified()) : this;
+        }
+
+        void storeToStream(final DataOutputStream stream) throws IOException {
+            stream.writeUTF(file.getPath());
+            stream.writeLong(size);
+            stream.writeLong(lastModified);
+        }
+
+        static Entry loadFromStream(final DataInputStream stream) throws IOException {
+            final String path = stream.readUTF();
+            final long size = stream.readLong();
+            final long lastModified = stream.readLong();
+            return new Entry(new File(path), size, lastModified);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Entry entry = (Entry) o;
+            return size == entry.size && lastModified == entry.lastModified && file.equals(entry.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return file.hashCode() * 31 + (int) (size ^ lastModified);
+        }
+    }
+}
@@ -14,7 +14,7 @@ import java.nio.file.Paths;
 /**
  * DataSource implementation to read data from a file.
  */
-public class FileDataSource implements DataSource {
+public class FileDataSource implements SizedDataSource {
 
     private static final String FILE_SEPARATOR = System.getProperty("file.separator");
 
@@ -38,6 +38,11 @@ public class FileDataSource implements DataSource {
         return glomName(shortNames, inputFileName, file);
     }
 
+    @Override
+    public long getSize() {
+        return file.isFile() ? file.length() : -1L;
+    }
+
     private String glomName(boolean shortNames, String inputFileName, File file) {
         if (shortNames) {
             if (inputFileName != null) {
@@ -0,0 +1,23 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.util.datasource;
+
+/**
+ * A data source, which knows the size of its source file without reading it.
+ * The size is used to process the largest files first, see
+ * {@link net.sourceforge.pmd.PMDConfiguration#isLargestFilesFirst()}.
+ * Data sources, which don't implement this interface, are processed last.
+ *
+ * @since 6.17.0
+ */
+public interface SizedDataSource extends DataSource {
+
+    /**
+     * Returns the size of the source file in bytes, or -1 if it's unknown.
+     *
+     * @return The size of the source file
+     */
+    long getSize();
+}
@@ -12,7 +12,7 @@ import java.util.zip.ZipFile;
 /**
  * DataSource implementation to read data from an entry in a zip or jar file.
  */
-public class ZipDataSource implements DataSource {
+public class ZipDataSource implements SizedDataSource {
     private final ZipFile zipFile;
     private final ZipEntry zipEntry;
 
@@ -38,6 +38,11 @@ public class ZipDataSource implements DataSource {
         return zipFile.getName() + ":" + zipEntry.getName();
     }
 
+    @Override
+    public long getSize() {
+        return zipEntry.getSize();
+    }
+
     @Override
     public String toString() {
         return new StringBuilder(ZipDataSource.class.getSimpleName())
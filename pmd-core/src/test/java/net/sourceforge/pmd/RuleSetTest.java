@@ -9,6 +9,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -17,6 +18,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -32,6 +34,7 @@ import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.MockRule;
 import net.sourceforge.pmd.lang.rule.RuleReference;
 import net.sourceforge.pmd.util.CollectionUtil;
+import net.sourceforge.pmd.util.filter.Filter;
 
 public class RuleSetTest {
 
@@ -623,4 +626,55 @@ public class RuleSetTest {
         assertEquals("There should be a violation", 1, context.getReport().size());
     }
 
+    @Test
+    public void testRuleChecksumsOnlyChangeForChangedRule() {
+        MockRule rule1 = new MockRule("name1", "desc", "msg", "rulesetname");
+        MockRule rule2 = new MockRule("name2", "desc", "msg", "rulesetname");
+        RuleSets ruleSets = new RuleSets(createRuleSetBuilder("ruleset").addRule(rule1).addRule(rule2).build());
+
+        Map<Rule, Long> checksums = ruleSets.getRuleChecksums();
+        assertEquals(2, checksums.size());
+        assertFalse(checksums.get(rule1).equals(checksums.get(rule2)));
+
+        rule2.setMessage("other msg");
+        Map<Rule, Long> changedChecksums = ruleSets.getRuleChecksums();
+        assertEquals(checksums.get(rule1), changedChecksums.get(rule1));
+        assertFalse(checksums.get(rule2).equals(changedChecksums.get(rule2)));
+    }
+
+    @Test
+    public void testRuleChecksumsIncludeFilePatterns() {
+        MockRule rule = new MockRule("name", "desc", "msg", "rulesetname");
+        RuleSets ruleSets = new RuleSets(createRuleSetBuilder("ruleset").addRule(rule).build());
+        RuleSets excludingRuleSets = new RuleSets(createRuleSetBuilder("ruleset").addRule(rule)
+                .addExcludePattern(".*/Excluded.java").build());
+
+        assertFalse(ruleSets.getRuleChecksums().get(rule).equals(excludingRuleSets.getRuleChecksums().get(rule)));
+    }
+
+    @Test
+    public void testFilterRules() {
+        final MockRule rule1 = new MockRule("name1", "desc", "msg", "rulesetname");
+        final MockRule rule2 = new MockRule("name2", "desc", "msg", "rulesetname");
+        RuleSets ruleSets = new RuleSets(createRuleSetBuilder("ruleset").addRule(rule1).addRule(rule2)
+                .addExcludePattern(".*/Excluded.java").build());
+
+        RuleSets filtered = ruleSets.filterRules(new Filter<Rule>() {
+            @Override
+            public boolean filter(Rule rule) {
+                return rule != rule1;
+            }
+        });
+        assertEquals(1, filtered.ruleCount());
+        assertTrue(filtered.getAllRules().contains(rule2));
+        assertEquals(ruleSets.getAllRuleSets()[0].getExcludePatterns(), filtered.getAllRuleSets()[0].getExcludePatterns());
+
+        RuleSets unfiltered = ruleSets.filterRules(new Filter<Rule>() {
+            @Override
+            public boolean filter(Rule rule) {
+                return true;
+            }
+        });
+        assertSame(ruleSets, unfiltered);
+    }
 }
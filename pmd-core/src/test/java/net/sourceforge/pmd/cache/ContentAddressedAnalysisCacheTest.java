@@ -0,0 +1,180 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.RulePriority;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.rule.MockRule;
+
+public class ContentAddressedAnalysisCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File cacheDirectory;
+    private File sourceFile;
+    private MockRule rule;
+    private RuleSets ruleSets;
+    private ClassLoader classLoader;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDirectory = new File(tempFolder.getRoot(), "cache");
+        sourceFile = tempFolder.newFile("Source.java");
+        Files.write(sourceFile.toPath(), "class Source { }".getBytes("UTF-8"));
+        rule = new MockRule("TestRule", "A rule", "A message", "testRuleSet");
+        final RuleSet ruleSet = new RuleSetFactory().createNewRuleSet("testRuleSet", "A ruleset", null,
+                Collections.singletonList(".*/excluded/.*"), Collections.<String>emptyList(),
+                Collections.<net.sourceforge.pmd.Rule>singletonList(rule));
+        ruleSets = new RuleSets(ruleSet);
+        classLoader = mock(ClassLoader.class);
+    }
+
+    @Test
+    public void testUnknownFileIsNotUpToDate() {
+        final ContentAddressedAnalysisCache cache = newCache(Long.MAX_VALUE);
+        assertFalse("Cache believes an unknown file is up to date", cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testFileWithSameContentsElsewhereIsUpToDate() throws IOException {
+        analyzeWithViolation(newCache(Long.MAX_VALUE), sourceFile);
+
+        final File copy = new File(tempFolder.newFolder("other-checkout"), "Source.java");
+        Files.copy(sourceFile.toPath(), copy.toPath());
+
+        final ContentAddressedAnalysisCache cache = newCache(Long.MAX_VALUE);
+        assertTrue("Cache believes a copy of an analyzed file is not up to date", cache.isUpToDate(copy));
+        final List<RuleViolation> violations = cache.getCachedViolations(copy);
+        assertEquals("Cached rule violations count mismatch", 1, violations.size());
+        assertEquals("Cached rule violations are not reported on the copy",
+                copy.getPath(), violations.get(0).getFilename());
+    }
+
+    @Test
+    public void testFileIsNotUpToDateWhenEdited() throws IOException {
+        analyzeWithViolation(newCache(Long.MAX_VALUE), sourceFile);
+
+        Files.write(sourceFile.toPath(), "class Source { int x; }".getBytes("UTF-8"));
+
+        final ContentAddressedAnalysisCache cache = newCache(Long.MAX_VALUE);
+        assertFalse("Cache believes a changed file is up to date", cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testRulesetChangeMissesCache() {
+        analyzeWithViolation(newCache(Long.MAX_VALUE), sourceFile);
+
+        rule.setPriority(RulePriority.HIGH);
+        final ContentAddressedAnalysisCache cache = newCache(Long.MAX_VALUE);
+        assertFalse("Cache believes unmodified file is up to date after ruleset changed",
+                cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testExcludedFileWithSameContentsIsNotUpToDate() throws IOException {
+        analyzeWithViolation(newCache(Long.MAX_VALUE), sourceFile);
+
+        final File copy = new File(tempFolder.newFolder("excluded"), "Source.java");
+        Files.copy(sourceFile.toPath(), copy.toPath());
+
+        final ContentAddressedAnalysisCache cache = newCache(Long.MAX_VALUE);
+        assertFalse("Cache reuses the violations of an included file for an excluded copy",
+                cache.isUpToDate(copy));
+        assertTrue("Cache believes an analyzed file is not up to date", cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testNoInvalidationIsLogged() {
+        final List<String> messages = new ArrayList<>();
+        final Handler handler = new Handler() {
+            @Override
+            public void publish(final LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+                // nothing to do
+            }
+
+            @Override
+            public void close() {
+                // nothing to do
+            }
+        };
+        final Logger logger = Logger.getLogger(AbstractAnalysisCache.class.getName());
+        logger.addHandler(handler);
+        try {
+            analyzeWithViolation(newCache(Long.MAX_VALUE), sourceFile);
+            newCache(Long.MAX_VALUE);
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        for (final String message : messages) {
+            assertFalse("Cache logged an invalidation: " + message, message.contains("invalidated"));
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        final File otherFile = tempFolder.newFile("Other.java");
+        Files.write(otherFile.toPath(), "class Other { }".getBytes("UTF-8"));
+
+        // no space at all, everything gets evicted
+        final ContentAddressedAnalysisCache cache = newCache(0L);
+        cache.isUpToDate(sourceFile);
+        cache.isUpToDate(otherFile);
+        cache.persist();
+
+        final ContentAddressedAnalysisCache reloadedCache = newCache(Long.MAX_VALUE);
+        assertFalse("Evicted entry is still in the cache", reloadedCache.isUpToDate(sourceFile));
+        assertFalse("Evicted entry is still in the cache", reloadedCache.isUpToDate(otherFile));
+    }
+
+    private ContentAddressedAnalysisCache newCache(long maxSize) {
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(cacheDirectory, maxSize);
+        cache.checkValidity(ruleSets, classLoader);
+        return cache;
+    }
+
+    private void analyzeWithViolation(final ContentAddressedAnalysisCache cache, final File file) {
+        cache.isUpToDate(file);
+
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(file.getPath());
+        final net.sourceforge.pmd.Rule rule = mock(net.sourceforge.pmd.Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rv.getRule()).thenReturn(rule);
+        cache.ruleViolationAdded(rv);
+
+        cache.persist();
+    }
+}
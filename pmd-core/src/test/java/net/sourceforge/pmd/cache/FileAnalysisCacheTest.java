@@ -11,6 +11,8 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -20,7 +22,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -29,6 +35,7 @@ import org.junit.contrib.java.lang.system.RestoreSystemProperties;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
+import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
 
@@ -112,6 +119,27 @@ public class FileAnalysisCacheTest {
         assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
     }
 
+    @Test
+    public void testCacheOfOlderFormatIsDiscarded() throws IOException {
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.isUpToDate(sourceFile);
+        cache.persist();
+
+        // caches written before the format version was introduced only start with the PMD version
+        final byte[] contents = Files.readAllBytes(newCacheFile.toPath());
+        final int headerLength = 2 + ((contents[0] & 0xff) << 8 | contents[1] & 0xff);
+        final ByteArrayOutputStream olderContents = new ByteArrayOutputStream();
+        try (DataOutputStream outputStream = new DataOutputStream(olderContents)) {
+            outputStream.writeUTF(PMDVersion.VERSION);
+            outputStream.write(contents, headerLength, contents.length - headerLength);
+        }
+        Files.write(newCacheFile.toPath(), olderContents.toByteArray());
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        assertFalse("Cache of an older format believes unmodified file is up to date",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
     @Test
     public void testCacheValidityWithNoChanges() {
         final RuleSets rs = mock(RuleSets.class);
@@ -139,6 +167,79 @@ public class FileAnalysisCacheTest {
                 reloadedCache.isUpToDate(sourceFile));
     }
     
+    @Test
+    public void testRuleChangeOnlyInvalidatesChangedRule() {
+        final net.sourceforge.pmd.Rule unchangedRule = mockRule("UnchangedRule");
+        final net.sourceforge.pmd.Rule changedRule = mockRule("ChangedRule");
+        final RuleSets rs = mockRuleSets(1L, unchangedRule, 10L, changedRule, 20L);
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(rs, cl);
+        cache.isUpToDate(sourceFile);
+        cache.ruleViolationAdded(mockViolation(unchangedRule));
+        cache.ruleViolationAdded(mockViolation(changedRule));
+        cache.persist();
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(mockRuleSets(2L, unchangedRule, 10L, changedRule, 21L), cl);
+        assertFalse("Cache believes unmodified file is up to date after a rule changed",
+                reloadedCache.isUpToDate(sourceFile));
+        assertTrue("Cache believes unchanged rule is not up to date",
+                reloadedCache.isRuleUpToDate(sourceFile, unchangedRule));
+        assertFalse("Cache believes changed rule is up to date",
+                reloadedCache.isRuleUpToDate(sourceFile, changedRule));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
+        assertEquals(unchangedRule, cachedViolations.get(0).getRule());
+    }
+
+    @Test
+    public void testRuleRemovalDropsItsViolations() {
+        final net.sourceforge.pmd.Rule keptRule = mockRule("KeptRule");
+        final net.sourceforge.pmd.Rule removedRule = mockRule("RemovedRule");
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(mockRuleSets(1L, keptRule, 10L, removedRule, 20L), cl);
+        cache.isUpToDate(sourceFile);
+        cache.ruleViolationAdded(mockViolation(keptRule));
+        cache.ruleViolationAdded(mockViolation(removedRule));
+        cache.persist();
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        final RuleSets rs = mock(RuleSets.class);
+        when(rs.getChecksum()).thenReturn(2L);
+        when(rs.getAllRules()).thenReturn(Collections.singleton(keptRule));
+        when(rs.getRuleChecksums()).thenReturn(Collections.singletonMap(keptRule, 10L));
+        reloadedCache.checkValidity(rs, cl);
+        assertTrue("Cache believes unmodified file is not up to date after a rule was removed",
+                reloadedCache.isUpToDate(sourceFile));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
+        assertEquals(keptRule, cachedViolations.get(0).getRule());
+    }
+
+    @Test
+    public void testRuleChangeDoesNotReuseResultsOfChangedFiles() throws IOException {
+        final net.sourceforge.pmd.Rule unchangedRule = mockRule("UnchangedRule");
+        final net.sourceforge.pmd.Rule changedRule = mockRule("ChangedRule");
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        setupCacheWithFiles(newCacheFile, mockRuleSets(1L, unchangedRule, 10L, changedRule, 20L), cl, sourceFile);
+
+        // Edit the file
+        Files.write(Paths.get(sourceFile.getAbsolutePath()), "some text".getBytes());
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(mockRuleSets(2L, unchangedRule, 10L, changedRule, 21L), cl);
+        assertFalse(reloadedCache.isUpToDate(sourceFile));
+        assertFalse("Cache believes unchanged rule is up to date on a changed file",
+                reloadedCache.isRuleUpToDate(sourceFile, unchangedRule));
+    }
+
     @Test
     public void testAuxClasspathNonExistingAuxclasspathEntriesIgnored() throws MalformedURLException, IOException {
         final RuleSets rs = mock(RuleSets.class);
@@ -215,6 +316,56 @@ public class FileAnalysisCacheTest {
                 reloadedCache.isUpToDate(sourceFile));
     }
 
+    @Test
+    public void testAuxClasspathJarEntriesChangeInvalidatesCache() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final URLClassLoader cl = mock(URLClassLoader.class);
+
+        final File classpathJar = new File(tempFolder.getRoot(), "mylib.jar");
+        writeJar(classpathJar, "Foo.class", "some content");
+        when(cl.getURLs()).thenReturn(new URL[] { classpathJar.toURI().toURL(), });
+
+        final net.sourceforge.pmd.Rule r = mock(net.sourceforge.pmd.Rule.class);
+        when(r.isTypeResolution()).thenReturn(true);
+        when(rs.getAllRules()).thenReturn(Collections.singleton(r));
+
+        setupCacheWithFiles(newCacheFile, rs, cl, sourceFile);
+
+        // Change the contents of an entry of the jar
+        writeJar(classpathJar, "Foo.class", "some other content");
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl);
+        assertFalse("Cache believes cache is up to date when a auxclasspath jar changed",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testUnchangedAuxClasspathJarIsNotReadAgain() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final URLClassLoader cl = mock(URLClassLoader.class);
+
+        final File classpathJar = new File(tempFolder.getRoot(), "mylib.jar");
+        writeJar(classpathJar, "Foo.class", "some content");
+        when(cl.getURLs()).thenReturn(new URL[] { classpathJar.toURI().toURL(), });
+
+        final net.sourceforge.pmd.Rule r = mock(net.sourceforge.pmd.Rule.class);
+        when(r.isTypeResolution()).thenReturn(true);
+        when(rs.getAllRules()).thenReturn(Collections.singleton(r));
+
+        setupCacheWithFiles(newCacheFile, rs, cl, sourceFile);
+
+        // Overwrite the jar, keeping its size and modification time
+        final long lastModified = classpathJar.lastModified();
+        Files.write(classpathJar.toPath(), new byte[(int) classpathJar.length()]);
+        classpathJar.setLastModified(lastModified);
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl);
+        assertTrue("Cache believes unmodified file is not up to date when an auxclasspath jar kept its metadata",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
     @Test
     public void testClasspathChangeInvalidatesCache() throws MalformedURLException, IOException {
         final RuleSets rs = mock(RuleSets.class);
@@ -256,6 +407,57 @@ public class FileAnalysisCacheTest {
                 reloadedCache.isUpToDate(sourceFile));
     }
 
+    @Test
+    public void testClasspathDirectoryHasSingleFingerprint() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final File classpathDirectory = tempFolder.newFolder("classes");
+        Files.write(new File(classpathDirectory, "Foo.class").toPath(), "some content".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(classpathDirectory, "Bar.class").toPath(), "other content".getBytes(StandardCharsets.UTF_8));
+        System.setProperty("java.class.path", System.getProperty("java.class.path") + File.pathSeparator + classpathDirectory.getAbsolutePath());
+
+        setupCacheWithFiles(newCacheFile, rs, cl, sourceFile);
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        final String directoryKey = classpathDirectory.toURI().toURL().toString();
+        assertTrue("Classpath directory has no fingerprint",
+                reloadedCache.classPathFingerprints.containsKey(directoryKey));
+        for (final String key : reloadedCache.classPathFingerprints.keySet()) {
+            assertFalse("Classpath directory has a fingerprint for each file",
+                    key.startsWith(directoryKey) && !key.equals(directoryKey));
+        }
+    }
+
+    @Test
+    public void testClasspathDirectoryContentsChangeInvalidatesCache() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final File classpathDirectory = tempFolder.newFolder("classes");
+        final File classFile = new File(classpathDirectory, "Foo.class");
+        Files.write(classFile.toPath(), "some content".getBytes(StandardCharsets.UTF_8));
+        System.setProperty("java.class.path", System.getProperty("java.class.path") + File.pathSeparator + classpathDirectory.getAbsolutePath());
+
+        setupCacheWithFiles(newCacheFile, rs, cl, sourceFile);
+
+        // Change the file's contents, keeping its size and modification time
+        final long lastModified = classFile.lastModified();
+        Files.write(classFile.toPath(), "other conten".getBytes(StandardCharsets.UTF_8));
+        classFile.setLastModified(lastModified);
+        final FileAnalysisCache unchangedCache = new FileAnalysisCache(newCacheFile);
+        unchangedCache.checkValidity(rs, cl);
+        assertTrue("Cache believes unmodified file is not up to date when a classpath directory kept its metadata",
+                unchangedCache.isUpToDate(sourceFile));
+
+        // Add a file to the directory
+        Files.write(new File(classpathDirectory, "Bar.class").toPath(), "more content".getBytes(StandardCharsets.UTF_8));
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl);
+        assertFalse("Cache believes cache is up to date when a classpath directory changed",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
     @Test
     public void testWildcardClasspath() throws MalformedURLException, IOException {
         final RuleSets rs = mock(RuleSets.class);
@@ -339,4 +541,39 @@ public class FileAnalysisCacheTest {
         }
         cache.persist();
     }
+
+    private net.sourceforge.pmd.Rule mockRule(final String name) {
+        final net.sourceforge.pmd.Rule rule = mock(net.sourceforge.pmd.Rule.class);
+        when(rule.getRuleClass()).thenReturn("net.sourceforge.pmd.lang.rule.XPathRule");
+        when(rule.getName()).thenReturn(name);
+        return rule;
+    }
+
+    private RuleSets mockRuleSets(final long checksum, final net.sourceforge.pmd.Rule firstRule, final long firstChecksum,
+            final net.sourceforge.pmd.Rule secondRule, final long secondChecksum) {
+        final Map<net.sourceforge.pmd.Rule, Long> ruleChecksums = new HashMap<>();
+        ruleChecksums.put(firstRule, firstChecksum);
+        ruleChecksums.put(secondRule, secondChecksum);
+
+        final RuleSets rs = mock(RuleSets.class);
+        when(rs.getChecksum()).thenReturn(checksum);
+        when(rs.getAllRules()).thenReturn(ruleChecksums.keySet());
+        when(rs.getRuleChecksums()).thenReturn(ruleChecksums);
+        return rs;
+    }
+
+    private RuleViolation mockViolation(final net.sourceforge.pmd.Rule rule) {
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(sourceFile.getPath());
+        when(rv.getRule()).thenReturn(rule);
+        return rv;
+    }
+
+    private void writeJar(final File jar, final String entryName, final String content) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            zip.putNextEntry(new ZipEntry(entryName));
+            zip.write(content.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+    }
 }
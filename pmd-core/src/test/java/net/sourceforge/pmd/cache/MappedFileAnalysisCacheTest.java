@@ -0,0 +1,189 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+
+public class MappedFileAnalysisCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File cacheFile;
+    private File sourceFile;
+    private File otherSourceFile;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFile = new File(tempFolder.getRoot(), "pmd-analysis.cache");
+        sourceFile = tempFolder.newFile("Source.java");
+        otherSourceFile = tempFolder.newFile("Other.java");
+    }
+
+    @Test
+    public void testLoadFromDirectoryShouldntThrow() {
+        new MappedFileAnalysisCache(tempFolder.getRoot());
+    }
+
+    @Test
+    public void testLoadFromOtherFormatShouldntThrow() throws IOException {
+        Files.write(cacheFile.toPath(), "not a cache".getBytes());
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        assertFalse("Cache believes an unknown file is up to date", cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testLoadFromFileAnalysisCacheShouldntThrow() {
+        final FileAnalysisCache fileCache = new FileAnalysisCache(cacheFile);
+        fileCache.isUpToDate(sourceFile);
+        fileCache.persist();
+
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        assertFalse("Cache believes an unknown file is up to date", cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testStorePersistsFilesWithViolations() {
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.isUpToDate(sourceFile);
+        cache.isUpToDate(otherSourceFile);
+        cache.ruleViolationAdded(mockViolation(sourceFile));
+        cache.ruleViolationAdded(mockViolation(sourceFile));
+        cache.persist();
+
+        final MappedFileAnalysisCache reloadedCache = new MappedFileAnalysisCache(cacheFile);
+        assertTrue("Cache believes unmodified file with violations is not up to date",
+                reloadedCache.isUpToDate(sourceFile));
+        assertTrue("Cache believes unmodified file without violations is not up to date",
+                reloadedCache.isUpToDate(otherSourceFile));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Cached rule violations count mismatch", 2, cachedViolations.size());
+        assertEquals(sourceFile.getPath(), cachedViolations.get(0).getFilename());
+        assertTrue(reloadedCache.getCachedViolations(otherSourceFile).isEmpty());
+    }
+
+    @Test
+    public void testUpToDateFilesAreKeptOnPersist() {
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.isUpToDate(sourceFile);
+        cache.ruleViolationAdded(mockViolation(sourceFile));
+        cache.persist();
+
+        // the violations of up to date files are copied over
+        final MappedFileAnalysisCache secondRun = new MappedFileAnalysisCache(cacheFile);
+        assertTrue(secondRun.isUpToDate(sourceFile));
+        secondRun.persist();
+
+        final MappedFileAnalysisCache thirdRun = new MappedFileAnalysisCache(cacheFile);
+        assertTrue(thirdRun.isUpToDate(sourceFile));
+        assertEquals("Cached rule violations count mismatch", 1, thirdRun.getCachedViolations(sourceFile).size());
+    }
+
+    @Test
+    public void testMappedCacheFileIsReplacedOnNextRun() throws IOException {
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.isUpToDate(sourceFile);
+        cache.persist();
+        final byte[] firstRunContent = Files.readAllBytes(cacheFile.toPath());
+
+        // the cache file is mapped, so it's not replaced while the cache is in use
+        final MappedFileAnalysisCache secondRun = new MappedFileAnalysisCache(cacheFile);
+        assertTrue(secondRun.isUpToDate(sourceFile));
+        secondRun.isUpToDate(otherSourceFile);
+        secondRun.ruleViolationAdded(mockViolation(otherSourceFile));
+        secondRun.persist();
+        assertArrayEquals(firstRunContent, Files.readAllBytes(cacheFile.toPath()));
+
+        final MappedFileAnalysisCache thirdRun = new MappedFileAnalysisCache(cacheFile);
+        assertFalse("Pending cache file was not moved in place",
+                new File(tempFolder.getRoot(), cacheFile.getName() + ".next").exists());
+        assertTrue(thirdRun.isUpToDate(sourceFile));
+        assertTrue(thirdRun.isUpToDate(otherSourceFile));
+        assertEquals("Cached rule violations count mismatch", 1, thirdRun.getCachedViolations(otherSourceFile).size());
+    }
+
+    @Test
+    public void testRegionsSpanningSeveralChunks() {
+        // tiny chunks, so that every region of the file spans several of them
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile, 7);
+        cache.isUpToDate(sourceFile);
+        cache.isUpToDate(otherSourceFile);
+        cache.ruleViolationAdded(mockViolation(sourceFile));
+        cache.ruleViolationAdded(mockViolation(sourceFile));
+        cache.persist();
+
+        final MappedFileAnalysisCache secondRun = new MappedFileAnalysisCache(cacheFile, 7);
+        assertTrue(secondRun.isUpToDate(sourceFile));
+        assertTrue(secondRun.isUpToDate(otherSourceFile));
+        secondRun.persist();
+
+        final MappedFileAnalysisCache thirdRun = new MappedFileAnalysisCache(cacheFile, 5);
+        assertTrue(thirdRun.isUpToDate(sourceFile));
+        final List<RuleViolation> cachedViolations = thirdRun.getCachedViolations(sourceFile);
+        assertEquals("Cached rule violations count mismatch", 2, cachedViolations.size());
+        assertEquals(sourceFile.getPath(), cachedViolations.get(1).getFilename());
+        assertTrue(thirdRun.getCachedViolations(otherSourceFile).isEmpty());
+    }
+
+    @Test
+    public void testFileIsNotUpToDateWhenEdited() throws IOException {
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.isUpToDate(sourceFile);
+        cache.persist();
+
+        // Edit the file
+        Files.write(Paths.get(sourceFile.getAbsolutePath()), "some text".getBytes());
+
+        final MappedFileAnalysisCache reloadedCache = new MappedFileAnalysisCache(cacheFile);
+        assertFalse("Cache believes a known, changed file is up to date",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testRulesetChangeInvalidatesCache() {
+        final RuleSets rs = mock(RuleSets.class);
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.checkValidity(rs, cl);
+        cache.isUpToDate(sourceFile);
+        cache.persist();
+
+        final MappedFileAnalysisCache reloadedCache = new MappedFileAnalysisCache(cacheFile);
+        when(rs.getChecksum()).thenReturn(1L);
+        reloadedCache.checkValidity(rs, cl);
+        assertFalse("Cache believes unmodified file is up to date after ruleset changed",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
+    private RuleViolation mockViolation(final File file) {
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(file.getPath());
+        final net.sourceforge.pmd.Rule rule = mock(net.sourceforge.pmd.Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rv.getRule()).thenReturn(rule);
+        return rv;
+    }
+}
@@ -14,6 +14,8 @@ import org.junit.contrib.java.lang.system.ExpectedSystemExit;
 import org.junit.contrib.java.lang.system.RestoreSystemProperties;
 
 import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.cache.ContentAddressedAnalysisCache;
+import net.sourceforge.pmd.cache.MappedFileAnalysisCache;
 import net.sourceforge.pmd.cache.NoopAnalysisCache;
 
 
@@ -67,6 +69,27 @@ public class PMDCommandLineInterfaceTest {
         assertTrue(config.getAnalysisCache() instanceof NoopAnalysisCache);
     }
 
+    @Test
+    public void testMappedCacheSwitch() {
+        PMDParameters params = new PMDParameters();
+        String[] args = {"-d", "source_folder", "-f", "ideaj", "-R", "java-empty", "-cache", "/home/user/.pmd/cache", "-mappedcache", };
+        PMDCommandLineInterface.extractParameters(params, args, "PMD");
+
+        PMDConfiguration config = params.toConfiguration();
+        assertTrue(config.getAnalysisCache() instanceof MappedFileAnalysisCache);
+    }
+
+    @Test
+    public void testSharedCacheSwitch() {
+        PMDParameters params = new PMDParameters();
+        String[] args = {"-d", "source_folder", "-f", "ideaj", "-R", "java-empty", "-cache", "/home/user/.pmd/cache",
+            "-sharedcache", "-sharedcachesize", "10", };
+        PMDCommandLineInterface.extractParameters(params, args, "PMD");
+
+        PMDConfiguration config = params.toConfiguration();
+        assertTrue(config.getAnalysisCache() instanceof ContentAddressedAnalysisCache);
+    }
+
     @Test
     public void testSetStatusCodeOrExitDoExit() {
         exit.expectSystemExitWithStatus(0);
@@ -5,13 +5,21 @@
 package net.sourceforge.pmd.cpd;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.SystemUtils;
 import org.junit.Assert;
 import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit test for {@link CPD}
@@ -21,6 +29,9 @@ public class CPDTest {
     private static final String BASE_TEST_RESOURCE_PATH = "src/test/resources/net/sourceforge/pmd/cpd/files/";
     private static final String TARGET_TEST_RESOURCE_PATH = "target/classes/net/sourceforge/pmd/cpd/files/";
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private CPD cpd;
 
     // Symlinks are not well supported under Windows - so the tests are
@@ -130,6 +141,147 @@ public class CPDTest {
         }
     }
 
+    /**
+     * Tokenizing on multiple threads must give the same tokens and duplicates as a sequential run.
+     *
+     * @throws Exception
+     *             any error
+     */
+    @Test
+    public void testConcurrentTokenizationIsDeterministic() throws Exception {
+        List<File> files = createFiles(new Random(42), 30);
+
+        List<String> sequential = findMatches(files, 1, null);
+        Assert.assertFalse(sequential.isEmpty());
+        Assert.assertEquals(sequential, findMatches(files, 4, null));
+    }
+
+    /**
+     * Only the files which changed since the previous run are tokenized again, and the
+     * cached tokens give the same duplicates as tokenizing all files.
+     *
+     * @throws Exception
+     *             any error
+     */
+    @Test
+    public void testCachedTokensAreReused() throws Exception {
+        Random random = new Random(42);
+        List<File> files = createFiles(random, 20);
+        String cacheLocation = new File(folder.getRoot(), "cpd.cache").getPath();
+
+        CountingLanguage.TOKENIZED.set(0);
+        List<String> expected = findMatches(files, 1, null);
+        Assert.assertEquals(expected, findMatches(files, 1, cacheLocation));
+        Assert.assertEquals(40, CountingLanguage.TOKENIZED.get());
+        Assert.assertEquals(expected, findMatches(files, 1, cacheLocation));
+        Assert.assertEquals(40, CountingLanguage.TOKENIZED.get());
+
+        writeFile(random, files.get(3));
+        expected = findMatches(files, 1, null);
+        Assert.assertEquals(expected, findMatches(files, 4, cacheLocation));
+        Assert.assertEquals(61, CountingLanguage.TOKENIZED.get());
+
+        // the cache is written to a temporary file, which is moved in place
+        for (String name : folder.getRoot().list()) {
+            Assert.assertFalse("Temporary cache file left behind: " + name, name.endsWith(".tmp"));
+        }
+    }
+
+    /**
+     * Files are duplicates if their contents are identical, regardless of their names.
+     *
+     * @throws Exception
+     *             any error
+     */
+    @Test
+    public void testDuplicateFilesAreDetectedByContents() throws Exception {
+        File original = new File(folder.newFolder("a"), "Same.txt");
+        File sameNameAndLength = new File(folder.newFolder("b"), "Same.txt");
+        File renamedCopy = new File(folder.newFolder("c"), "Copy.txt");
+        Files.write(original.toPath(), "first content".getBytes(StandardCharsets.UTF_8));
+        Files.write(sameNameAndLength.toPath(), "other content".getBytes(StandardCharsets.UTF_8));
+        Files.write(renamedCopy.toPath(), "first content".getBytes(StandardCharsets.UTF_8));
+        List<File> files = new ArrayList<>();
+        files.add(original);
+        files.add(sameNameAndLength);
+        files.add(renamedCopy);
+
+        for (int threads = 1; threads <= 4; threads += 3) {
+            CPDConfiguration configuration = new CPDConfiguration();
+            configuration.setLanguage(new AnyLanguage("any"));
+            configuration.setMinimumTileSize(10);
+            configuration.setSkipDuplicates(true);
+            configuration.setThreads(threads);
+            configuration.postContruct();
+            CPD cpd = new CPD(configuration);
+            cpd.add(files);
+
+            List<String> paths = cpd.getSourcePaths();
+            Assert.assertEquals(2, paths.size());
+            Assert.assertTrue(paths.contains(original.getAbsolutePath()));
+            Assert.assertTrue(paths.contains(sameNameAndLength.getAbsolutePath()));
+        }
+    }
+
+    private List<File> createFiles(Random random, int count) throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            File file = folder.newFile("File" + i + ".txt");
+            writeFile(random, file);
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void writeFile(Random random, File file) throws Exception {
+        StringBuilder contents = new StringBuilder();
+        for (int line = 0; line < 50 + random.nextInt(50); line++) {
+            contents.append("word").append(random.nextInt(5)).append(" word").append(random.nextInt(20)).append('\n');
+        }
+        Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> findMatches(List<File> files, int threads, String cacheLocation) throws Exception {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setLanguage(new CountingLanguage());
+        configuration.setMinimumTileSize(6);
+        configuration.setThreads(threads);
+        configuration.setCacheLocation(cacheLocation);
+        configuration.postContruct();
+        CPD cpd = new CPD(configuration);
+        cpd.add(files);
+        cpd.go();
+
+        List<String> matches = new ArrayList<>();
+        for (Iterator<Match> it = cpd.getMatches(); it.hasNext();) {
+            Match match = it.next();
+            StringBuilder description = new StringBuilder().append(match.getTokenCount()).append(':');
+            for (Mark mark : match) {
+                description.append(' ').append(mark.getFilename()).append('@').append(mark.getBeginLine())
+                    .append('#').append(mark.getToken().getIndex()).append('=').append(mark.getToken().getIdentifier());
+            }
+            matches.add(description.toString());
+        }
+        return matches;
+    }
+
+    /**
+     * Counts the files, which have been tokenized.
+     */
+    public static class CountingLanguage extends AbstractLanguage {
+        static final AtomicInteger TOKENIZED = new AtomicInteger();
+
+        public CountingLanguage() {
+            super("Counting", "counting", new AnyTokenizer() {
+                @Override
+                public void tokenize(SourceCode sourceCode, Tokens tokenEntries) {
+                    TOKENIZED.incrementAndGet();
+                    super.tokenize(sourceCode, tokenEntries);
+                }
+            }, ".txt");
+        }
+    }
+
     /**
      * Simple listener that fails, if too many files were added and not skipped.
      */
@@ -0,0 +1,173 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatchCollectorTest {
+
+    @Before
+    public void setUp() {
+        TokenEntry.clearImages();
+    }
+
+    @Test
+    public void testSameMatchesAsPairwiseComparison() {
+        final Random random = new Random(42);
+        for (int alphabet = 1; alphabet <= 4; alphabet++) {
+            TokenEntry.clearImages();
+            final Tokens tokens = new Tokens();
+            for (int file = 0; file < 10; file++) {
+                final List<String> images = new ArrayList<>();
+                for (int i = 50 + random.nextInt(100); i > 0; i--) {
+                    images.add(String.valueOf((char) ('a' + random.nextInt(alphabet))));
+                }
+                addFile(tokens, "File" + file + ".java", images);
+            }
+
+            for (int min = 2; min < 8; min++) {
+                final MatchAlgorithm matchAlgorithm = new MatchAlgorithm(Collections.<String, SourceCode>emptyMap(),
+                        tokens, min);
+                final List<List<TokenEntry>> groups = findGroups(matchAlgorithm, tokens, min);
+
+                final MatchCollector collector = new MatchCollector(matchAlgorithm);
+                for (List<TokenEntry> group : groups) {
+                    collector.collect(group);
+                }
+                assertEquals("Matches differ for alphabet " + alphabet + " and minimum tile size " + min,
+                        describe(collectPairwise(matchAlgorithm, groups)), describe(collector.getMatches()));
+            }
+        }
+    }
+
+    /**
+     * Thousands of copies of the same code, such as generated code, are a single match,
+     * which is found without comparing each pair of copies.
+     */
+    @Test(timeout = 30000)
+    public void testRepetitiveCode() {
+        final int copies = 5000;
+        final int blockSize = 20;
+        final Tokens tokens = new Tokens();
+        for (int file = 0; file < copies / 10; file++) {
+            final List<String> images = new ArrayList<>();
+            for (int copy = 0; copy < 10; copy++) {
+                images.add("class" + file + '_' + copy);
+                for (int i = 0; i < blockSize; i++) {
+                    images.add("token" + i);
+                }
+            }
+            addFile(tokens, "File" + file + ".java", images);
+        }
+
+        final MatchAlgorithm matchAlgorithm = new MatchAlgorithm(Collections.<String, SourceCode>emptyMap(),
+                tokens, 10);
+        matchAlgorithm.findMatches();
+        final List<Match> matches = new ArrayList<>();
+        for (Iterator<Match> it = matchAlgorithm.matches(); it.hasNext();) {
+            matches.add(it.next());
+        }
+
+        assertEquals(1, matches.size());
+        assertEquals(blockSize, matches.get(0).getTokenCount());
+        assertEquals(copies, matches.get(0).getMarkCount());
+    }
+
+    private static void addFile(Tokens tokens, String fileName, List<String> images) {
+        int line = 1;
+        for (String image : images) {
+            tokens.add(new TokenEntry(image, fileName, line++));
+        }
+        tokens.add(TokenEntry.getEOF());
+    }
+
+    private static List<List<TokenEntry>> findGroups(MatchAlgorithm matchAlgorithm, Tokens tokens, int min) {
+        final List<List<TokenEntry>> groups = new ArrayList<>();
+        SuffixArrayMatchFinder.findMatches(tokens.getTokens(), min, new MatchCollector(matchAlgorithm) {
+            @Override
+            public void collect(List<TokenEntry> marks) {
+                groups.add(new ArrayList<>(marks));
+            }
+        });
+        return groups;
+    }
+
+    /**
+     * Compares every pair of marks of each group.
+     */
+    private static List<Match> collectPairwise(MatchAlgorithm ma, List<List<TokenEntry>> groups) {
+        final List<Match> matchList = new ArrayList<>();
+        final Map<Integer, Map<Integer, Match>> matchTree = new TreeMap<>();
+        for (List<TokenEntry> marks : groups) {
+            for (int i = 0; i < marks.size() - 1; i++) {
+                final TokenEntry mark1 = marks.get(i);
+                for (int j = i + 1; j < marks.size(); j++) {
+                    final TokenEntry mark2 = marks.get(j);
+                    final int distance = mark2.getIndex() - mark1.getIndex();
+                    if (mark1.getIndex() > 0 && !matchEnded(ma.tokenAt(-1, mark1), ma.tokenAt(-1, mark2))) {
+                        continue;
+                    }
+                    int dupes = 0;
+                    while (!matchEnded(ma.tokenAt(dupes, mark1), ma.tokenAt(dupes, mark2))) {
+                        dupes++;
+                    }
+                    if (dupes < ma.getMinimumTileSize() || dupes > distance) {
+                        continue;
+                    }
+
+                    Map<Integer, Match> matches = matchTree.get(dupes);
+                    if (matches == null) {
+                        matches = new TreeMap<>();
+                        matchTree.put(dupes, matches);
+                    }
+                    final Match matchA = matches.get(mark1.getIndex());
+                    final Match matchB = matches.get(mark2.getIndex());
+                    if (matchA == null && matchB == null) {
+                        final Match match = new Match(dupes, mark1, mark2);
+                        matches.put(mark1.getIndex(), match);
+                        matches.put(mark2.getIndex(), match);
+                        matchList.add(match);
+                    } else if (matchA == null) {
+                        matchB.addTokenEntry(mark1);
+                        matches.put(mark1.getIndex(), matchB);
+                    } else if (matchB == null) {
+                        matchA.addTokenEntry(mark2);
+                        matches.put(mark2.getIndex(), matchA);
+                    }
+                }
+            }
+        }
+        Collections.sort(matchList);
+        return matchList;
+    }
+
+    private static boolean matchEnded(TokenEntry token1, TokenEntry token2) {
+        return token1.getIdentifier() != token2.getIdentifier() || token1 == TokenEntry.EOF
+                || token2 == TokenEntry.EOF;
+    }
+
+    private static List<String> describe(List<Match> matches) {
+        final List<String> descriptions = new ArrayList<>();
+        for (Match match : matches) {
+            final StringBuilder description = new StringBuilder().append(match.getTokenCount()).append(':');
+            for (Mark mark : match) {
+                description.append(' ').append(mark.getToken().getIndex());
+            }
+            descriptions.add(description.toString());
+        }
+        return descriptions;
+    }
+}
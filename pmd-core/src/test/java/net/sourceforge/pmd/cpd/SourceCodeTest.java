@@ -8,6 +8,7 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.junit.Test;
 
@@ -37,6 +38,23 @@ public class SourceCodeTest {
         assertEquals("Line 1" + PMD.EOL + "Line 2", sourceCode.getSlice(1, 2));
     }
 
+    @Test
+    public void testSlicesAreReadAtOnce() throws Exception {
+        SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader(SAMPLE_CODE, "Foo.java"));
+
+        // overlapping slices, the code isn't loaded yet and the reader can be read only once
+        String[] slices = sourceCode.getSlices(new int[] {1, 2, 2, 4}, new int[] {2, 3, 2, 4});
+        assertEquals("Line 1" + PMD.EOL + "Line 2", slices[0]);
+        assertEquals("Line 2" + PMD.EOL + "Line 3", slices[1]);
+        assertEquals("Line 2", slices[2]);
+        assertEquals("Line 4", slices[3]);
+
+        // the same slices from the loaded code
+        sourceCode.getCode();
+        assertEquals(Arrays.asList(slices),
+                Arrays.asList(sourceCode.getSlices(new int[] {1, 2, 2, 4}, new int[] {2, 3, 2, 4})));
+    }
+
     @Test
     public void testEncodingDetectionFromBOM() throws Exception {
         FileCodeLoader loader = new SourceCode.FileCodeLoader(new File(BASE_RESOURCE_PATH + "file_with_utf8_bom.java"),
@@ -0,0 +1,107 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SuffixArrayMatchFinderTest {
+
+    @Before
+    public void setUp() {
+        TokenEntry.clearImages();
+    }
+
+    @Test
+    public void testFindsSameMatchesAsHashing() {
+        final Random random = new Random(42);
+        final Tokens tokens = new Tokens();
+        for (int file = 0; file < 20; file++) {
+            addFile(tokens, "File" + file + ".java", randomImages(random, 50 + random.nextInt(200), 4));
+        }
+
+        for (int min = 2; min < 10; min++) {
+            assertEquals("Matches differ for minimum tile size " + min,
+                    describe(findMatches(tokens, min, false)), describe(findMatches(tokens, min, true)));
+        }
+    }
+
+    @Test
+    public void testMatchesDontSpanFiles() {
+        final Tokens tokens = new Tokens();
+        addFile(tokens, "Foo.java", "a", "b", "c");
+        addFile(tokens, "Bar.java", "d", "e", "a", "b");
+        addFile(tokens, "Baz.java", "c", "d", "e");
+
+        final List<Match> matches = findMatches(tokens, 3, true);
+        assertEquals(Collections.emptyList(), matches);
+    }
+
+    @Test
+    public void testRepeatedSequence() {
+        final Tokens tokens = new Tokens();
+        addFile(tokens, "Foo.java", "a", "b", "c", "d", "x", "a", "b", "c", "d", "y", "a", "b", "c", "d");
+
+        final Iterator<Match> matches = findMatches(tokens, 4, true).iterator();
+        final Match match = matches.next();
+        assertFalse(matches.hasNext());
+        assertEquals(4, match.getTokenCount());
+        assertEquals(3, match.getMarkCount());
+    }
+
+    private static List<String> randomImages(Random random, int count, int alphabet) {
+        final List<String> images = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            images.add(String.valueOf((char) ('a' + random.nextInt(alphabet))));
+        }
+        return images;
+    }
+
+    private static void addFile(Tokens tokens, String fileName, String... images) {
+        addFile(tokens, fileName, Arrays.asList(images));
+    }
+
+    private static void addFile(Tokens tokens, String fileName, List<String> images) {
+        int line = 1;
+        for (String image : images) {
+            tokens.add(new TokenEntry(image, fileName, line++));
+        }
+        tokens.add(TokenEntry.getEOF());
+    }
+
+    private static List<Match> findMatches(Tokens tokens, int min, boolean useSuffixArray) {
+        final MatchAlgorithm matchAlgorithm = new MatchAlgorithm(Collections.<String, SourceCode>emptyMap(), tokens,
+                min, new CPDNullListener(), useSuffixArray);
+        matchAlgorithm.findMatches();
+        final List<Match> matches = new ArrayList<>();
+        for (Iterator<Match> it = matchAlgorithm.matches(); it.hasNext();) {
+            matches.add(it.next());
+        }
+        return matches;
+    }
+
+    private static List<String> describe(List<Match> matches) {
+        final List<String> descriptions = new ArrayList<>();
+        for (Match match : matches) {
+            final StringBuilder description = new StringBuilder().append(match.getTokenCount()).append(':');
+            for (Mark mark : match) {
+                description.append(' ').append(mark.getToken().getIndex());
+            }
+            descriptions.add(description.toString());
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+}
@@ -20,6 +20,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import net.sourceforge.pmd.PMD;
 import net.sourceforge.pmd.cpd.renderer.CPDRenderer;
 
 /**
@@ -126,6 +127,26 @@ public class XMLRendererTest {
         }
     }
 
+    @Test
+    public void testCodeFragmentsOfSameFile() throws Exception {
+        CPDRenderer renderer = new XMLRenderer();
+        SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader("a\nb\nc\nd\ne"));
+        List<Match> list = new ArrayList<>();
+        list.add(new Match(75, createMark("public", "/var/Foo.java", 3, 2, sourceCode),
+                createMark("void", "/var/Bar.java", 1, 2, "x\ny")));
+        list.add(new Match(50, createMark("public", "/var/Foo.java", 1, 3, sourceCode),
+                createMark("void", "/var/Bar.java", 5, 3, "x\ny")));
+
+        StringWriter sw = new StringWriter();
+        renderer.render(list.iterator(), sw);
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(sw.toString().getBytes(ENCODING)));
+        NodeList fragments = doc.getElementsByTagName("codefragment");
+        assertEquals(2, fragments.getLength());
+        assertEquals("c" + PMD.EOL + "d", fragments.item(0).getTextContent());
+        assertEquals("a" + PMD.EOL + "b" + PMD.EOL + "c", fragments.item(1).getTextContent());
+    }
+
     @Test
     public void testRendererEncodedPath() throws IOException {
         CPDRenderer renderer = new XMLRenderer();
@@ -143,10 +164,14 @@ public class XMLRendererTest {
     }
 
     private Mark createMark(String image, String tokenSrcID, int beginLine, int lineCount, String code) {
+        return createMark(image, tokenSrcID, beginLine, lineCount, new SourceCode(new SourceCode.StringCodeLoader(code)));
+    }
+
+    private Mark createMark(String image, String tokenSrcID, int beginLine, int lineCount, SourceCode code) {
         Mark result = new Mark(new TokenEntry(image, tokenSrcID, beginLine));
 
         result.setLineCount(lineCount);
-        result.setSourceCode(new SourceCode(new SourceCode.StringCodeLoader(code)));
+        result.setSourceCode(code);
         return result;
     }
 
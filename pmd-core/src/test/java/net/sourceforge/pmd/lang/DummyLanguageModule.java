@@ -17,6 +17,7 @@ import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.lang.ast.DummyNode;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.ParseException;
+import net.sourceforge.pmd.lang.ast.xpath.DefaultASTXPathHandler;
 import net.sourceforge.pmd.lang.rule.AbstractRuleChainVisitor;
 import net.sourceforge.pmd.lang.rule.AbstractRuleViolationFactory;
 import net.sourceforge.pmd.lang.rule.ParametricRuleViolation;
@@ -67,6 +68,11 @@ public class DummyLanguageModule extends BaseLanguageModule {
             return new RuleViolationFactory();
         }
 
+        @Override
+        public XPathHandler getXPathHandler() {
+            return new DefaultASTXPathHandler();
+        }
+
         @Override
         public Parser getParser(ParserOptions parserOptions) {
             return new AbstractParser(parserOptions) {
@@ -64,6 +64,37 @@ public class AttributeAxisIteratorTest {
         assertEquals(DummyNodeWithEnum.MyEnum.FOO, atts.get("Enum").getValue());
     }
 
+    @Test
+    public void testAttributeValues() {
+        DummyNode dummyNode = new DummyNodeWithEnum(1);
+        dummyNode.testingOnlySetBeginLine(3);
+        dummyNode.setImage("foo");
+
+        Map<String, Attribute> atts = toMap(new AttributeAxisIterator(dummyNode));
+        assertEquals(3, atts.get("BeginLine").getValue());
+        assertEquals("3", atts.get("BeginLine").getStringValue());
+        assertEquals(Boolean.FALSE, atts.get("FindBoundary").getValue());
+        assertEquals("foo", atts.get("Image").getValue());
+        assertEquals("FOO", atts.get("Enum").getStringValue());
+    }
+
+    @Test
+    public void testAttributeOfFailingAccessor() {
+        Map<String, Attribute> atts = toMap(new AttributeAxisIterator(new DummyNodeWithFailingAttribute(1)));
+        assertEquals(null, atts.get("Failing").getValue());
+        assertEquals("", atts.get("Failing").getStringValue());
+    }
+
+    @Test
+    public void testAttributeAxisIteratorWithName() {
+        DummyNode dummyNode = new DummyNodeWithEnum(1);
+        dummyNode.setImage("foo");
+
+        Map<String, Attribute> atts = toMap(new AttributeAxisIterator(dummyNode, "Image"));
+        assertEquals(1, atts.size());
+        assertEquals("foo", atts.get("Image").getValue());
+        assertEquals(0, toMap(new AttributeAxisIterator(dummyNode, "Unknown")).size());
+    }
 
     private Map<String, Attribute> toMap(AttributeAxisIterator it) {
         Map<String, Attribute> atts = new HashMap<>();
@@ -88,4 +119,15 @@ public class AttributeAxisIteratorTest {
             return MyEnum.FOO;
         }
     }
+
+    public static class DummyNodeWithFailingAttribute extends DummyNode {
+
+        public DummyNodeWithFailingAttribute(int id) {
+            super(id);
+        }
+
+        public String getFailing() {
+            throw new IllegalStateException("expected");
+        }
+    }
 }
@@ -4,10 +4,14 @@
 
 package net.sourceforge.pmd.lang.ast.xpath;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
+import java.util.Iterator;
+
 import org.junit.Test;
 
 import net.sourceforge.pmd.lang.ast.DummyNode;
@@ -42,4 +46,39 @@ public class DocumentNavigatorTest {
         n.jjtSetParent(root);
         assertSame(root, nav.getDocumentNode(n));
     }
+
+    @Test
+    public void getAttributeAxisIteratorByName() {
+        DocumentNavigator nav = new DocumentNavigator();
+        DummyNode n = new DummyNode(1);
+        n.testingOnlySetBeginLine(42);
+
+        Iterator<Attribute> attributes = nav.getAttributeAxisIterator(n, "BeginLine", null, null);
+        Attribute attribute = attributes.next();
+        assertEquals("BeginLine", attribute.getName());
+        assertEquals("42", attribute.getStringValue());
+        assertFalse(attributes.hasNext());
+
+        assertFalse(nav.getAttributeAxisIterator(n, "Unknown", null, null).hasNext());
+        assertFalse(nav.getAttributeAxisIterator(n, "BeginLine", "p", "http://example.com").hasNext());
+    }
+
+    @Test
+    public void getChildAxisIteratorByName() {
+        DocumentNavigator nav = new DocumentNavigator();
+        Node root = new DummyRootNode(1);
+        Node first = new DummyNode(2);
+        Node second = new DummyNode(3);
+        root.jjtAddChild(first, 0);
+        root.jjtAddChild(second, 1);
+        first.jjtSetParent(root);
+        second.jjtSetParent(root);
+
+        Iterator<Node> children = nav.getChildAxisIterator(root, first.getXPathNodeName(), null, null);
+        assertSame(first, children.next());
+        assertSame(second, children.next());
+        assertFalse(children.hasNext());
+
+        assertFalse(nav.getChildAxisIterator(root, "Unknown", null, null).hasNext());
+    }
 }
@@ -0,0 +1,224 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jaxen.BaseXPath;
+import org.jaxen.JaxenException;
+import org.jaxen.SimpleVariableContext;
+import org.junit.Test;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.ast.DummyNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.lang.ast.xpath.DocumentNavigator;
+import net.sourceforge.pmd.lang.rule.XPathRule;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+import net.sourceforge.pmd.properties.PropertyFactory;
+
+public class JaxenXPathRuleQueryTest {
+
+    private static final PropertyDescriptor<Integer> COUNT = PropertyFactory.intProperty("count").defaultValue(1)
+            .desc("a number").build();
+
+    @Test
+    public void testSameResultsAsUnoptimizedQuery() throws JaxenException {
+        final Node root = createTree("y");
+        final String[] queries = {
+            "//Method[@Image = 'a' and Name]",
+            "//Method[.//Name or @Image = 'c']",
+            "//Method[count(Name) > 0]",
+            "//Method[count(Name) = 0]",
+            "//Class[count(.//Name) = 0]",
+            "//Class[count(.//Field) > 0 and //Method/@Image = 'c' and @Image = 'Inner']",
+            "//Class[count(Method) >= 1][0 < count(Field)]",
+            "//Class[count(Method) > 1]",
+            "//Class[not(.//Field[@Image = 'y'])]",
+            "//Class[Method[1]/@Image = 'b']",
+            "//Class[Method[last()]]",
+            "//Class/Method[position() > 1][@Image != 'c']",
+            "//Class/Method[@Image != 'c'][position() > 1]",
+            "//Class/Method[@Image != 'c'][$count]",
+            "//Class[following-sibling::Method[position() = 1]/@Image = 'c']",
+            "//Method[@Image = //Field/@Image or @Image = 'b']",
+            "//Method[Name/@Image = /Root/Class/Method/@Image][@Image = 'a' or @Image = 'c']",
+            "//Method[boolean(ancestor::Class[Field/@Image = 'y'])]",
+            "//Method[not(ancestor::Class[@Image = 'Inner']) and -1 < 0]",
+        };
+        for (String xpath : queries) {
+            final List<Node> expected = new ArrayList<>();
+            for (Object node : createUnoptimizedQuery(xpath).selectNodes(root)) {
+                expected.add((Node) node);
+            }
+            final JaxenXPathRuleQuery query = createQuery(xpath);
+            final List<Node> actual = new ArrayList<>();
+            if (query.getRuleChainVisits().isEmpty()) {
+                actual.addAll(query.evaluate(root, createContext()));
+            } else {
+                for (Node node : findNodes(root)) {
+                    if (query.getRuleChainVisits().contains(node.getXPathNodeName())) {
+                        actual.addAll(query.evaluate(node, createContext()));
+                    }
+                }
+            }
+            assertEquals(xpath, describe(expected), describe(sortInDocumentOrder(root, actual)));
+        }
+    }
+
+    @Test
+    public void testConstantsOfSeveralFiles() {
+        final JaxenXPathRuleQuery query = createQuery("//Method[@Image = //Field/@Image]");
+
+        assertEquals(1, query.evaluate(createTree("z"), createContext()).size());
+        assertEquals(2, query.evaluate(createTree("a"), createContext()).size());
+        assertEquals(1, query.evaluate(createTree("z"), createContext()).size());
+    }
+
+    @Test
+    public void testDocumentIsReleasedWhenTheFileEnds() {
+        final Node root = createTree("z");
+        createQuery("//Method[@Image = //Field/@Image]").evaluate(root, createContext());
+        assertSame(root, JaxenQueryOptimizer.getCurrentDocument());
+
+        new XPathRule().end(new RuleContext());
+        assertNull(JaxenQueryOptimizer.getCurrentDocument());
+    }
+
+    @Test
+    public void testOptimizedText() throws JaxenException {
+        assertOptimizedText("//A[@Image = 'a' and pmd-java:typeIs('Foo')]",
+                "//A[pmd-java:typeIs('Foo') and @Image = 'a']");
+        assertOptimizedText("//A[@Image = 'a' or .//B]", "//A[.//B or @Image = 'a']");
+        assertOptimizedText("//A[@Image = 'a'][.//B]", "//A[.//B][@Image = 'a']");
+        assertOptimizedText("//A[ancestor::B][@Image = 'a']", "//A[ancestor::B][@Image = 'a']");
+        assertOptimizedText("//A[B/@Image = 'b' and @Image = 'a']", "//A[B/@Image = 'b' and @Image = 'a']");
+        assertOptimizedText("//A[boolean(.//B)]", "//A[count(.//B) > 0]");
+        assertOptimizedText("//A[not(.//B)]", "//A[count(.//B) = 0]");
+        assertOptimizedText("//A[count(B) > 0]", "//A[count(B) > 0]");
+        assertOptimizedText("//A[count(*) = 0]", "//A[count(*) = 0]");
+        assertOptimizedText("//A[//B and pmd-java:typeIs('Foo')]", "//A[//B and pmd-java:typeIs('Foo')]");
+        assertOptimizedText("//A[//B][pmd-java:typeIs('Foo')]", "//A[//B][pmd-java:typeIs('Foo')]");
+        assertOptimizedText("//A[(((@Image = 'a' and pmd-java:typeIs('Foo')) and //B) and @Image = 'b') and .//C]",
+                "//A[pmd-java:typeIs('Foo') and @Image = 'a' and //B and .//C and @Image = 'b']");
+        assertOptimizedText("//A[.//B][1]", "//A[.//B][1]");
+        assertOptimizedText("//A[.//B][$count]", "//A[.//B][$count]");
+        assertOptimizedText("//A[count(B) > 1]", "//A[count(B) > 1]");
+    }
+
+    private static void assertOptimizedText(String expected, String xpath) throws JaxenException {
+        final BaseXPath optimized = createUnoptimizedQuery(xpath);
+        JaxenQueryOptimizer.optimize(optimized);
+        assertEquals(xpath, createUnoptimizedQuery(expected).getRootExpr().getText(),
+                optimized.getRootExpr().getText());
+    }
+
+    private static BaseXPath createUnoptimizedQuery(String xpath) throws JaxenException {
+        final BaseXPath query = new BaseXPath(xpath, new DocumentNavigator());
+        // like the properties of the rule query
+        final SimpleVariableContext variables = new SimpleVariableContext();
+        variables.setVariableValue("count", "1");
+        query.setVariableContext(variables);
+        return query;
+    }
+
+    private static JaxenXPathRuleQuery createQuery(String xpath) {
+        final JaxenXPathRuleQuery query = new JaxenXPathRuleQuery();
+        query.setVersion(XPathRuleQuery.XPATH_1_0);
+        query.setXPath(xpath);
+        final Map<PropertyDescriptor<?>, Object> properties = new HashMap<>();
+        properties.put(XPathRule.XPATH_DESCRIPTOR, xpath);
+        properties.put(COUNT, 1);
+        query.setProperties(properties);
+        return query;
+    }
+
+    private static RuleContext createContext() {
+        final RuleContext context = new RuleContext();
+        context.setLanguageVersion(LanguageRegistry.getLanguage(DummyLanguageModule.NAME).getDefaultVersion());
+        return context;
+    }
+
+    private static Node createTree(String innerFieldName) {
+        final Node root = new NamedRootNode();
+        final Node outer = addChild(root, "Class", "Outer");
+        addChild(outer, "Field", "x");
+        addChild(addChild(outer, "Method", "a"), "Name", "a");
+        final Node inner = addChild(outer, "Class", "Inner");
+        addChild(addChild(inner, "Method", "b"), "Name", "b");
+        addChild(inner, "Field", innerFieldName);
+        addChild(addChild(inner, "Method", "y"), "Name", "1");
+        addChild(addChild(outer, "Method", "c"), "Name", "c");
+        addChild(outer, "Method", "x");
+        return root;
+    }
+
+    private static Node addChild(Node parent, String name, String image) {
+        final Node child = new NamedNode(name, image);
+        child.jjtSetParent(parent);
+        parent.jjtAddChild(child, parent.jjtGetNumChildren());
+        return child;
+    }
+
+    private static List<Node> findNodes(Node node) {
+        final List<Node> nodes = new ArrayList<>();
+        nodes.add(node);
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            nodes.addAll(findNodes(node.jjtGetChild(i)));
+        }
+        return nodes;
+    }
+
+    private static List<Node> sortInDocumentOrder(Node root, List<Node> nodes) {
+        final List<Node> sorted = new ArrayList<>();
+        for (Node node : findNodes(root)) {
+            for (Node n : nodes) {
+                if (n == node) {
+                    sorted.add(n);
+                }
+            }
+        }
+        return sorted;
+    }
+
+    private static List<String> describe(List<Node> nodes) {
+        final List<String> descriptions = new ArrayList<>();
+        for (Node node : nodes) {
+            descriptions.add(node.getXPathNodeName() + ':' + node.getImage());
+        }
+        return descriptions;
+    }
+
+    private static class NamedNode extends DummyNode {
+        private final String name;
+
+        NamedNode(String name, String image) {
+            super(0);
+            this.name = name;
+            setImage(image);
+        }
+
+        @Override
+        public String getXPathNodeName() {
+            return name;
+        }
+    }
+
+    private static class NamedRootNode extends NamedNode implements RootNode {
+        NamedRootNode() {
+            super("Root", null);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.ast.DummyNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.XPathRule;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+import net.sourceforge.pmd.properties.PropertyFactory;
+
+public class SaxonXPathRuleQueryTest {
+
+    private static final PropertyDescriptor<Integer> COUNT = PropertyFactory.intProperty("count").defaultValue(1)
+            .desc("a number").build();
+    private static final PropertyDescriptor<Boolean> FLAG = PropertyFactory.booleanProperty("flag").defaultValue(true)
+            .desc("a flag").build();
+    private static final PropertyDescriptor<List<String>> NAMES = PropertyFactory.stringListProperty("names")
+            .defaultValues("a", "c").desc("some names").build();
+
+    @Test
+    public void testRuleChainVisits() {
+        assertEquals(Collections.singletonList("Method"), createQuery("//Method[@Image = 'a']").getRuleChainVisits());
+        assertEquals(new HashSet<>(Arrays.asList("Method", "Field")),
+                new HashSet<>(createQuery("//Method | //Field[Name]").getRuleChainVisits()));
+        assertEquals(Collections.singletonList("Class"), createQuery("//Class[@Image = 'Foo']/Method")
+                .getRuleChainVisits());
+        assertEquals(Collections.singletonList("Method"), createQuery("//Method[@Image = string($count)]")
+                .getRuleChainVisits());
+        // the properties have a static type, so these filters aren't positional
+        assertEquals(Collections.singletonList("Method"), createQuery("//Method[$flag]").getRuleChainVisits());
+        assertEquals(Collections.singletonList("Method"), createQuery("//Method[$flag][@Image = $names]")
+                .getRuleChainVisits());
+    }
+
+    @Test
+    public void testNoRuleChainVisits() {
+        // positional filters, which depend on all nodes
+        assertNoRuleChainVisits("//Method[1]");
+        assertNoRuleChainVisits("(//Method)[last()]");
+        assertNoRuleChainVisits("(//Method)[$count]");
+        // aggregates, and other paths
+        assertNoRuleChainVisits("count(//Method)");
+        assertNoRuleChainVisits("/Root/Class");
+        assertNoRuleChainVisits(".//Method");
+        assertNoRuleChainVisits("//*[@Image = 'a']");
+        // steps, which could select a node from more than one node
+        assertNoRuleChainVisits("//Class//Method");
+        assertNoRuleChainVisits("//Method/..");
+        assertNoRuleChainVisits("//Method/ancestor::Class");
+        assertNoRuleChainVisits("//Class/Method | //Method");
+    }
+
+    @Test
+    public void testSameResultsOnRuleChain() {
+        final Node root = createTree();
+        final String[] queries = {
+            "//Method",
+            "//Method[@Image = 'a']",
+            "//Method[@Image = string($count)]",
+            "//Method | //Field",
+            "//Field[@Image = 'x'] | //Method[@Image = 'b'] | //Field[@Image = 'y']",
+            "//Method[@Image = 'a'] | //Method[@Image != 'c']",
+            "//Class[@Image = 'Inner']/Method",
+            "//Class/Method[1]",
+            "//Class/Method[last()]/Name",
+            "//Class/Method[position() > 1]",
+            "//Class[Field]",
+            "//Method[count(//Field) > 1]",
+            "//Method[not(ancestor::Class[@Image = 'Inner'])]",
+            "//Method[following-sibling::Method]",
+            "//Method[$flag]",
+            "//Method[not($flag)] | //Field[$flag]",
+            "//Method[@Image = $names]",
+        };
+        for (String xpath : queries) {
+            final SaxonXPathRuleQuery query = createQuery(xpath);
+            assertTrue(xpath, !query.getRuleChainVisits().isEmpty());
+
+            final List<Node> expected = createQuery(xpath).evaluate(root, null);
+            final List<Node> actual = new ArrayList<>();
+            for (String nodeName : query.getRuleChainVisits()) {
+                for (Node node : findNodes(root, nodeName)) {
+                    actual.addAll(query.evaluate(node, null));
+                }
+            }
+            assertEquals(xpath, describe(expected), describe(sortInDocumentOrder(root, actual)));
+        }
+    }
+
+    @Test
+    public void testUnionOfNodesOfSameType() {
+        final Node root = createTree();
+
+        assertEquals(Arrays.asList("Method:a", "Method:b", "Method:1", "Method:c"),
+                describe(createQuery("(//Class/Method[@Image = 'a'] | //Class/Method[@Image != 'a'])").evaluate(root,
+                        null)));
+        assertEquals(Arrays.asList("Class:Inner", "Method:b", "Method:1", "Method:c"),
+                describe(createQuery("(//Method[@Image = 'c'] | //Class[@Image = 'Inner']/descendant-or-self::*"
+                        + "[self::Class or self::Method])").evaluate(root, null)));
+    }
+
+    @Test
+    public void testAttributeSteps() {
+        final Node root = createTree();
+
+        assertEquals(Arrays.asList("Method:c"), describe(createQuery("//Method[@*[string(.) = 'c']]")
+                .evaluate(root, null)));
+        assertEquals(Arrays.asList("Method:b"), describe(createQuery("//Method[string(attribute::Image) = 'b']")
+                .evaluate(root, null)));
+        assertEquals(Arrays.asList("Class:Inner"), describe(createQuery("//Class[Method/@Image = '1' and @Image]")
+                .evaluate(root, null)));
+        assertEquals(Collections.emptyList(), describe(createQuery("//Method[@Unknown or @Image = 'zzz']")
+                .evaluate(root, null)));
+    }
+
+    @Test
+    public void testTypeErrorOfUnevaluatedVariable() {
+        final Node root = createTree();
+
+        // a static type error, but the comparison is never evaluated
+        assertEquals(Collections.emptyList(), describe(createQuery("//Method[@Image = 'zzz' and $flag = 'true']")
+                .evaluate(root, null)));
+    }
+
+    @Test
+    public void testEvaluationOnSeveralFiles() {
+        final Node first = createTree();
+        final Node second = createTree();
+        final SaxonXPathRuleQuery query = createQuery("/Root/Class/Class/following-sibling::Method");
+
+        for (int i = 0; i < 2; i++) {
+            assertSame(second.jjtGetChild(0).jjtGetChild(3), query.evaluate(second, null).get(0));
+            assertSame(first.jjtGetChild(0).jjtGetChild(3), query.evaluate(first, null).get(0));
+        }
+    }
+
+    @Test
+    public void testDocumentIsReleasedWhenTheFileEnds() {
+        final Node root = createTree();
+        createQuery("//Method").evaluate(root, null);
+        assertSame(root, SaxonXPathRuleQuery.getCurrentDocument().getRootAstNode());
+
+        new XPathRule().end(new RuleContext());
+        assertNull(SaxonXPathRuleQuery.getCurrentDocument());
+    }
+
+    private static void assertNoRuleChainVisits(String xpath) {
+        assertEquals(xpath, Collections.emptyList(), createQuery(xpath).getRuleChainVisits());
+    }
+
+    private static SaxonXPathRuleQuery createQuery(String xpath) {
+        final SaxonXPathRuleQuery query = new SaxonXPathRuleQuery();
+        query.setVersion(XPathRuleQuery.XPATH_2_0);
+        query.setXPath(xpath);
+        final Map<PropertyDescriptor<?>, Object> properties = new HashMap<>();
+        properties.put(COUNT, 1);
+        properties.put(FLAG, true);
+        properties.put(NAMES, Arrays.asList("a", "c"));
+        query.setProperties(properties);
+        return query;
+    }
+
+    private static Node createTree() {
+        final Node root = new NamedNode("Root", null);
+        final Node outer = addChild(root, "Class", "Outer");
+        addChild(outer, "Field", "x");
+        addChild(addChild(outer, "Method", "a"), "Name", "a");
+        final Node inner = addChild(outer, "Class", "Inner");
+        addChild(addChild(inner, "Method", "b"), "Name", "b");
+        addChild(inner, "Field", "y");
+        addChild(addChild(inner, "Method", "1"), "Name", "1");
+        addChild(addChild(outer, "Method", "c"), "Name", "c");
+        return root;
+    }
+
+    private static Node addChild(Node parent, String name, String image) {
+        final Node child = new NamedNode(name, image);
+        child.jjtSetParent(parent);
+        parent.jjtAddChild(child, parent.jjtGetNumChildren());
+        return child;
+    }
+
+    private static List<Node> findNodes(Node node, String name) {
+        final List<Node> nodes = new ArrayList<>();
+        if (name.equals(node.getXPathNodeName())) {
+            nodes.add(node);
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            nodes.addAll(findNodes(node.jjtGetChild(i), name));
+        }
+        return nodes;
+    }
+
+    private static List<Node> sortInDocumentOrder(Node root, List<Node> nodes) {
+        final List<Node> sorted = new ArrayList<>();
+        for (Node node : findNodes(root)) {
+            for (Node n : nodes) {
+                if (n == node) {
+                    sorted.add(n);
+                }
+            }
+        }
+        return sorted;
+    }
+
+    private static List<Node> findNodes(Node node) {
+        final List<Node> nodes = new ArrayList<>();
+        nodes.add(node);
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            nodes.addAll(findNodes(node.jjtGetChild(i)));
+        }
+        return nodes;
+    }
+
+    private static List<String> describe(List<Node> nodes) {
+        final List<String> descriptions = new ArrayList<>();
+        for (Node node : nodes) {
+            descriptions.add(node.getXPathNodeName() + ':' + node.getImage());
+        }
+        return descriptions;
+    }
+
+    private static class NamedNode extends DummyNode {
+        private final String name;
+
+        NamedNode(String name, String image) {
+            // all nodes have the same id, which must not affect the document order
+            super(0);
+            this.name = name;
+            setImage(image);
+        }
+
+        @Override
+        public String getXPathNodeName() {
+            return name;
+        }
+    }
+}
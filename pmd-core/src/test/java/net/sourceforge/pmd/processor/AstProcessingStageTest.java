@@ -0,0 +1,73 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.SourceCodeProcessor;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.ast.Node;
+
+public class AstProcessingStageTest {
+
+    @Test
+    public void testStagesAreRunInOrderWhenRequired() throws Exception {
+        List<String> executed = new ArrayList<>();
+        SourceCodeProcessor processor = new SourceCodeProcessor(new PMDConfiguration(),
+                Arrays.asList(new RecordingStage("first", true, executed),
+                              new RecordingStage("skipped", false, executed),
+                              new RecordingStage("second", true, executed)));
+
+        RuleSets ruleSets = new RuleSets(new RuleSetFactory().createRuleSet("rulesets/MultiThreadProcessorTest/dysfunctional.xml"));
+        RuleContext ctx = new RuleContext();
+        ctx.setSourceCodeFilename("sample.dummy");
+        ctx.setSourceCodeFile(new File("sample.dummy"));
+
+        processor.processSourceCode(new StringReader("ABC"), ruleSets, ctx);
+
+        Assert.assertEquals(Arrays.asList("first", "second"), executed);
+    }
+
+    private static class RecordingStage implements AstProcessingStage {
+        private final String name;
+        private final boolean required;
+        private final List<String> executed;
+
+        RecordingStage(String name, boolean required, List<String> executed) {
+            this.name = name;
+            this.required = required;
+            this.executed = executed;
+        }
+
+        @Override
+        public TimedOperationCategory getCategory() {
+            return TimedOperationCategory.UNACCOUNTED;
+        }
+
+        @Override
+        public boolean isRequired(RuleSets ruleSets, Language language) {
+            return required;
+        }
+
+        @Override
+        public void processAST(Node rootNode, LanguageVersion languageVersion, ClassLoader classLoader) {
+            Assert.assertNotNull(rootNode);
+            executed.add(name);
+        }
+    }
+}
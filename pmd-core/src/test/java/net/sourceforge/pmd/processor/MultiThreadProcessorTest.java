@@ -26,6 +26,7 @@ import net.sourceforge.pmd.ThreadSafeReportListener;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
 import net.sourceforge.pmd.renderers.AbstractAccumulatingRenderer;
+import net.sourceforge.pmd.renderers.AbstractIncrementingRenderer;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.stat.Metric;
 import net.sourceforge.pmd.util.datasource.DataSource;
@@ -85,6 +86,122 @@ public class MultiThreadProcessorTest {
         Assert.assertEquals("Missing violation", 1, reportListener.violations.get());
     }
 
+    @Test
+    public void testFilesInFlightAreBounded() throws IOException {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setRuleSets("rulesets/MultiThreadProcessorTest/dysfunctional.xml");
+        configuration.setThreads(2);
+        configuration.setMaxFilesInFlight(3);
+        files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            files.add(new StringDataSource("file" + i + ".dummy", "ABC"));
+        }
+        ctx = new RuleContext();
+        processor = new MultiThreadProcessor(configuration);
+
+        final InFlightRenderer renderer = new InFlightRenderer();
+        renderer.start();
+        processor.processFiles(new RuleSetFactory(), files, ctx, Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        Assert.assertEquals("Not all files have been rendered", files.size(), renderer.rendered.get());
+        Assert.assertTrue("Too many files in flight: " + renderer.maxInFlight.get(),
+                renderer.maxInFlight.get() <= 3);
+    }
+
+    @Test
+    public void testOrderedReportsWithLargestFilesFirst() throws IOException {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setRuleSets("rulesets/MultiThreadProcessorTest/dysfunctional.xml");
+        configuration.setThreads(4);
+        configuration.setLargestFilesFirst(true);
+        files = new ArrayList<>();
+        List<String> expectedOrder = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            // the first files take the longest, so they complete last
+            files.add(new SlowFailingDataSource("file" + i + ".dummy", 10 * (12 - i)));
+            expectedOrder.add("file" + i + ".dummy");
+        }
+        ctx = new RuleContext();
+        processor = new MultiThreadProcessor(configuration);
+
+        final OrderRenderer renderer = new OrderRenderer();
+        renderer.start();
+        processor.processFiles(new RuleSetFactory(), files, ctx, Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        Assert.assertEquals(expectedOrder, renderer.renderedFiles);
+    }
+
+    @Test
+    public void testSlowFirstFileBoundsBufferedReports() throws IOException {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setRuleSets("rulesets/MultiThreadProcessorTest/dysfunctional.xml");
+        configuration.setThreads(2);
+        configuration.setMaxFilesInFlight(6);
+        configuration.setLargestFilesFirst(true);
+        AtomicInteger finished = new AtomicInteger(0);
+        SlowFailingDataSource largest = new SlowFailingDataSource("file0.dummy", 1000, finished);
+        files = new ArrayList<>();
+        files.add(largest);
+        List<String> expectedOrder = new ArrayList<>();
+        expectedOrder.add("file0.dummy");
+        for (int i = 1; i <= 20; i++) {
+            files.add(new SlowFailingDataSource("file" + i + ".dummy", 5, finished));
+            expectedOrder.add("file" + i + ".dummy");
+        }
+        ctx = new RuleContext();
+        processor = new MultiThreadProcessor(configuration);
+
+        final OrderRenderer renderer = new OrderRenderer();
+        renderer.start();
+        processor.processFiles(new RuleSetFactory(), files, ctx, Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        // the other thread kept processing files while the largest one was analyzed,
+        // but their buffered reports counted as in flight, so it stopped at the limit
+        Assert.assertEquals(5, largest.finishedBefore);
+        Assert.assertEquals(expectedOrder, renderer.renderedFiles);
+    }
+
+    /**
+     * A data source, which fails after some time, so that the file name
+     * ends up in the report as a processing error.
+     */
+    private static class SlowFailingDataSource implements DataSource {
+        private final String name;
+        private final long delay;
+        private final AtomicInteger finished;
+        /** The number of data sources sharing the same counter, which failed before this one. */
+        private volatile int finishedBefore;
+
+        SlowFailingDataSource(String name, long delay) {
+            this(name, delay, new AtomicInteger(0));
+        }
+
+        SlowFailingDataSource(String name, long delay, AtomicInteger finished) {
+            this.name = name;
+            this.delay = delay;
+            this.finished = finished;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finishedBefore = finished.getAndIncrement();
+            throw new IOException("failing on purpose");
+        }
+
+        @Override
+        public String getNiceFileName(boolean shortNames, String inputFileName) {
+            return name;
+        }
+    }
+
     private static class StringDataSource implements DataSource {
         private final String data;
         private final String name;
@@ -165,6 +282,70 @@ public class MultiThreadProcessorTest {
         }
     }
     
+    /**
+     * Tracks how many files have been started but whose report has not
+     * been rendered yet. The first report is the base report.
+     */
+    private static class InFlightRenderer extends AbstractIncrementingRenderer {
+        private final AtomicInteger started = new AtomicInteger(0);
+        private final AtomicInteger rendered = new AtomicInteger(-1);
+        private final AtomicInteger maxInFlight = new AtomicInteger(0);
+
+        /* default */ InFlightRenderer() {
+            super("inflight", "Counts files in flight");
+        }
+
+        @Override
+        public String defaultFileExtension() {
+            return null;
+        }
+
+        @Override
+        public void startFileAnalysis(DataSource dataSource) {
+            int inFlight = started.incrementAndGet() - Math.max(0, rendered.get());
+            int max;
+            do {
+                max = maxInFlight.get();
+            } while (inFlight > max && !maxInFlight.compareAndSet(max, inFlight));
+        }
+
+        @Override
+        public void renderFileReport(Report report) {
+            rendered.incrementAndGet();
+        }
+
+        @Override
+        public void renderFileViolations(Iterator<RuleViolation> violations) {
+            // not used
+        }
+    }
+
+    private static class OrderRenderer extends AbstractIncrementingRenderer {
+        private final List<String> renderedFiles = new ArrayList<>();
+
+        /* default */ OrderRenderer() {
+            super("order", "Records the order of the file reports");
+        }
+
+        @Override
+        public String defaultFileExtension() {
+            return null;
+        }
+
+        @Override
+        public void renderFileReport(Report report) {
+            Iterator<Report.ProcessingError> errors = report.errors();
+            while (errors.hasNext()) {
+                renderedFiles.add(errors.next().getFile());
+            }
+        }
+
+        @Override
+        public void renderFileViolations(Iterator<RuleViolation> violations) {
+            // not used
+        }
+    }
+
     private static class SimpleRenderer extends AbstractAccumulatingRenderer {
 
         /* default */ SimpleRenderer(String name, String description) {
@@ -0,0 +1,205 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClasspathIndexTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File indexFile;
+    private File jarFile;
+    private File classesDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        indexFile = new File(tempFolder.getRoot(), "pmd-classpath.index");
+        jarFile = new File(tempFolder.getRoot(), "lib.jar");
+        writeJar(jarFile, "foo/Bar.class", "foo/Bar$Inner.class", "META-INF/versions/9/foo/Baz.class",
+                "foo/readme.txt");
+        classesDirectory = tempFolder.newFolder("classes");
+    }
+
+    @Test
+    public void testIndexContainsClassesOfJars() throws IOException {
+        final ClasspathIndex index = ClasspathIndex.forClasspath(indexFile, jarFile.toURI().toURL());
+
+        assertTrue(index.mayContain("foo/Bar.class"));
+        assertTrue(index.mayContain("foo/Bar$Inner.class"));
+        assertTrue("Multi-release classes are found by their unversioned name", index.mayContain("foo/Baz.class"));
+        assertFalse(index.mayContain("foo/Other.class"));
+        assertFalse(index.mayContain("java/lang/String.class"));
+    }
+
+    @Test
+    public void testIndexLooksUpClassesOfDirectories() throws IOException {
+        final ClasspathIndex index = ClasspathIndex.forClasspath(indexFile, classesDirectory.toURI().toURL());
+        assertFalse(index.mayContain("foo/Local.class"));
+
+        new File(classesDirectory, "foo").mkdir();
+        Files.write(new File(classesDirectory, "foo/Local.class").toPath(), new byte[0]);
+        assertTrue(index.mayContain("foo/Local.class"));
+    }
+
+    @Test
+    public void testIndexIsPersisted() throws IOException {
+        ClasspathIndex.forClasspath(indexFile, jarFile.toURI().toURL());
+        assertTrue("Index file was not created", indexFile.exists());
+        final long lastModified = indexFile.lastModified();
+
+        // the jar is unchanged, so the index is loaded from the file
+        assertTrue(indexFile.setLastModified(lastModified - 10000));
+        final ClasspathIndex loaded = ClasspathIndex.forClasspath(indexFile, jarFile.toURI().toURL());
+        assertEquals("Index file was written again", lastModified - 10000, indexFile.lastModified());
+        assertTrue(loaded.mayContain("foo/Bar.class"));
+        assertFalse(loaded.mayContain("foo/Other.class"));
+    }
+
+    @Test
+    public void testIndexIsBuiltAgainWhenJarChanges() throws IOException {
+        ClasspathIndex.forClasspath(indexFile, jarFile.toURI().toURL());
+
+        writeJar(jarFile, "foo/Other.class");
+        assertTrue(jarFile.setLastModified(jarFile.lastModified() + 10000));
+        final ClasspathIndex index = ClasspathIndex.forClasspath(indexFile, jarFile.toURI().toURL());
+        assertTrue(index.mayContain("foo/Other.class"));
+        assertFalse(index.mayContain("foo/Bar.class"));
+    }
+
+    @Test
+    public void testMalformedIndexIsBuiltAgain() throws IOException {
+        Files.write(indexFile.toPath(), "not an index".getBytes());
+
+        final ClasspathIndex index = ClasspathIndex.forClasspath(indexFile, jarFile.toURI().toURL());
+        assertTrue(index.mayContain("foo/Bar.class"));
+    }
+
+    @Test
+    public void testNonFileURLsAreNotIndexed() throws IOException {
+        assertNull(ClasspathIndex.forClasspath(indexFile, new URL("http://localhost/lib.jar")));
+    }
+
+    @Test
+    public void testIndexContainsClassesOfManifestClasspath() throws IOException {
+        final File libDirectory = tempFolder.newFolder("lib");
+        writeJar(new File(libDirectory, "dependency.jar"), "foo/Dependency.class");
+        final File manifestJar = new File(tempFolder.getRoot(), "app.jar");
+        writeJarWithClasspath(manifestJar, "lib/dependency.jar lib/ " + jarFile.getName(), "foo/App.class");
+
+        final ClasspathIndex index = ClasspathIndex.forClasspath(indexFile, manifestJar.toURI().toURL());
+        assertTrue(index.mayContain("foo/App.class"));
+        assertTrue(index.mayContain("foo/Dependency.class"));
+        assertTrue(index.mayContain("foo/Bar.class"));
+        assertFalse(index.mayContain("foo/Local.class"));
+
+        Files.write(new File(libDirectory, "Local.class").toPath(), new byte[0]);
+        assertTrue("Directories of the manifest are looked up", index.mayContain("Local.class"));
+    }
+
+    @Test
+    public void testIndexIsBuiltAgainWhenManifestClasspathChanges() throws IOException {
+        final File manifestJar = new File(tempFolder.getRoot(), "app.jar");
+        writeJarWithClasspath(manifestJar, jarFile.getName(), "foo/App.class");
+        ClasspathIndex.forClasspath(indexFile, manifestJar.toURI().toURL());
+        assertTrue(ClasspathIndex.forClasspath(indexFile, manifestJar.toURI().toURL()).mayContain("foo/Bar.class"));
+
+        writeJar(jarFile, "foo/Other.class");
+        assertTrue(jarFile.setLastModified(jarFile.lastModified() + 10000));
+        final ClasspathIndex index = ClasspathIndex.forClasspath(indexFile, manifestJar.toURI().toURL());
+        assertTrue(index.mayContain("foo/Other.class"));
+        assertFalse(index.mayContain("foo/Bar.class"));
+    }
+
+    @Test
+    public void testNonFileURLsOfManifestAreNotIndexed() throws IOException {
+        final File manifestJar = new File(tempFolder.getRoot(), "app.jar");
+        writeJarWithClasspath(manifestJar, "http://localhost/lib.jar", "foo/App.class");
+
+        assertNull(ClasspathIndex.forClasspath(indexFile, manifestJar.toURI().toURL()));
+    }
+
+    @Test
+    public void testClassLoaderWithIndexFindsClassesOfManifestClasspath() throws IOException, ClassNotFoundException {
+        final File manifestJar = new File(tempFolder.getRoot(), "app.jar");
+        writeJarWithClasspath(manifestJar, jarFile.getName(), "foo/App.class");
+
+        try (ClasspathClassLoader classLoader = new ClasspathClassLoader(Arrays.asList(manifestJar),
+                ClasspathIndexTest.class.getClassLoader())) {
+            classLoader.useIndex(indexFile);
+
+            assertNotNull(classLoader.getResource("foo/Bar.class"));
+            assertNull(classLoader.getResource("foo/Other.class"));
+        }
+    }
+
+    @Test
+    public void testClassLoaderWithIndex() throws IOException, ClassNotFoundException {
+        try (ClasspathClassLoader classLoader = new ClasspathClassLoader(Arrays.asList(jarFile),
+                ClasspathIndexTest.class.getClassLoader())) {
+            classLoader.useIndex(indexFile);
+
+            // classes of the parent are still found
+            assertEquals(String.class, classLoader.loadClass("java.lang.String"));
+            assertEquals(ClasspathIndexTest.class, classLoader.loadClass(ClasspathIndexTest.class.getName()));
+            assertNotNull(classLoader.getResource("foo/readme.txt"));
+            assertNull(classLoader.getResource("foo/Other.class"));
+        }
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testClassLoaderWithIndexMissingClass() throws IOException, ClassNotFoundException {
+        try (ClasspathClassLoader classLoader = new ClasspathClassLoader(Arrays.asList(jarFile),
+                ClasspathIndexTest.class.getClassLoader())) {
+            classLoader.useIndex(indexFile);
+            classLoader.loadClass("foo.Other");
+        }
+    }
+
+    private static void writeJarWithClasspath(File file, String classpath, String... entries) throws IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classpath);
+        try (OutputStream stream = Files.newOutputStream(file.toPath());
+             JarOutputStream jar = new JarOutputStream(stream, manifest)) {
+            for (String entry : entries) {
+                jar.putNextEntry(new ZipEntry(entry));
+                jar.closeEntry();
+            }
+        }
+    }
+
+    private static void writeJar(File file, String... entries) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file.toPath());
+             ZipOutputStream zip = new ZipOutputStream(stream)) {
+            for (String entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry));
+                zip.closeEntry();
+            }
+        }
+    }
+}
@@ -88,7 +88,7 @@ public abstract class AbstractJavaHandler extends AbstractLanguageVersionHandler
         return new VisitorStarter() {
             @Override
             public void start(Node rootNode) {
-                new DataFlowFacade().initializeWith(getDataFlowHandler(), (ASTCompilationUnit) rootNode);
+                new DataFlowFacade().initializeLazilyWith(getDataFlowHandler(), (ASTCompilationUnit) rootNode);
             }
         };
     }
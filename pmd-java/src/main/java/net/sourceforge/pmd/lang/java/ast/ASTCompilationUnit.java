@@ -9,6 +9,7 @@ import java.util.List;
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
+import net.sourceforge.pmd.lang.java.dfa.DataFlowFacade;
 import net.sourceforge.pmd.lang.java.typeresolution.ClassTypeResolver;
 
 // FUTURE Change this class to extend from SimpleJavaNode, as TypeNode is not appropriate (unless I'm wrong)
@@ -16,6 +17,7 @@ public class ASTCompilationUnit extends AbstractJavaTypeNode implements RootNode
 
     private ClassTypeResolver classTypeResolver;
     private List<Comment> comments;
+    private DataFlowFacade dataFlowFacade;
 
     @InternalApi
     @Deprecated
@@ -65,4 +67,20 @@ public class ASTCompilationUnit extends AbstractJavaTypeNode implements RootNode
     public void setClassTypeResolver(ClassTypeResolver classTypeResolver) {
         this.classTypeResolver = classTypeResolver;
     }
+
+    /**
+     * Returns the facade building the data flow of this compilation unit
+     * on demand, or null if it's not built on demand.
+     */
+    @InternalApi
+    @Deprecated
+    public DataFlowFacade getDataFlowFacade() {
+        return dataFlowFacade;
+    }
+
+    @InternalApi
+    @Deprecated
+    public void setDataFlowFacade(DataFlowFacade dataFlowFacade) {
+        this.dataFlowFacade = dataFlowFacade;
+    }
 }
@@ -8,6 +8,8 @@ import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.java.qname.JavaTypeQualifiedName;
 import net.sourceforge.pmd.lang.java.typeresolution.typedefinition.JavaTypeDefinition;
+import net.sourceforge.pmd.lang.metrics.BasicMetricMemoizer;
+import net.sourceforge.pmd.lang.metrics.MetricMemoizer;
 
 
 /**
@@ -18,6 +20,7 @@ import net.sourceforge.pmd.lang.java.typeresolution.typedefinition.JavaTypeDefin
 public abstract class AbstractAnyTypeDeclaration extends AbstractJavaAccessTypeNode implements ASTAnyTypeDeclaration {
 
     private JavaTypeQualifiedName qualifiedName;
+    private MetricMemoizer<ASTAnyTypeDeclaration> metricMemoizer;
 
 
     AbstractAnyTypeDeclaration(int i) {
@@ -89,5 +92,18 @@ public abstract class AbstractAnyTypeDeclaration extends AbstractJavaAccessTypeN
         this.qualifiedName = qualifiedName;
         this.typeDefinition = JavaTypeDefinition.forClass(qualifiedName.getType());
     }
+
+
+    /**
+     * Returns the memoizer of the metrics computed on this node.
+     */
+    @InternalApi
+    @Deprecated
+    public MetricMemoizer<ASTAnyTypeDeclaration> getMetricMemoizer() {
+        if (metricMemoizer == null) {
+            metricMemoizer = new BasicMetricMemoizer<>();
+        }
+        return metricMemoizer;
+    }
 }
 
@@ -6,12 +6,15 @@ package net.sourceforge.pmd.lang.java.ast;
 
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.java.qname.JavaOperationQualifiedName;
+import net.sourceforge.pmd.lang.metrics.BasicMetricMemoizer;
+import net.sourceforge.pmd.lang.metrics.MetricMemoizer;
 
 @Deprecated
 @InternalApi
 public abstract class AbstractMethodLikeNode extends AbstractJavaAccessNode implements MethodLikeNode {
 
     private JavaOperationQualifiedName qualifiedName;
+    private MetricMemoizer<MethodLikeNode> metricMemoizer;
 
 
     AbstractMethodLikeNode(int i) {
@@ -36,4 +39,17 @@ public abstract class AbstractMethodLikeNode extends AbstractJavaAccessNode impl
         return qualifiedName;
     }
 
+
+    /**
+     * Returns the memoizer of the metrics computed on this node.
+     */
+    @InternalApi
+    @Deprecated
+    public MetricMemoizer<MethodLikeNode> getMetricMemoizer() {
+        if (metricMemoizer == null) {
+            metricMemoizer = new BasicMetricMemoizer<>();
+        }
+        return metricMemoizer;
+    }
+
 }
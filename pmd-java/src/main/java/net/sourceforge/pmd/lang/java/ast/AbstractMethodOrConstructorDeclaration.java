@@ -5,6 +5,8 @@
 package net.sourceforge.pmd.lang.java.ast;
 
 import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.java.dfa.DataFlowFacade;
 import net.sourceforge.pmd.lang.java.multifile.signature.JavaOperationSignature;
 
 
@@ -13,6 +15,7 @@ import net.sourceforge.pmd.lang.java.multifile.signature.JavaOperationSignature;
 public abstract class AbstractMethodOrConstructorDeclaration extends AbstractMethodLikeNode implements ASTMethodOrConstructorDeclaration {
 
     private JavaOperationSignature signature;
+    private boolean dataFlowRequested;
 
 
     AbstractMethodOrConstructorDeclaration(int i) {
@@ -33,4 +36,14 @@ public abstract class AbstractMethodOrConstructorDeclaration extends AbstractMet
 
         return signature;
     }
+
+
+    @Override
+    public DataFlowNode getDataFlowNode() {
+        if (!dataFlowRequested) {
+            dataFlowRequested = true;
+            DataFlowFacade.buildDataFlowOnDemand(this);
+        }
+        return super.getDataFlowNode();
+    }
 }
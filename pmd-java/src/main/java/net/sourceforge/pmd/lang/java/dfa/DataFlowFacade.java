@@ -8,12 +8,21 @@ import net.sourceforge.pmd.lang.DataFlowHandler;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.lang.java.ast.ASTConstructorDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodOrConstructorDeclaration;
 import net.sourceforge.pmd.lang.java.ast.JavaParserVisitorAdapter;
 
 /**
  * TODO What about initializers? This only processes methods and
  * constructors.
  *
+ * <p>The data flow can either be built for the whole compilation unit
+ * at once with {@link #initializeWith(DataFlowHandler, ASTCompilationUnit)},
+ * or on demand with {@link #initializeLazilyWith(DataFlowHandler, ASTCompilationUnit)}.
+ * In the latter case, the data flow of a method or constructor is only built
+ * the first time {@link net.sourceforge.pmd.lang.ast.Node#getDataFlowNode()} is
+ * called on it or on one of its descendants. It's kept on the nodes, so it's
+ * released together with the AST of the file.
+ *
  * @author raik
  */
 public class DataFlowFacade extends JavaParserVisitorAdapter {
@@ -27,6 +36,37 @@ public class DataFlowFacade extends JavaParserVisitorAdapter {
         node.jjtAccept(this, null);
     }
 
+    /**
+     * Prepares the data flow of the given compilation unit to be built
+     * on demand, one method or constructor at a time.
+     *
+     * @param dataFlowHandler The data flow handler of the language
+     * @param node            The compilation unit
+     */
+    public void initializeLazilyWith(DataFlowHandler dataFlowHandler, ASTCompilationUnit node) {
+        sbf = new StatementAndBraceFinder(dataFlowHandler);
+        vav = new VariableAccessVisitor();
+        node.setDataFlowFacade(this);
+    }
+
+    /**
+     * Builds the data flow of the given method or constructor, if the
+     * data flow of its compilation unit is built on demand. Methods and
+     * constructors of local and anonymous classes are part of the data flow
+     * of their enclosing method or constructor, and are not built separately.
+     *
+     * @param node The method or constructor
+     */
+    public static void buildDataFlowOnDemand(ASTMethodOrConstructorDeclaration node) {
+        if (node.getFirstParentOfType(ASTMethodOrConstructorDeclaration.class) != null) {
+            return;
+        }
+        ASTCompilationUnit root = node.getFirstParentOfType(ASTCompilationUnit.class);
+        if (root != null && root.getDataFlowFacade() != null) {
+            node.jjtAccept(root.getDataFlowFacade(), null);
+        }
+    }
+
     @Override
     public Object visit(ASTMethodDeclaration node, Object data) {
         sbf.buildDataFlowFor(node);
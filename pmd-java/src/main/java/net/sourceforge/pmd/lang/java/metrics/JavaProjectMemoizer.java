@@ -5,14 +5,29 @@
 package net.sourceforge.pmd.lang.java.metrics;
 
 import net.sourceforge.pmd.lang.java.ast.ASTAnyTypeDeclaration;
+import net.sourceforge.pmd.lang.java.ast.AbstractAnyTypeDeclaration;
+import net.sourceforge.pmd.lang.java.ast.AbstractMethodLikeNode;
 import net.sourceforge.pmd.lang.java.ast.MethodLikeNode;
 import net.sourceforge.pmd.lang.metrics.BasicProjectMemoizer;
+import net.sourceforge.pmd.lang.metrics.MetricMemoizer;
 
 /**
  * Shorthand for a project memoizer parameterized with Java-specific node types.
+ * The memoizers of the nodes are kept on the nodes themselves, so they need no
+ * locking and are released together with the AST.
  *
  * @author Clément Fournier
  */
 class JavaProjectMemoizer extends BasicProjectMemoizer<ASTAnyTypeDeclaration, MethodLikeNode> {
 
+    @Override
+    public MetricMemoizer<MethodLikeNode> getOperationMemoizer(MethodLikeNode node) {
+        return ((AbstractMethodLikeNode) node).getMetricMemoizer();
+    }
+
+
+    @Override
+    public MetricMemoizer<ASTAnyTypeDeclaration> getClassMemoizer(ASTAnyTypeDeclaration node) {
+        return ((AbstractAnyTypeDeclaration) node).getMetricMemoizer();
+    }
 }
@@ -16,6 +16,8 @@ import net.sourceforge.pmd.lang.rule.ImmutableLanguage;
 
 public abstract class AbstractJavaRule extends AbstractRule implements JavaParserVisitor, ImmutableLanguage {
 
+    private boolean visitsChildren = true;
+
     public AbstractJavaRule() {
         super.setLanguage(LanguageRegistry.getLanguage(JavaLanguageModule.NAME));
         // Enable Type Resolution on Java Rules by default
@@ -56,6 +58,26 @@ public abstract class AbstractJavaRule extends AbstractRule implements JavaParse
         return null;
     }
 
+    /**
+     * Lets this rule participate in the RuleChain for each node type, for which it
+     * overrides a visit method. The visit methods are then called once for each node
+     * of their type, while the AST is traversed a single time for all the rules of
+     * the RuleChain, instead of once per rule. Calling {@code super.visit} doesn't
+     * visit the children of the node anymore, so this is only suitable for rules,
+     * which don't depend on the order in which the nodes are visited, or on state
+     * kept while visiting the children of a node.
+     *
+     * <p>This is meant to be called from the constructor of the rule.
+     *
+     * @since 6.17.0
+     */
+    protected final void addRuleChainVisitsOfOverriddenMethods() {
+        for (Class<? extends JavaNode> nodeType : OverriddenVisits.getNodeTypes(getClass())) {
+            addRuleChainVisit(nodeType);
+        }
+        visitsChildren = false;
+    }
+
     public static boolean isQualifiedName(Node node) {
         return node.getImage().indexOf('.') != -1;
     }
@@ -81,7 +103,9 @@ public abstract class AbstractJavaRule extends AbstractRule implements JavaParse
     //
     @Override
     public Object visit(JavaNode node, Object data) {
-        node.childrenAccept(this, data);
+        if (visitsChildren) {
+            node.childrenAccept(this, data);
+        }
         return null;
     }
 
@@ -0,0 +1,98 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.rule;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sourceforge.pmd.lang.java.ast.JavaNode;
+import net.sourceforge.pmd.lang.java.ast.JavaParserVisitor;
+
+/**
+ * Finds the node types, for which a Java rule overrides a visit method of
+ * {@link AbstractJavaRule}. The result is computed once per rule class.
+ */
+final class OverriddenVisits {
+
+    private static final List<Class<? extends JavaNode>> ALL_NODE_TYPES = findAllNodeTypes();
+    private static final ConcurrentMap<Class<?>, List<Class<? extends JavaNode>>> CACHE = new ConcurrentHashMap<>();
+
+    private OverriddenVisits() {
+        // utility class
+    }
+
+    /**
+     * Returns the node types, for which the given rule class or one of its super classes
+     * below {@link AbstractJavaRule} declares a visit method. If the generic
+     * {@link JavaParserVisitor#visit(JavaNode, Object)} is overridden, all node types are
+     * returned.
+     *
+     * @param ruleClass The rule class
+     * @return The node types
+     */
+    static List<Class<? extends JavaNode>> getNodeTypes(Class<? extends AbstractJavaRule> ruleClass) {
+        List<Class<? extends JavaNode>> nodeTypes = CACHE.get(ruleClass);
+        if (nodeTypes == null) {
+            nodeTypes = findNodeTypes(ruleClass);
+            CACHE.putIfAbsent(ruleClass, nodeTypes);
+        }
+        return nodeTypes;
+    }
+
+    private static List<Class<? extends JavaNode>> findNodeTypes(Class<?> ruleClass) {
+        final Set<Class<? extends JavaNode>> nodeTypes = new LinkedHashSet<>();
+        for (Class<?> c = ruleClass; c != null && c != AbstractJavaRule.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                final Class<? extends JavaNode> nodeType = getVisitedNodeType(method);
+                if (nodeType == JavaNode.class) {
+                    return ALL_NODE_TYPES;
+                } else if (nodeType != null) {
+                    nodeTypes.add(nodeType);
+                }
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(nodeTypes));
+    }
+
+    private static List<Class<? extends JavaNode>> findAllNodeTypes() {
+        final List<Class<? extends JavaNode>> nodeTypes = new ArrayList<>();
+        for (Method method : JavaParserVisitor.class.getMethods()) {
+            final Class<? extends JavaNode> nodeType = getVisitedNodeType(method);
+            if (nodeType != null && nodeType != JavaNode.class) {
+                nodeTypes.add(nodeType);
+            }
+        }
+        return Collections.unmodifiableList(nodeTypes);
+    }
+
+    /**
+     * Returns the node type visited by the given method, if it is one of the visit
+     * methods of {@link JavaParserVisitor}, or null otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private static Class<? extends JavaNode> getVisitedNodeType(Method method) {
+        if (!"visit".equals(method.getName()) || method.isBridge() || method.isSynthetic()) {
+            return null;
+        }
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length != 2 || parameterTypes[1] != Object.class
+                || !JavaNode.class.isAssignableFrom(parameterTypes[0])) {
+            return null;
+        }
+        try {
+            JavaParserVisitor.class.getMethod("visit", parameterTypes);
+        } catch (NoSuchMethodException e) {
+            // an overload, which isn't called by the visitor
+            return null;
+        }
+        return (Class<? extends JavaNode>) parameterTypes[0];
+    }
+}
@@ -37,6 +37,10 @@ public class PreserveStackTraceRule extends AbstractJavaRule {
 
     private static final String FILL_IN_STACKTRACE = ".fillInStackTrace";
 
+    public PreserveStackTraceRule() {
+        addRuleChainVisitsOfOverriddenMethods();
+    }
+
     @Override
     public Object visit(ASTCatchStatement catchStmt, Object data) {
         String target = catchStmt.jjtGetChild(0).findChildrenOfType(ASTVariableDeclaratorId.class).get(0).getImage();
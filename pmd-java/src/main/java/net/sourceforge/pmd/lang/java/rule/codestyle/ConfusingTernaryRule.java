@@ -59,6 +59,7 @@ public class ConfusingTernaryRule extends AbstractJavaRule {
     public ConfusingTernaryRule() {
         super();
         definePropertyDescriptor(ignoreElseIfProperty);
+        addRuleChainVisitsOfOverriddenMethods();
     }
 
     @Override
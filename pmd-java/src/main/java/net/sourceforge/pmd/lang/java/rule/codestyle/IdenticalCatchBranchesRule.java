@@ -85,6 +85,10 @@ public class IdenticalCatchBranchesRule extends AbstractJavaRule {
     }
 
 
+    public IdenticalCatchBranchesRule() {
+        addRuleChainVisitsOfOverriddenMethods();
+    }
+
     @Override
     public Object visit(ASTTryStatement node, Object data) {
 
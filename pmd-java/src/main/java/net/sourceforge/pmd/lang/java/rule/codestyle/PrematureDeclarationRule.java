@@ -28,6 +28,10 @@ import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 public class PrematureDeclarationRule extends AbstractJavaRule {
 
 
+    public PrematureDeclarationRule() {
+        addRuleChainVisitsOfOverriddenMethods();
+    }
+
     @Override
     public Object visit(ASTLocalVariableDeclaration node, Object data) {
 
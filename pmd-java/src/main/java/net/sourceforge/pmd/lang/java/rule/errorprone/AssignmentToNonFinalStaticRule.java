@@ -23,6 +23,10 @@ import net.sourceforge.pmd.lang.symboltable.NameOccurrence;
  */
 public class AssignmentToNonFinalStaticRule extends AbstractJavaRule {
 
+    public AssignmentToNonFinalStaticRule() {
+        addRuleChainVisitsOfOverriddenMethods();
+    }
+
     @Override
     public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
         Map<VariableNameDeclaration, List<NameOccurrence>> vars = node.getScope()
@@ -17,6 +17,10 @@ import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
  */
 public class AvoidCatchingThrowableRule extends AbstractJavaRule {
 
+    public AvoidCatchingThrowableRule() {
+        addRuleChainVisitsOfOverriddenMethods();
+    }
+
     @Override
     public Object visit(ASTCatchStatement node, Object data) {
         ASTType type = node.getFirstDescendantOfType(ASTType.class);
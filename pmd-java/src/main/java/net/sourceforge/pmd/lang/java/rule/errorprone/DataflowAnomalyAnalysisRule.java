@@ -8,17 +8,13 @@ import static net.sourceforge.pmd.properties.constraints.NumericConstraints.inRa
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.dfa.DataFlowNode;
 import net.sourceforge.pmd.lang.dfa.VariableAccess;
-import net.sourceforge.pmd.lang.dfa.pathfinder.CurrentPath;
-import net.sourceforge.pmd.lang.dfa.pathfinder.DAAPathFinder;
-import net.sourceforge.pmd.lang.dfa.pathfinder.Executable;
+import net.sourceforge.pmd.lang.dfa.analysis.ReachingAccesses;
 import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
@@ -27,15 +23,16 @@ import net.sourceforge.pmd.properties.PropertyFactory;
 
 
 /**
- * Starts path search for each method and runs code if found.
+ * Computes the reaching variable accesses of each method and reports the
+ * anomalies between an access and the accesses, which may directly precede it.
  *
  * @author raik
  * @author Sven Jacob
  */
-public class DataflowAnomalyAnalysisRule extends AbstractJavaRule implements Executable {
+public class DataflowAnomalyAnalysisRule extends AbstractJavaRule {
     private static final PropertyDescriptor<Integer> MAX_PATH_DESCRIPTOR
             = PropertyFactory.intProperty("maxPaths")
-                             .desc("Maximum number of checked paths per method. A lower value will increase the performance of the rule but may decrease anomalies found.")
+                             .desc("Deprecated! No longer used, the anomalies are found without enumerating the paths of a method")
                              .require(inRange(100, 8000))
                              .defaultValue(1000)
                              .build();
@@ -51,21 +48,6 @@ public class DataflowAnomalyAnalysisRule extends AbstractJavaRule implements Exe
     private int currentRuleViolationCount;
 
 
-    private static class Usage {
-        public int accessType;
-        public DataFlowNode node;
-
-        Usage(int accessType, DataFlowNode node) {
-            this.accessType = accessType;
-            this.node = node;
-        }
-
-        @Override
-        public String toString() {
-            return "accessType = " + accessType + ", line = " + node.getLine();
-        }
-    }
-
     public DataflowAnomalyAnalysisRule() {
         definePropertyDescriptor(MAX_PATH_DESCRIPTOR);
         definePropertyDescriptor(MAX_VIOLATIONS_DESCRIPTOR);
@@ -83,57 +65,48 @@ public class DataflowAnomalyAnalysisRule extends AbstractJavaRule implements Exe
         rc = (RuleContext) data;
         daaRuleViolations = new ArrayList<>();
 
-        final DataFlowNode node = methodDeclaration.getDataFlowNode().getFlow().get(0);
-
-        final DAAPathFinder pathFinder = new DAAPathFinder(node, this, getProperty(MAX_PATH_DESCRIPTOR));
-        pathFinder.run();
+        final List<DataFlowNode> flow = methodDeclaration.getDataFlowNode().getFlow();
+        checkFlow(flow, new ReachingAccesses(flow));
 
         super.visit(methodDeclaration, data);
         return data;
     }
 
-    @Override
-    public void execute(CurrentPath path) {
-
-        if (maxNumberOfViolationsReached()) {
-            return;
-        }
-
-        Map<String, Usage> usagesByVarName = new HashMap<>();
-
-        for (DataFlowNode inode : path) {
-            if (inode.getVariableAccess() != null) {
-                // iterate all variables of this node
-                for (VariableAccess va : inode.getVariableAccess()) {
-
-                    // get the last usage of the current variable
-                    Usage lastUsage = usagesByVarName.get(va.getVariableName());
-                    if (lastUsage != null) {
-                        // there was a usage to this variable before
-                        checkVariableAccess(inode, va, lastUsage);
+    /**
+     * Checks each variable access against the accesses of the same variable, which
+     * may directly precede it on any path through the method.
+     */
+    private void checkFlow(List<DataFlowNode> flow, ReachingAccesses reachingAccesses) {
+        for (DataFlowNode inode : flow) {
+            if (inode.getVariableAccess() == null) {
+                continue;
+            }
+            for (int i = 0; i < inode.getVariableAccess().size(); i++) {
+                VariableAccess va = inode.getVariableAccess().get(i);
+                for (ReachingAccesses.Site lastUsage : reachingAccesses.getReaching(inode, i)) {
+                    if (maxNumberOfViolationsReached()) {
+                        return;
                     }
-
-                    Usage newUsage = new Usage(va.getAccessType(), inode);
-                    // put the new usage for the variable
-                    usagesByVarName.put(va.getVariableName(), newUsage);
+                    checkVariableAccess(inode, va, lastUsage);
                 }
             }
         }
     }
 
-    private void checkVariableAccess(DataFlowNode inode, VariableAccess va, final Usage u) {
+    private void checkVariableAccess(DataFlowNode inode, VariableAccess va, final ReachingAccesses.Site lastUsage) {
         // get the start and end line
-        int startLine = u.node.getLine();
+        int startLine = lastUsage.getNode().getLine();
         int endLine = inode.getLine();
 
         Node lastNode = inode.getNode();
-        Node firstNode = u.node.getNode();
+        Node firstNode = lastUsage.getNode().getNode();
+        VariableAccess lastAccess = lastUsage.getVariableAccess();
 
-        if (va.accessTypeMatches(u.accessType) && va.isDefinition()) { // DD
+        if (va.isDefinition() && lastAccess.isDefinition()) { // DD
             addDaaViolation(rc, lastNode, "DD", va.getVariableName(), startLine, endLine);
-        } else if (u.accessType == VariableAccess.UNDEFINITION && va.isReference()) { // UR
+        } else if (lastAccess.isUndefinition() && va.isReference()) { // UR
             addDaaViolation(rc, lastNode, "UR", va.getVariableName(), startLine, endLine);
-        } else if (u.accessType == VariableAccess.DEFINITION && va.isUndefinition()) { // DU
+        } else if (lastAccess.isDefinition() && va.isUndefinition()) { // DU
             addDaaViolation(rc, firstNode, "DU", va.getVariableName(), startLine, endLine);
         }
     }
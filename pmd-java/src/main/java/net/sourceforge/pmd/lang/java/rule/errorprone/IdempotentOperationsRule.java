@@ -17,6 +17,10 @@ import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 
 public class IdempotentOperationsRule extends AbstractJavaRule {
 
+    public IdempotentOperationsRule() {
+        addRuleChainVisitsOfOverriddenMethods();
+    }
+
     @Override
     public Object visit(ASTStatementExpression node, Object data) {
         if (node.jjtGetNumChildren() != 3 || !(node.jjtGetChild(0) instanceof ASTPrimaryExpression)
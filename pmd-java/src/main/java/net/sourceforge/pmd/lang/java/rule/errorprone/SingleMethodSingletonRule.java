@@ -25,6 +25,10 @@ public class SingleMethodSingletonRule extends AbstractJavaRule {
      */
 
 
+    public SingleMethodSingletonRule() {
+        addRuleChainVisitsOfOverriddenMethods();
+    }
+
     @Override
     public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
 
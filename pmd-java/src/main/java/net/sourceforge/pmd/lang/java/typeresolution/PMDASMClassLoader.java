@@ -99,7 +99,16 @@ public final class PMDASMClassLoader extends ClassLoader {
         return !dontBother.containsKey(name);
     }
 
-    public synchronized Map<String, String> getImportedClasses(String name) throws ClassNotFoundException {
+    /**
+     * Returns the classes, which are referenced by the given class and its inner classes,
+     * by their simple names. This is not synchronized, each call scans the class file
+     * with its own visitor, so several threads may scan classes at the same time.
+     *
+     * @param name the name of the class
+     * @return the referenced classes by their simple names
+     * @throws ClassNotFoundException if the class file can't be read
+     */
+    public Map<String, String> getImportedClasses(String name) throws ClassNotFoundException {
         if (dontBother.containsKey(name)) {
             throw new ClassNotFoundException(name);
         }
@@ -4,6 +4,12 @@
 
 package net.sourceforge.pmd.lang.java.typeresolution;
 
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.commons.lang3.ClassUtils;
 
 import net.sourceforge.pmd.lang.java.ast.TypeNode;
@@ -11,6 +17,14 @@ import net.sourceforge.pmd.lang.java.symboltable.TypedNameDeclaration;
 
 public final class TypeHelper {
 
+    /**
+     * The classes, which were looked up by name with a classloader. Both the classloaders and the
+     * loaded classes are only weakly referenced, so that the lookups don't keep the auxclasspath
+     * classloader alive after the analysis. Names, which couldn't be loaded, map to {@link NotFound}.
+     */
+    private static final Map<ClassLoader, ConcurrentMap<String, WeakReference<Class<?>>>> LOOKUPS
+            = new WeakHashMap<>();
+
     private TypeHelper() {
         // utility class
     }
@@ -54,20 +68,43 @@ public final class TypeHelper {
     
     private static Class<?> loadClassWithNodeClassloader(final TypeNode n, final String clazzName) {
         if (n.getType() != null) {
-            return loadClass(n.getType().getClassLoader(), clazzName);
+            return loadClassWithTypeClassloader(n.getType(), clazzName);
         }
 
         return null;
     }
 
-    private static Class<?> loadClass(final ClassLoader nullableClassLoader, final String clazzName) {
-        try {
-            ClassLoader classLoader = nullableClassLoader;
-            if (classLoader == null) {
-                // Using the system classloader then
-                classLoader = ClassLoader.getSystemClassLoader();
+    private static Class<?> loadClassWithTypeClassloader(final Class<?> type, final String clazzName) {
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null) {
+            // Using the system classloader then
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+
+        final ConcurrentMap<String, WeakReference<Class<?>>> lookups = getLookups(classLoader);
+        final WeakReference<Class<?>> lookup = lookups.get(clazzName);
+        Class<?> clazz = lookup == null ? null : lookup.get();
+        if (clazz == null) {
+            clazz = loadClass(classLoader, clazzName);
+            lookups.put(clazzName, new WeakReference<Class<?>>(clazz == null ? NotFound.class : clazz));
+        }
+
+        return clazz == NotFound.class ? null : clazz;
+    }
+
+    private static ConcurrentMap<String, WeakReference<Class<?>>> getLookups(final ClassLoader classLoader) {
+        synchronized (LOOKUPS) {
+            ConcurrentMap<String, WeakReference<Class<?>>> lookups = LOOKUPS.get(classLoader);
+            if (lookups == null) {
+                lookups = new ConcurrentHashMap<>();
+                LOOKUPS.put(classLoader, lookups);
             }
+            return lookups;
+        }
+    }
 
+    private static Class<?> loadClass(final ClassLoader classLoader, final String clazzName) {
+        try {
             // If the requested type is in the classpath, using the same classloader should work
             return ClassUtils.getClass(classLoader, clazzName);
         } catch (ClassNotFoundException ignored) {
@@ -143,11 +180,15 @@ public final class TypeHelper {
     public static boolean isA(TypedNameDeclaration vnd, String className) {
         Class<?> type = vnd.getType();
         if (type != null) {
-            Class<?> clazz = loadClass(type.getClassLoader(), className);
+            Class<?> clazz = loadClassWithTypeClassloader(type, className);
             if (clazz != null) {
                 return clazz.isAssignableFrom(type);
             }
         }
         return false;
     }
+
+    /** Marks a class name, which couldn't be loaded. */
+    private static final class NotFound {
+    }
 }
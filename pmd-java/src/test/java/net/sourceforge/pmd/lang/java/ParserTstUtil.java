@@ -124,6 +124,16 @@ public class ParserTstUtil {
         return cu;
     }
 
+    public static ASTCompilationUnit buildDFALazily(String javaCode) {
+        LanguageVersionHandler languageVersionHandler = LanguageRegistry.getLanguage(JavaLanguageModule.NAME)
+                .getDefaultVersion().getLanguageVersionHandler();
+        ASTCompilationUnit cu = (ASTCompilationUnit) languageVersionHandler
+                .getParser(languageVersionHandler.getDefaultParserOptions()).parse(null, new StringReader(javaCode));
+        new SymbolFacade().initializeWith(cu);
+        new DataFlowFacade().initializeLazilyWith(languageVersionHandler.getDataFlowHandler(), cu);
+        return cu;
+    }
+
     /** @see #parseJava(LanguageVersionHandler, String)  */
     public static ASTCompilationUnit parseJava13(String code) {
         return parseJava(getLanguageVersionHandler("1.3"), code);
@@ -0,0 +1,139 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.dfa;
+
+import static net.sourceforge.pmd.lang.java.ParserTstUtil.buildDFA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.dfa.analysis.DefiniteAssignment;
+import net.sourceforge.pmd.lang.dfa.analysis.LiveVariables;
+import net.sourceforge.pmd.lang.dfa.analysis.ReachingAccesses;
+import net.sourceforge.pmd.lang.dfa.analysis.ReachingDefinitions;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclarator;
+
+public class DataFlowAnalysisTest {
+
+    @Test
+    public void testReachingDefinitions() {
+        List<DataFlowNode> flow = getFlow(BRANCHES);
+        ReachingDefinitions definitions = new ReachingDefinitions(flow);
+
+        assertEquals("[Definition(x) at line 3, Definition(x) at line 8]",
+                String.valueOf(definitions.getReaching(nodeAt(flow, 11), "x")));
+        assertEquals("[Definition(y) at line 6, Definition(y) at line 9]",
+                String.valueOf(definitions.getReaching(nodeAt(flow, 11), "y")));
+        assertEquals("[Definition(x) at line 3]", String.valueOf(definitions.getReaching(nodeAt(flow, 8), "x")));
+    }
+
+    @Test
+    public void testReachingAccesses() {
+        List<DataFlowNode> flow = getFlow(BRANCHES);
+        ReachingAccesses accesses = new ReachingAccesses(flow);
+
+        assertEquals("[Reference(x) at line 6, Definition(x) at line 8]",
+                String.valueOf(accesses.getReaching(nodeAt(flow, 11), "x")));
+        // the definition of y at line 6 follows the reference of x in the same node
+        assertEquals("[Definition(x) at line 3]", String.valueOf(accesses.getReaching(nodeAt(flow, 6), 0)));
+        assertEquals("[Undefinition(y) at line 2]", String.valueOf(accesses.getReaching(nodeAt(flow, 6), 1)));
+    }
+
+    @Test
+    public void testReachingAccessesInLoop() {
+        List<DataFlowNode> flow = getFlow(LOOP);
+        ReachingAccesses accesses = new ReachingAccesses(flow);
+
+        // the definition in the loop reaches itself in the next iteration
+        assertEquals("[Definition(x) at line 3, Definition(x) at line 5]",
+                String.valueOf(accesses.getReaching(nodeAt(flow, 5), 0)));
+    }
+
+    @Test
+    public void testLiveVariables() {
+        List<DataFlowNode> flow = getFlow(BRANCHES);
+        LiveVariables live = new LiveVariables(flow);
+
+        assertTrue(live.isLiveAfter(nodeAt(flow, 3), "x"));
+        assertFalse(live.isLiveAfter(nodeAt(flow, 8), "x"));
+        assertTrue(live.isLiveAfter(nodeAt(flow, 6), "y"));
+        assertTrue(live.isLiveAfter(nodeAt(flow, 9), "y"));
+        assertTrue(live.isLiveBefore(nodeAt(flow, 11), "y"));
+        assertFalse(live.isLiveAfter(nodeAt(flow, 11), "y"));
+        assertFalse(live.isLiveAfter(nodeAt(flow, 3), "unknown"));
+    }
+
+    @Test
+    public void testDefiniteAssignment() {
+        List<DataFlowNode> flow = getFlow(BRANCHES);
+        DefiniteAssignment assignment = new DefiniteAssignment(flow);
+
+        assertTrue(assignment.isAssignedAfter(nodeAt(flow, 3), "x"));
+        assertFalse(assignment.isAssignedBefore(nodeAt(flow, 3), "x"));
+        assertFalse(assignment.isAssignedBefore(nodeAt(flow, 9), "y"));
+        assertTrue(assignment.isAssignedBefore(nodeAt(flow, 11), "y"));
+        assertFalse(assignment.isAssignedAfter(flow.get(flow.size() - 1), "y"));
+    }
+
+    @Test
+    public void testManyBranches() {
+        StringBuilder code = new StringBuilder("class Foo {" + PMD.EOL + " void bar(boolean c) {" + PMD.EOL
+                + "  int x = 0;" + PMD.EOL);
+        for (int i = 0; i < 60; i++) {
+            code.append("  if (c) { x = ").append(i).append("; }").append(PMD.EOL);
+        }
+        code.append("  foo(x);" + PMD.EOL + " }" + PMD.EOL + "}");
+        List<DataFlowNode> flow = getFlow(code.toString());
+
+        // 2^60 paths, each of the definitions reaches the reference
+        List<ReachingAccesses.Site> reaching = new ReachingDefinitions(flow).getReaching(nodeAt(flow, 64), "x");
+        assertEquals(61, reaching.size());
+    }
+
+    private static List<DataFlowNode> getFlow(String code) {
+        ASTMethodDeclarator meth = buildDFA(code).findDescendantsOfType(ASTMethodDeclarator.class).get(0);
+        return meth.getDataFlowNode().getFlow();
+    }
+
+    private static DataFlowNode nodeAt(List<DataFlowNode> flow, int line) {
+        List<DataFlowNode> result = new ArrayList<>();
+        for (DataFlowNode node : flow) {
+            if (node.getLine() == line && node.getNode() != null) {
+                result.add(node);
+            }
+        }
+        return result.get(result.size() - 1);
+    }
+
+    private static final String BRANCHES = "class Foo {" + PMD.EOL
+            + " void bar(boolean c) {" + PMD.EOL
+            + "  int x = 1;" + PMD.EOL
+            + "  int y;" + PMD.EOL
+            + "  if (c) {" + PMD.EOL
+            + "   y = x;" + PMD.EOL
+            + "  } else {" + PMD.EOL
+            + "   x = 2;" + PMD.EOL
+            + "   y = 3;" + PMD.EOL
+            + "  }" + PMD.EOL
+            + "  foo(y);" + PMD.EOL
+            + " }" + PMD.EOL
+            + "}";
+
+    private static final String LOOP = "class Foo {" + PMD.EOL
+            + " void bar(boolean c) {" + PMD.EOL
+            + "  int x = 0;" + PMD.EOL
+            + "  while (c) {" + PMD.EOL
+            + "   x = 1;" + PMD.EOL
+            + "  }" + PMD.EOL
+            + " }" + PMD.EOL
+            + "}";
+}
@@ -5,8 +5,10 @@
 package net.sourceforge.pmd.lang.java.dfa;
 
 import static net.sourceforge.pmd.lang.java.ParserTstUtil.buildDFA;
+import static net.sourceforge.pmd.lang.java.ParserTstUtil.buildDFALazily;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import java.util.List;
 
@@ -15,7 +17,10 @@ import org.junit.Test;
 import net.sourceforge.pmd.PMD;
 import net.sourceforge.pmd.lang.dfa.DataFlowNode;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclarator;
+import net.sourceforge.pmd.lang.java.ast.ASTName;
+import net.sourceforge.pmd.lang.java.ast.ASTStatementExpression;
 
 public class GeneralFiddlingTest {
 
@@ -53,6 +58,33 @@ public class GeneralFiddlingTest {
         // }
     }
 
+    @Test
+    public void testLazyDataFlow() {
+        ASTCompilationUnit acu = buildDFALazily(TEST1);
+        // asking a node inside a statement builds the data flow of the whole method
+        ASTName name = acu.getFirstDescendantOfType(ASTName.class);
+        ASTStatementExpression statement = name.getFirstParentOfType(ASTStatementExpression.class);
+        assertSame(statement, name.getDataFlowNode().getNode());
+
+        List<DataFlowNode> f = name.getDataFlowNode().getFlow();
+        assertEquals(6, f.size());
+        assertEquals("Undefinition(x)", String.valueOf(f.get(0).getVariableAccess().get(0)));
+        assertEquals("Definition(x)", String.valueOf(f.get(2).getVariableAccess().get(0)));
+        assertEquals("Reference(x)", String.valueOf(f.get(3).getVariableAccess().get(0)));
+        assertSame(f, acu.getFirstDescendantOfType(ASTMethodDeclaration.class).getDataFlowNode().getFlow());
+    }
+
+    @Test
+    public void testLazyDataFlowOfAnonymousClass() {
+        ASTCompilationUnit acu = buildDFALazily("class Foo {" + PMD.EOL + " void bar() {" + PMD.EOL
+                + "  Runnable r = new Runnable() {" + PMD.EOL + "   public void run() {" + PMD.EOL + "    int y = 1;"
+                + PMD.EOL + "   }" + PMD.EOL + "  };" + PMD.EOL + " }" + PMD.EOL + "}");
+        List<ASTMethodDeclaration> methods = acu.findDescendantsOfType(ASTMethodDeclaration.class, true);
+
+        // the anonymous class is part of the data flow of the enclosing method
+        assertSame(methods.get(0).getDataFlowNode().getFlow(), methods.get(1).getDataFlowNode().getFlow());
+    }
+
     private static final String TEST1 = "class Foo {" + PMD.EOL + " void bar() {" + PMD.EOL + "  int x = 2;" + PMD.EOL
             + "  foo(x);" + PMD.EOL + "  x = 3;" + PMD.EOL + " }" + PMD.EOL + "}";
 }
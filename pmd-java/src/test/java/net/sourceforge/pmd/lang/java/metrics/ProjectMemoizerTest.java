@@ -7,6 +7,8 @@ package net.sourceforge.pmd.lang.java.metrics;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -65,6 +67,48 @@ public class ProjectMemoizerTest {
     }
 
 
+    @Test
+    public void nodeMemoizerTest() {
+        ASTCompilationUnit acu = ParserTstUtil.parseJavaDefaultVersion(MetricsVisitorTestData.class);
+        JavaProjectMemoizer toplevel = JavaMetrics.getFacade().getLanguageSpecificProjectMemoizer();
+        ASTAnyTypeDeclaration clazz = acu.getFirstDescendantOfType(ASTAnyTypeDeclaration.class);
+        ASTMethodOrConstructorDeclaration op = acu.getFirstDescendantOfType(ASTMethodOrConstructorDeclaration.class);
+
+        assertSame(toplevel.getClassMemoizer(clazz), toplevel.getClassMemoizer(clazz));
+        assertSame(toplevel.getOperationMemoizer(op), toplevel.getOperationMemoizer(op));
+
+        // the facade memoizes the results on the nodes
+        MetricOptions options = MetricOptions.emptyOptions();
+        assertEquals(JavaMetrics.get(classMetricKey, clazz, options),
+                     JavaMetrics.get(classMetricKey, clazz, options), 0);
+        assertEquals(JavaMetrics.get(opMetricKey, op, options), JavaMetrics.get(opMetricKey, op, options), 0);
+    }
+
+
+    @Test
+    public void sameNamedClassesTest() {
+        String source = "package foo; class Foo { void bar() {} }";
+        ASTCompilationUnit first = ParserTstUtil.parseJavaDefaultVersion(source);
+        ASTCompilationUnit second = ParserTstUtil.parseJavaDefaultVersion(source);
+        JavaProjectMemoizer toplevel = JavaMetrics.getFacade().getLanguageSpecificProjectMemoizer();
+        ASTAnyTypeDeclaration firstClass = first.getFirstDescendantOfType(ASTAnyTypeDeclaration.class);
+        ASTAnyTypeDeclaration secondClass = second.getFirstDescendantOfType(ASTAnyTypeDeclaration.class);
+        MethodLikeNode firstOp = first.getFirstDescendantOfType(ASTMethodOrConstructorDeclaration.class);
+        MethodLikeNode secondOp = second.getFirstDescendantOfType(ASTMethodOrConstructorDeclaration.class);
+        assertEquals(firstClass.getQualifiedName(), secondClass.getQualifiedName());
+
+        // classes of different files don't share their memoizers, even with the same name
+        assertNotSame(toplevel.getClassMemoizer(firstClass), toplevel.getClassMemoizer(secondClass));
+        assertNotSame(toplevel.getOperationMemoizer(firstOp), toplevel.getOperationMemoizer(secondOp));
+
+        MetricOptions options = MetricOptions.emptyOptions();
+        assertNotEquals(JavaMetrics.get(classMetricKey, firstClass, options),
+                        JavaMetrics.get(classMetricKey, secondClass, options), 0);
+        assertNotEquals(JavaMetrics.get(opMetricKey, firstOp, options),
+                        JavaMetrics.get(opMetricKey, secondOp, options), 0);
+    }
+
+
     private List<Integer> visitWith(ASTCompilationUnit acu, final boolean force) {
         final JavaProjectMemoizer toplevel = JavaMetrics.getFacade().getLanguageSpecificProjectMemoizer();
 
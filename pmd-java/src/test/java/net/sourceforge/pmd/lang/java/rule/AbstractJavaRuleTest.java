@@ -0,0 +1,114 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTFieldDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.JavaNode;
+import net.sourceforge.pmd.testframework.RuleTst;
+
+public class AbstractJavaRuleTest extends RuleTst {
+
+    private static final String TEST_CODE = "public class Outer {\n"
+            + "    void a() {}\n"
+            + "    class Inner {\n"
+            + "        void b() {}\n"
+            + "        void c() {}\n"
+            + "    }\n"
+            + "}";
+
+    @Test
+    public void testRuleChainVisitsOfOverriddenMethods() {
+        OverridingRule rule = new OverridingRule();
+
+        assertEquals(new HashSet<>(Arrays.asList("ClassOrInterfaceDeclaration", "MethodDeclaration")),
+                new HashSet<>(rule.getRuleChainVisits()));
+        assertTrue(rule.isRuleChain());
+    }
+
+    @Test
+    public void testRuleChainVisitsOfSuperClass() {
+        SubclassRule rule = new SubclassRule();
+
+        assertEquals(new HashSet<>(Arrays.asList("ClassOrInterfaceDeclaration", "MethodDeclaration",
+                "FieldDeclaration")), new HashSet<>(rule.getRuleChainVisits()));
+    }
+
+    @Test
+    public void testRuleChainVisitsOfGenericVisit() {
+        GenericRule rule = new GenericRule();
+
+        assertTrue(rule.getRuleChainVisits().contains("CompilationUnit"));
+        assertTrue(rule.getRuleChainVisits().contains("MethodDeclaration"));
+        assertTrue(rule.getRuleChainVisits().contains("Expression"));
+    }
+
+    /**
+     * Each node is visited once, although the visit methods call {@code super.visit}.
+     */
+    @Test
+    public void testEachNodeIsVisitedOnce() {
+        Report report = new Report();
+        runTestFromString(TEST_CODE, new OverridingRule(), report,
+                LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion());
+
+        assertEquals(5, report.size());
+    }
+
+    public static class OverridingRule extends AbstractJavaRule {
+        public OverridingRule() {
+            setName("OverridingRule");
+            setMessage("visited");
+            addRuleChainVisitsOfOverriddenMethods();
+        }
+
+        @Override
+        public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
+            addViolation(data, node);
+            return super.visit(node, data);
+        }
+
+        @Override
+        public Object visit(ASTMethodDeclaration node, Object data) {
+            addViolation(data, node);
+            return super.visit(node, data);
+        }
+
+        // an overload, which isn't a visit method
+        public Object visit(ASTMethodDeclaration node, String data) {
+            return data;
+        }
+    }
+
+    public static class SubclassRule extends OverridingRule {
+        @Override
+        public Object visit(ASTFieldDeclaration node, Object data) {
+            return super.visit(node, data);
+        }
+    }
+
+    public static class GenericRule extends AbstractJavaRule {
+        public GenericRule() {
+            addRuleChainVisitsOfOverriddenMethods();
+        }
+
+        @Override
+        public Object visit(JavaNode node, Object data) {
+            return super.visit(node, data);
+        }
+    }
+}
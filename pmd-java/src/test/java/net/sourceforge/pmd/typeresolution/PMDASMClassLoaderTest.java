@@ -5,10 +5,17 @@
 package net.sourceforge.pmd.typeresolution;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Ignore;
@@ -85,6 +92,43 @@ public class PMDASMClassLoaderTest {
         assertEquals(1, mockedClassloader.findClassCalls);
     }
 
+    @Test
+    public void testImportedClassesInParallel() throws Exception {
+        final String className = "net.sourceforge.pmd.typeresolution.ClassWithImportOnDemand";
+        List<Callable<Map<String, String>>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(new Callable<Map<String, String>>() {
+                @Override
+                public Map<String, String> call() throws Exception {
+                    return cl.getImportedClasses(className);
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            Map<String, String> imports = cl.getImportedClasses(className);
+            for (Future<Map<String, String>> result : executor.invokeAll(tasks)) {
+                assertEquals(imports, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCachingOfNotFoundImportedClasses() throws Exception {
+        String notExistingClassname = "that.clazz.doesnot.Exist";
+        try {
+            cl.getImportedClasses(notExistingClassname);
+            fail();
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+
+        assertFalse(cl.couldResolve(notExistingClassname));
+    }
+
     private static class MockedClassLoader extends ClassLoader {
         int findClassCalls = 0;
 
@@ -0,0 +1,98 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.typeresolution;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceType;
+import net.sourceforge.pmd.lang.java.symboltable.TypedNameDeclaration;
+import net.sourceforge.pmd.lang.java.typeresolution.TypeHelper;
+
+public class TypeHelperTest {
+
+    @Test
+    public void testIsAWithClassOnClasspath() {
+        ASTClassOrInterfaceType node = typeNode("ArrayList", ArrayList.class);
+
+        for (int i = 0; i < 2; i++) {
+            // the second time, the classes are looked up from the cache
+            assertTrue(TypeHelper.isA(node, "java.util.ArrayList"));
+            assertTrue(TypeHelper.isA(node, "java.util.List"));
+            assertFalse(TypeHelper.isA(node, "java.util.Map"));
+            assertTrue(TypeHelper.isExactlyA(node, "java.util.ArrayList"));
+            assertFalse(TypeHelper.isExactlyA(node, "java.util.List"));
+        }
+    }
+
+    @Test
+    public void testIsAWithClassNotOnClasspath() {
+        ASTClassOrInterfaceType node = typeNode("ArrayList", ArrayList.class);
+        ASTClassOrInterfaceType unresolved = typeNode("Missing", null);
+
+        for (int i = 0; i < 2; i++) {
+            // the second time, the missing class is remembered as not found
+            assertFalse(TypeHelper.isA(node, "org.example.Missing"));
+            assertFalse(TypeHelper.isExactlyA(node, "org.example.Missing"));
+            assertTrue(TypeHelper.isA(typeNode("Missing", String.class), "org.example.Missing"));
+            assertTrue(TypeHelper.isA(unresolved, "org.example.Missing"));
+            assertFalse(TypeHelper.isA(unresolved, "org.example.Other"));
+        }
+    }
+
+    @Test
+    public void testLookupsDoNotRetainTheClassloader() throws Exception {
+        WeakReference<ClassLoader> classLoader = lookUpWithOwnClassloader();
+
+        for (int i = 0; i < 10 && classLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("The lookups retain the classloader of the type", classLoader.get());
+    }
+
+    private static WeakReference<ClassLoader> lookUpWithOwnClassloader() throws Exception {
+        URL classes = TypeHelperTest.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { classes }, null)) {
+            final Class<?> type = classLoader.loadClass(LoadedType.class.getName());
+            // not an AST node, which would cache the type definition of its type
+            TypedNameDeclaration declaration = new TypedNameDeclaration() {
+                @Override
+                public String getTypeImage() {
+                    return "LoadedType";
+                }
+
+                @Override
+                public Class<?> getType() {
+                    return type;
+                }
+            };
+            assertTrue(TypeHelper.isA(declaration, "java.lang.Object"));
+            // a class of the classloader itself
+            assertTrue(TypeHelper.isA(declaration, LoadedType.class.getName()));
+            assertFalse(TypeHelper.isA(declaration, "org.example.Missing"));
+            return new WeakReference<ClassLoader>(classLoader);
+        }
+    }
+
+    private static ASTClassOrInterfaceType typeNode(String image, Class<?> type) {
+        ASTClassOrInterfaceType node = new ASTClassOrInterfaceType(0);
+        node.setImage(image);
+        node.setType(type);
+        return node;
+    }
+
+    /** A class without dependencies, which can be loaded by a classloader of its own. */
+    private static class LoadedType {
+    }
+}